@@ -28,6 +28,9 @@ import lombok.Setter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.actors.app.TenantActorRegistry;
+import org.thingsboard.server.actors.device.DeviceActorStats;
+import org.thingsboard.server.actors.plugin.PluginCallbackExecutor;
 import org.thingsboard.server.actors.service.ActorService;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Event;
@@ -39,6 +42,7 @@ import org.thingsboard.server.common.transport.auth.DeviceAuthService;
 import org.thingsboard.server.controller.plugin.PluginWebSocketMsgEndpoint;
 import org.thingsboard.server.dao.alarm.AlarmService;
 import org.thingsboard.server.dao.asset.AssetService;
+import org.thingsboard.server.dao.attributes.AttributesCache;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.customer.CustomerService;
 import org.thingsboard.server.dao.device.DeviceService;
@@ -104,6 +108,9 @@ public class ActorSystemContext {
     @Autowired
     @Getter private AttributesService attributesService;
 
+    @Autowired
+    @Getter private AttributesCache attributesCache;
+
     @Autowired
     @Getter private EventService eventService;
 
@@ -119,6 +126,15 @@ public class ActorSystemContext {
     @Value("${actors.session.sync.timeout}")
     @Getter private long syncSessionTimeout;
 
+    @Value("${actors.session.sync.lightweight}")
+    @Getter private boolean syncSessionLightweight;
+
+    @Value("${actors.session.manager.shards}")
+    @Getter private int sessionManagerShards;
+
+    @Value("${actors.rule.parallel_processing}")
+    @Getter private boolean ruleParallelProcessing;
+
     @Value("${actors.plugin.termination.delay}")
     @Getter private long pluginActorTerminationDelay;
 
@@ -128,12 +144,27 @@ public class ActorSystemContext {
     @Value("${actors.plugin.error_persist_frequency}")
     @Getter private long pluginErrorPersistFrequency;
 
+    @Autowired
+    @Getter private PluginCallbackExecutor pluginCallbackExecutor;
+
     @Value("${actors.rule.termination.delay}")
     @Getter private long ruleActorTerminationDelay;
 
     @Value("${actors.rule.error_persist_frequency}")
     @Getter private long ruleErrorPersistFrequency;
 
+    @Value("${actors.device.idle_timeout}")
+    @Getter private long deviceActorIdleTimeout;
+
+    @Value("${actors.device.init_max_retries}")
+    @Getter private int deviceActorInitMaxRetries;
+
+    @Value("${actors.device.max_pending_msgs}")
+    @Getter private int deviceActorMaxPendingMsgs;
+
+    @Autowired
+    @Getter private DeviceActorStats deviceActorStats;
+
     @Value("${actors.statistics.enabled}")
     @Getter private boolean statisticsEnabled;
 
@@ -147,6 +178,8 @@ public class ActorSystemContext {
 
     @Getter @Setter private ActorRef appActor;
 
+    @Getter private final TenantActorRegistry tenantActorRegistry = new TenantActorRegistry();
+
     @Getter @Setter private ActorRef sessionManagerActor;
 
     @Getter @Setter private ActorRef statsActor;
@@ -57,6 +57,7 @@ public class AppActor extends ContextAwareActor {
     private final PluginManager pluginManager;
     private final TenantService tenantService;
     private final Map<TenantId, ActorRef> tenantActors;
+    private final TenantActorRegistry tenantActorRegistry;
 
     private AppActor(ActorSystemContext systemContext) {
         super(systemContext);
@@ -64,6 +65,7 @@ public class AppActor extends ContextAwareActor {
         this.pluginManager = new SystemPluginManager(systemContext);
         this.tenantService = systemContext.getTenantService();
         this.tenantActors = new HashMap<>();
+        this.tenantActorRegistry = systemContext.getTenantActorRegistry();
     }
 
     @Override
@@ -76,6 +78,7 @@ public class AppActor extends ContextAwareActor {
         logger.info("Starting main system actor.");
         try {
             ruleManager.init(this.context());
+            tenantActorRegistry.setSystemRuleChain(ruleManager.getRuleChain(this.context()));
             pluginManager.init(this.context());
 
             if (systemContext.isTenantComponentsInitEnabled()) {
@@ -153,6 +156,7 @@ public class AppActor extends ContextAwareActor {
                 target = pluginManager.getOrCreatePluginActor(this.context(), msg.getPluginId().get());
             } else if (msg.getRuleId().isPresent()) {
                 Optional<ActorRef> ref = ruleManager.update(this.context(), msg.getRuleId().get(), msg.getEvent());
+                tenantActorRegistry.setSystemRuleChain(ruleManager.getRuleChain(this.context()));
                 if (ref.isPresent()) {
                     target = ref.get();
                 } else {
@@ -180,16 +184,26 @@ public class AppActor extends ContextAwareActor {
         } else {
             tenantActor.tell(toDeviceActorMsg, context().self());
         }
+        if (!sender().equals(context().system().deadLetters())) {
+            sender().tell(DeviceMsgForwardedMsg.INSTANCE, context().self());
+        }
     }
 
     private ActorRef getOrCreateTenantActor(TenantId tenantId) {
-        return tenantActors.computeIfAbsent(tenantId, k -> context().actorOf(Props.create(new TenantActor.ActorCreator(systemContext, tenantId))
-                .withDispatcher(DefaultActorService.CORE_DISPATCHER_NAME), tenantId.toString()));
+        return tenantActors.computeIfAbsent(tenantId, k -> {
+            ActorRef tenantActor = context().actorOf(Props.create(new TenantActor.ActorCreator(systemContext, tenantId))
+                    .withDispatcher(DefaultActorService.CORE_DISPATCHER_NAME), tenantId.toString());
+            context().watch(tenantActor);
+            tenantActorRegistry.register(tenantId, tenantActor);
+            return tenantActor;
+        });
     }
 
     private void processTermination(Terminated message) {
         ActorRef terminated = message.actor();
         if (terminated instanceof LocalActorRef) {
+            tenantActors.values().remove(terminated);
+            tenantActorRegistry.unregister(terminated);
             logger.debug("Removed actor: {}", terminated);
         } else {
             throw new IllegalStateException("Remote actors are not supported!");
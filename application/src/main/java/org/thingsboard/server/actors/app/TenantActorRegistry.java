@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.app;
+
+import akka.actor.ActorRef;
+import org.thingsboard.server.actors.rule.RuleActorChain;
+import org.thingsboard.server.actors.tenant.RuleChainDeviceMsg;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tenant actors and system rule chain published by the {@link AppActor}, so that device messages
+ * can be sent to the tenant actors directly instead of passing through the app actor mailbox.
+ */
+public class TenantActorRegistry {
+
+    private final ConcurrentMap<TenantId, ActorRef> tenantActors = new ConcurrentHashMap<>();
+    private volatile RuleActorChain systemRuleChain;
+
+    void register(TenantId tenantId, ActorRef tenantActor) {
+        tenantActors.put(tenantId, tenantActor);
+    }
+
+    void unregister(ActorRef tenantActor) {
+        tenantActors.values().remove(tenantActor);
+    }
+
+    void setSystemRuleChain(RuleActorChain systemRuleChain) {
+        this.systemRuleChain = systemRuleChain;
+    }
+
+    /**
+     * Sends the message to the tenant actor the same way the app actor does.
+     *
+     * @return false if the tenant actor is not created yet and the message should be sent to the app actor
+     */
+    public boolean tell(ToDeviceActorMsg msg, ActorRef sender) {
+        ActorRef tenantActor = tenantActors.get(msg.getTenantId());
+        RuleActorChain ruleChain = systemRuleChain;
+        if (tenantActor == null || ruleChain == null) {
+            return false;
+        }
+        if (msg.getPayload().getMsgType().requiresRulesProcessing()) {
+            tenantActor.tell(new RuleChainDeviceMsg(msg, ruleChain), sender);
+        } else {
+            tenantActor.tell(msg, sender);
+        }
+        return true;
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.server.actors.device;
 
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import org.thingsboard.server.actors.ActorSystemContext;
@@ -31,14 +33,31 @@ import org.thingsboard.server.extensions.api.device.DeviceCredentialsUpdateNotif
 import org.thingsboard.server.extensions.api.device.DeviceNameOrTypeUpdateMsg;
 import org.thingsboard.server.extensions.api.device.ToDeviceActorNotificationMsg;
 import org.thingsboard.server.extensions.api.plugins.msg.*;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 public class DeviceActor extends ContextAwareActor {
 
+    private static final long INIT_RETRY_DELAY_MS = 1000;
+
     private final LoggingAdapter logger = Logging.getLogger(getContext().system(), this);
 
     private final TenantId tenantId;
     private final DeviceId deviceId;
     private final DeviceActorMessageProcessor processor;
+    private final Queue<Object> pendingMsgs = new LinkedList<>();
+
+    private boolean initialized;
+    private boolean initFailed;
+    private int initRetries;
+    private boolean passivating;
+    private long lastActivityTs = System.currentTimeMillis();
+    private Cancellable idleCheck;
+    private Cancellable initRetry;
 
     private DeviceActor(ActorSystemContext systemContext, TenantId tenantId, DeviceId deviceId) {
         super(systemContext);
@@ -47,12 +66,132 @@ public class DeviceActor extends ContextAwareActor {
         this.processor = new DeviceActorMessageProcessor(systemContext, logger, deviceId);
     }
 
+    @Override
+    public void preStart() {
+        systemContext.getDeviceActorStats().onStarted();
+        processor.initAttributes(self());
+        long idleTimeout = systemContext.getDeviceActorIdleTimeout();
+        if (idleTimeout > 0) {
+            FiniteDuration period = Duration.create(idleTimeout, TimeUnit.MILLISECONDS);
+            idleCheck = systemContext.getScheduler().schedule(period, period, self(), DeviceActorIdleCheckMsg.INSTANCE,
+                    context().dispatcher(), ActorRef.noSender());
+        }
+    }
+
+    @Override
+    public void postStop() {
+        if (idleCheck != null) {
+            idleCheck.cancel();
+        }
+        if (initRetry != null) {
+            initRetry.cancel();
+        }
+        systemContext.getDeviceActorStats().onStopped();
+    }
+
     @Override
     public void onReceive(Object msg) throws Exception {
+        if (msg instanceof DeviceActorIdleCheckMsg) {
+            checkIdle();
+            return;
+        } else if (msg instanceof DeviceActorStopMsg) {
+            onStop();
+            return;
+        }
+        lastActivityTs = System.currentTimeMillis();
+        if (msg instanceof DeviceActorInitMsg) {
+            onInit((DeviceActorInitMsg) msg);
+        } else if (msg instanceof DeviceActorInitFailureMsg) {
+            onInitFailure((DeviceActorInitFailureMsg) msg);
+        } else if (msg instanceof DeviceActorInitRetryMsg) {
+            initRetry = null;
+            processor.initAttributes(self());
+        } else if (!initialized) {
+            storePending(msg);
+        } else {
+            process(msg);
+        }
+    }
+
+    private void onInit(DeviceActorInitMsg msg) throws Exception {
+        processor.onInit(msg);
+        if (!initialized) {
+            initialized = true;
+            logger.debug("[{}][{}] Device loaded, processing {} pending messages", tenantId, deviceId, pendingMsgs.size());
+            while (!pendingMsgs.isEmpty()) {
+                process(pendingMsgs.poll());
+            }
+        }
+    }
+
+    private void storePending(Object msg) {
+        if (initFailed) {
+            logger.debug("[{}][{}] Dropping msg, device failed to load", tenantId, deviceId);
+        } else if (pendingMsgs.size() >= systemContext.getDeviceActorMaxPendingMsgs()) {
+            logger.warning("[{}][{}] Dropping msg, pending queue is full", tenantId, deviceId);
+        } else {
+            logger.debug("[{}][{}] Storing msg to pending queue until device is loaded", tenantId, deviceId);
+            pendingMsgs.add(msg);
+        }
+    }
+
+    /**
+     * Retries the load after a delay. A missing device or too many failed attempts stop the actor
+     * and drop the pending messages. Messages that arrive later create a new actor.
+     */
+    private void onInitFailure(DeviceActorInitFailureMsg msg) {
+        if (initialized || initFailed) {
+            return;
+        }
+        if (!msg.isDeviceNotFound() && initRetries < systemContext.getDeviceActorInitMaxRetries()) {
+            initRetries++;
+            logger.warning("[{}][{}] Failed to load device and attributes, retrying in {} ms: {}", tenantId, deviceId, INIT_RETRY_DELAY_MS, msg.getError());
+            initRetry = systemContext.getScheduler().scheduleOnce(Duration.create(INIT_RETRY_DELAY_MS, TimeUnit.MILLISECONDS), self(),
+                    DeviceActorInitRetryMsg.INSTANCE, context().dispatcher(), ActorRef.noSender());
+            return;
+        }
+        if (msg.isDeviceNotFound()) {
+            logger.warning("[{}][{}] Device not found, dropping {} pending messages", tenantId, deviceId, pendingMsgs.size());
+        } else {
+            logger.warning("[{}] Failed to load device and attributes after {} retries, dropping {} pending messages: {}",
+                    deviceId, initRetries, pendingMsgs.size(), msg.getError());
+        }
+        initFailed = true;
+        pendingMsgs.clear();
+        passivating = true;
+        context().parent().tell(new DeviceActorPassivationMsg(deviceId), self());
+    }
+
+    private void checkIdle() {
+        if (initialized && !passivating && processor.isIdle()
+                && System.currentTimeMillis() - lastActivityTs >= systemContext.getDeviceActorIdleTimeout()) {
+            logger.debug("[{}][{}] Device actor is idle, requesting passivation", tenantId, deviceId);
+            passivating = true;
+            context().parent().tell(new DeviceActorPassivationMsg(deviceId), self());
+        }
+    }
+
+    private void onStop() {
+        if (processor.isIdle()) {
+            logger.debug("[{}][{}] Stopping idle device actor", tenantId, deviceId);
+            systemContext.getDeviceActorStats().onPassivated();
+            context().stop(self());
+        } else {
+            logger.debug("[{}][{}] Device actor became active during passivation, resuming", tenantId, deviceId);
+            passivating = false;
+            context().parent().tell(new DeviceActorResumeMsg(deviceId), self());
+        }
+    }
+
+    private void process(Object msg) throws Exception {
         if (msg instanceof RuleChainDeviceMsg) {
             processor.process(context(), (RuleChainDeviceMsg) msg);
+        } else if (msg instanceof DeviceAttributesLoadedMsg) {
+            processor.onAttributesLoaded(context(), (DeviceAttributesLoadedMsg) msg);
         } else if (msg instanceof RulesProcessedMsg) {
             processor.onRulesProcessedMsg(context(), (RulesProcessedMsg) msg);
+        } else if (msg instanceof RulesProcessingTimeoutMsg) {
+            processor.onRulesProcessingTimeout(context(), (RulesProcessingTimeoutMsg) msg);
         } else if (msg instanceof ToDeviceActorMsg) {
             processor.process(context(), (ToDeviceActorMsg) msg);
         } else if (msg instanceof ToDeviceActorNotificationMsg) {
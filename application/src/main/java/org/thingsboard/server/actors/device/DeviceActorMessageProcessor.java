@@ -18,6 +18,11 @@ package org.thingsboard.server.actors.device;
 import akka.actor.ActorContext;
 import akka.actor.ActorRef;
 import akka.event.LoggingAdapter;
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.rule.*;
 import org.thingsboard.server.actors.shared.AbstractContextAwareMsgProcessor;
@@ -37,6 +42,7 @@ import org.thingsboard.server.common.msg.session.FromDeviceMsg;
 import org.thingsboard.server.common.msg.session.MsgType;
 import org.thingsboard.server.common.msg.session.SessionType;
 import org.thingsboard.server.common.msg.session.ToDeviceMsg;
+import org.thingsboard.server.dao.attributes.AttributesCache;
 import org.thingsboard.server.extensions.api.device.*;
 import org.thingsboard.server.extensions.api.plugins.msg.FromDeviceRpcResponse;
 import org.thingsboard.server.extensions.api.plugins.msg.RpcError;
@@ -48,7 +54,6 @@ import org.thingsboard.server.extensions.api.plugins.msg.ToDeviceRpcRequestPlugi
 import org.thingsboard.server.extensions.api.plugins.msg.ToPluginRpcResponseDeviceMsg;
 
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -63,13 +68,15 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
     private final Map<SessionId, SessionInfo> sessions;
     private final Map<SessionId, SessionInfo> attributeSubscriptions;
     private final Map<SessionId, SessionInfo> rpcSubscriptions;
-
     private final Map<Integer, ToDeviceRpcRequestMetadata> rpcPendingMap;
+    /**
+     * Rule chain messages waiting for the attributes of the device to be reloaded, in arrival order.
+     */
+    private final Queue<RuleChainDeviceMsg> attributesAwaitingMsgs;
 
     private int rpcSeq = 0;
     private String deviceName;
     private String deviceType;
-    private DeviceAttributes deviceAttributes;
 
     public DeviceActorMessageProcessor(ActorSystemContext systemContext, LoggingAdapter logger, DeviceId deviceId) {
         super(systemContext, logger);
@@ -78,23 +85,106 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
         this.attributeSubscriptions = new HashMap<>();
         this.rpcSubscriptions = new HashMap<>();
         this.rpcPendingMap = new HashMap<>();
-        initAttributes();
+        this.attributesAwaitingMsgs = new LinkedList<>();
     }
 
-    private void initAttributes() {
-        //TODO: add invalidation of deviceType cache.
-        Device device = systemContext.getDeviceService().findDeviceById(deviceId);
-        this.deviceName = device.getName();
-        this.deviceType = device.getType();
-        this.deviceAttributes = new DeviceAttributes(fetchAttributes(DataConstants.CLIENT_SCOPE),
+    /**
+     * Loads the device and its attributes without blocking the caller and sends the result to the device actor.
+     * A failed load or a missing device is reported to the device actor as {@link DeviceActorInitFailureMsg}.
+     */
+    void initAttributes(ActorRef self) {
+        ListenableFuture<Device> deviceFuture = systemContext.getDeviceService().findDeviceByIdAsync(deviceId);
+        ListenableFuture<List<List<AttributeKvEntry>>> attributesFuture = Futures.allAsList(fetchAttributes(DataConstants.CLIENT_SCOPE),
                 fetchAttributes(DataConstants.SERVER_SCOPE), fetchAttributes(DataConstants.SHARED_SCOPE));
+        ListenableFuture<DeviceActorInitMsg> initFuture = Futures.transform(deviceFuture, (AsyncFunction<Device, DeviceActorInitMsg>) device -> {
+            if (device == null) {
+                return Futures.immediateFuture(null);
+            }
+            return Futures.transform(attributesFuture, (Function<List<List<AttributeKvEntry>>, DeviceActorInitMsg>) attributes ->
+                    new DeviceActorInitMsg(device, attributes.get(0), attributes.get(1), attributes.get(2)));
+        });
+        Futures.addCallback(initFuture, new FutureCallback<DeviceActorInitMsg>() {
+            @Override
+            public void onSuccess(DeviceActorInitMsg msg) {
+                if (msg != null) {
+                    self.tell(msg, ActorRef.noSender());
+                } else {
+                    self.tell(new DeviceActorInitFailureMsg(true, null), ActorRef.noSender());
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                self.tell(new DeviceActorInitFailureMsg(false, t), ActorRef.noSender());
+            }
+        });
+    }
+
+    /**
+     * Keeps the device name and type. The loaded attributes are only needed to fill the attributes cache,
+     * which rule processing reads them from.
+     */
+    void onInit(DeviceActorInitMsg msg) {
+        //TODO: add invalidation of deviceType cache.
+        this.deviceName = msg.getDevice().getName();
+        this.deviceType = msg.getDevice().getType();
     }
 
     private void refreshAttributes(DeviceAttributesEventNotificationMsg msg) {
         if (msg.isDeleted()) {
-            msg.getDeletedKeys().forEach(key -> deviceAttributes.remove(key));
+            msg.getDeletedKeys().stream().collect(Collectors.groupingBy(AttributeKey::getScope,
+                    Collectors.mapping(AttributeKey::getAttributeKey, Collectors.toList())))
+                    .forEach((scope, keys) -> systemContext.getAttributesCache().remove(deviceId, scope, keys, msg.getDeleteTs()));
         } else {
-            deviceAttributes.update(msg.getScope(), msg.getValues());
+            systemContext.getAttributesCache().put(deviceId, msg.getScope(), msg.getValues());
+        }
+    }
+
+    /**
+     * Returns the attributes of all scopes from the attributes cache, or null if any scope is not cached.
+     */
+    private DeviceAttributes getCachedAttributes() {
+        AttributesCache cache = systemContext.getAttributesCache();
+        if (!cache.isCacheable(deviceId)) {
+            return null;
+        }
+        Optional<List<AttributeKvEntry>> clientAttributes = cache.findAll(deviceId, DataConstants.CLIENT_SCOPE);
+        Optional<List<AttributeKvEntry>> serverAttributes = cache.findAll(deviceId, DataConstants.SERVER_SCOPE);
+        Optional<List<AttributeKvEntry>> sharedAttributes = cache.findAll(deviceId, DataConstants.SHARED_SCOPE);
+        if (!clientAttributes.isPresent() || !serverAttributes.isPresent() || !sharedAttributes.isPresent()) {
+            return null;
+        }
+        return new DeviceAttributes(clientAttributes.get(), serverAttributes.get(), sharedAttributes.get());
+    }
+
+    /**
+     * Loads the attributes of all scopes, which also fills the attributes cache, and sends them to the device actor.
+     */
+    private void loadAttributes(ActorRef self) {
+        ListenableFuture<List<List<AttributeKvEntry>>> attributesFuture = Futures.allAsList(fetchAttributes(DataConstants.CLIENT_SCOPE),
+                fetchAttributes(DataConstants.SERVER_SCOPE), fetchAttributes(DataConstants.SHARED_SCOPE));
+        Futures.addCallback(attributesFuture, new FutureCallback<List<List<AttributeKvEntry>>>() {
+            @Override
+            public void onSuccess(List<List<AttributeKvEntry>> attributes) {
+                self.tell(new DeviceAttributesLoadedMsg(new DeviceAttributes(attributes.get(0), attributes.get(1), attributes.get(2)), null),
+                        ActorRef.noSender());
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                self.tell(new DeviceAttributesLoadedMsg(null, t), ActorRef.noSender());
+            }
+        });
+    }
+
+    void onAttributesLoaded(ActorContext context, DeviceAttributesLoadedMsg msg) {
+        if (msg.getAttributes() == null) {
+            logger.warning("[{}] Failed to load attributes, dropping {} rule chain messages: {}", deviceId, attributesAwaitingMsgs.size(), msg.getError());
+            attributesAwaitingMsgs.clear();
+            return;
+        }
+        while (!attributesAwaitingMsgs.isEmpty()) {
+            process(context, attributesAwaitingMsgs.poll(), msg.getAttributes());
         }
     }
 
@@ -230,10 +320,36 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
         }
     }
 
+    /**
+     * Starts the rule chain with the attributes from the attributes cache. If they are not cached, the message waits
+     * with the ones after it until the attributes are reloaded.
+     */
     void process(ActorContext context, RuleChainDeviceMsg srcMsg) {
-        ChainProcessingMetaData md = new ChainProcessingMetaData(srcMsg.getRuleChain(),
-                srcMsg.getToDeviceActorMsg(), new DeviceMetaData(deviceId, deviceName, deviceType, deviceAttributes), context.self());
-        ChainProcessingContext ctx = new ChainProcessingContext(md);
+        if (!attributesAwaitingMsgs.isEmpty()) {
+            attributesAwaitingMsgs.add(srcMsg);
+            return;
+        }
+        DeviceAttributes attributes = getCachedAttributes();
+        if (attributes == null) {
+            attributesAwaitingMsgs.add(srcMsg);
+            loadAttributes(context.self());
+            return;
+        }
+        process(context, srcMsg, attributes);
+    }
+
+    private void process(ActorContext context, RuleChainDeviceMsg srcMsg, DeviceAttributes attributes) {
+        RuleActorChain chain = srcMsg.getRuleChain();
+        MsgType msgType = srcMsg.getToDeviceActorMsg().getPayload().getMsgType();
+        RuleActorChain applicableRules = chain.getApplicableRules(msgType, deviceType);
+        ChainProcessingMetaData md = new ChainProcessingMetaData(applicableRules,
+                srcMsg.getToDeviceActorMsg(), new DeviceMetaData(deviceId, deviceName, deviceType, attributes), context.self());
+        RuleEngineError initialError = getSkippedRulesError(chain.getSkippedRules(msgType, deviceType));
+        if (systemContext.isRuleParallelProcessing() && applicableRules.size() > 1) {
+            startNextStage(context, new ParallelChainProcessing(md, initialError));
+            return;
+        }
+        ChainProcessingContext ctx = new ChainProcessingContext(md, initialError);
         if (ctx.getChainLength() > 0) {
             RuleProcessingMsg msg = new RuleProcessingMsg(ctx);
             ActorRef ruleActorRef = ctx.getCurrentActor();
@@ -243,6 +359,22 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
         }
     }
 
+    /**
+     * Returns the error the skipped rules would have reported: an active rule that its filters did not match,
+     * a rule suspended after the chain was built that it is not active.
+     */
+    private static RuleEngineError getSkippedRulesError(RuleActorChain skippedRules) {
+        if (skippedRules.size() == 0) {
+            return RuleEngineError.NO_RULES;
+        }
+        for (int i = 0; i < skippedRules.size(); i++) {
+            if (skippedRules.getRuleActorMd(i).isActive()) {
+                return RuleEngineError.NO_FILTERS_MATCHED;
+            }
+        }
+        return RuleEngineError.NO_ACTIVE_RULES;
+    }
+
     void processRpcResponses(ActorContext context, ToDeviceActorMsg msg) {
         SessionId sessionId = msg.getSessionId();
         FromDeviceMsg inMsg = msg.getPayload();
@@ -273,6 +405,14 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
         }
     }
 
+    /**
+     * Checks that the device has no sessions, subscriptions and pending RPC requests, so the actor may be stopped.
+     */
+    boolean isIdle() {
+        return sessions.isEmpty() && attributeSubscriptions.isEmpty() && rpcSubscriptions.isEmpty() && rpcPendingMap.isEmpty()
+                && attributesAwaitingMsgs.isEmpty();
+    }
+
     public void processClusterEventMsg(ClusterEventMsg msg) {
         if (!msg.isAdded()) {
             logger.debug("[{}] Clearing attributes/rpc subscription for server [{}]", deviceId, msg.getServerAddress());
@@ -302,8 +442,39 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
         );
     }
 
+    private void startNextStage(ActorContext context, ParallelChainProcessing processing) {
+        for (ChainProcessingContext ruleCtx : processing.startNextStage()) {
+            ruleCtx.getCurrentActor().tell(new RuleProcessingMsg(ruleCtx), ActorRef.noSender());
+        }
+        // Rule actors reply with a plugin timeout error themselves, so this is only a guard against lost replies
+        scheduleMsgWithDelay(context, new RulesProcessingTimeoutMsg(processing, processing.getStage()), 2 * systemContext.getPluginProcessingTimeout());
+    }
+
+    void onRulesProcessingTimeout(ActorContext context, RulesProcessingTimeoutMsg msg) {
+        ParallelChainProcessing processing = msg.getProcessing();
+        if (processing.onTimeout(msg.getStage())) {
+            logger.warning("[{}] Rules processing stage [{}] is not completed in time", deviceId, msg.getStage());
+            sendRulesProcessingResult(processing.getResult());
+        }
+    }
+
     void onRulesProcessedMsg(ActorContext context, RulesProcessedMsg msg) {
         ChainProcessingContext ctx = msg.getCtx();
+        ParallelChainProcessing processing = ctx.getParallelProcessing();
+        if (processing != null) {
+            if (!processing.onRuleProcessed(ctx)) {
+                return;
+            }
+            if (!processing.isCompleted()) {
+                startNextStage(context, processing);
+                return;
+            }
+            ctx = processing.getResult();
+        }
+        sendRulesProcessingResult(ctx);
+    }
+
+    private void sendRulesProcessingResult(ChainProcessingContext ctx) {
         ToDeviceActorMsg inMsg = ctx.getInMsg();
         SessionId sid = inMsg.getSessionId();
         ToDeviceSessionActorMsg response;
@@ -355,18 +526,12 @@ public class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcesso
             logger.debug("{} Forwarding msg: {}", address, response);
             systemContext.getRpcService().tell(sessionAddress.get(), response);
         } else {
-            systemContext.getSessionManagerActor().tell(response, ActorRef.noSender());
+            systemContext.getActorService().onMsg(response);
         }
     }
 
-    private List<AttributeKvEntry> fetchAttributes(String scope) {
-        try {
-            //TODO: replace this with async operation. Happens only during actor creation, but is still criticla for performance,
-            return systemContext.getAttributesService().findAll(this.deviceId, scope).get();
-        } catch (InterruptedException | ExecutionException e) {
-            logger.warning("[{}] Failed to fetch attributes for scope: {}", deviceId, scope);
-            throw new RuntimeException(e);
-        }
+    private ListenableFuture<List<AttributeKvEntry>> fetchAttributes(String scope) {
+        return systemContext.getAttributesService().findAll(this.deviceId, scope);
     }
 
     public void processCredentialsUpdate() {
@@ -0,0 +1,84 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.device;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of device actors started and passivated by this node.
+ */
+@Component
+@Slf4j
+public class DeviceActorStats {
+
+    @Value("${actors.device.stats_interval_ms}")
+    private long statsIntervalMs;
+
+    private final AtomicLong liveCount = new AtomicLong();
+    private final AtomicLong passivatedCount = new AtomicLong();
+
+    private ScheduledExecutorService statsScheduler;
+
+    @PostConstruct
+    public void init() {
+        if (statsIntervalMs > 0) {
+            statsScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("device-actor-stats").setDaemon(true).build());
+            statsScheduler.scheduleAtFixedRate(() -> log.info("Device actors stats: live [{}], passivated [{}]",
+                    liveCount.get(), passivatedCount.get()), statsIntervalMs, statsIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+    }
+
+    void onStarted() {
+        liveCount.incrementAndGet();
+    }
+
+    void onStopped() {
+        liveCount.decrementAndGet();
+    }
+
+    void onPassivated() {
+        passivatedCount.incrementAndGet();
+    }
+
+    public long getLiveCount() {
+        return liveCount.get();
+    }
+
+    /**
+     * Total number of device actors stopped because of inactivity since the start of the node.
+     */
+    public long getPassivatedCount() {
+        return passivatedCount.get();
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.device;
+
+/**
+ * Sent by the tenant actor to stop a device actor that requested passivation.
+ * Messages for the device are held by the tenant actor until the device actor stops or resumes.
+ */
+public final class DeviceActorStopMsg {
+
+    public static final DeviceActorStopMsg INSTANCE = new DeviceActorStopMsg();
+
+    private DeviceActorStopMsg() {
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.plugin;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.dao.util.InstrumentedThreadPoolExecutor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors that deliver results of plugin database calls back to the plugin actors.
+ * Callbacks are striped by entity id, so callbacks of the same entity are executed in order
+ * and a slow callback delays only the entities of its own stripe.
+ * A callback rejected by a full stripe with the ABORT policy is completed with the rejection,
+ * so the plugin is always answered.
+ */
+@Component
+@Slf4j
+public class PluginCallbackExecutor {
+
+    @Value("${actors.plugin.callback.threads}")
+    private int threads;
+
+    @Value("${actors.plugin.callback.queue_size}")
+    private int queueSize;
+
+    @Value("${actors.plugin.callback.rejection_policy}")
+    private String rejectionPolicy;
+
+    @Value("${actors.plugin.callback.stats_interval_ms}")
+    private long statsIntervalMs;
+
+    private InstrumentedThreadPoolExecutor[] stripes;
+
+    private ScheduledExecutorService statsScheduler;
+
+    @PostConstruct
+    public void init() {
+        int stripeCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        stripes = new InstrumentedThreadPoolExecutor[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new InstrumentedThreadPoolExecutor("plugin-callback-" + i, 1, queueSize, rejectionPolicy);
+        }
+        if (statsIntervalMs > 0) {
+            statsScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("plugin-callback-stats").setDaemon(true).build());
+            statsScheduler.scheduleAtFixedRate(() -> log.info("Plugin callback executor stats: threads [{}], completed [{}], pending [{}], rejected [{}]",
+                    stripeCount, getCompletedCount(), getPendingCount(), getRejectedCount()), statsIntervalMs, statsIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+        if (stripes != null) {
+            for (InstrumentedThreadPoolExecutor stripe : stripes) {
+                stripe.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Executes the callback on the stripe of the given entity once the future completes.
+     * If the stripe rejects it, {@link FutureCallback#onFailure} is called on the completing thread instead.
+     */
+    public <T> void addCallback(EntityId entityId, ListenableFuture<T> future, FutureCallback<? super T> callback) {
+        Executor stripe = forEntity(entityId);
+        Futures.addCallback(future, callback, command -> {
+            try {
+                stripe.execute(command);
+            } catch (RejectedExecutionException e) {
+                log.warn("[{}] Plugin callback rejected, the callback queue is full", entityId);
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    private Executor forEntity(EntityId entityId) {
+        return stripes[(entityId.hashCode() & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    public long getCompletedCount() {
+        long count = 0;
+        for (InstrumentedThreadPoolExecutor stripe : stripes) {
+            count += stripe.getExecutedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Number of callbacks queued or being executed.
+     */
+    public long getPendingCount() {
+        long count = 0;
+        for (InstrumentedThreadPoolExecutor stripe : stripes) {
+            count += stripe.getQueueSize() + stripe.getActiveCount();
+        }
+        return count;
+    }
+
+    public long getRejectedCount() {
+        long count = 0;
+        for (InstrumentedThreadPoolExecutor stripe : stripes) {
+            count += stripe.getRejectedCount();
+        }
+        return count;
+    }
+}
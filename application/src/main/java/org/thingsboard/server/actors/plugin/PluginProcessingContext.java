@@ -52,15 +52,11 @@ import org.thingsboard.server.extensions.api.plugins.ws.msg.PluginWebsocketMsg;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 @Slf4j
 public final class PluginProcessingContext implements PluginContext {
 
-    private static final Executor executor = Executors.newSingleThreadExecutor();
-
     private final SharedPluginProcessingContext pluginCtx;
     private final Optional<PluginApiCallSecurityContext> securityCtx;
 
@@ -93,22 +89,23 @@ public final class PluginProcessingContext implements PluginContext {
     public void saveAttributes(final TenantId tenantId, final EntityId entityId, final String scope, final List<AttributeKvEntry> attributes, final PluginCallback<Void> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<Void>> futures = pluginCtx.attributesService.save(entityId, scope, attributes);
-            Futures.addCallback(futures, getListCallback(callback, v -> {
+            addCallback(entityId, futures, getListCallback(callback, v -> {
                 if (entityId.getEntityType() == EntityType.DEVICE) {
                     onDeviceAttributesChanged(tenantId, new DeviceId(entityId.getId()), scope, attributes);
                 }
                 return null;
-            }), executor);
+            }));
         }));
     }
 
     @Override
     public void removeAttributes(final TenantId tenantId, final EntityId entityId, final String scope, final List<String> keys, final PluginCallback<Void> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
+            long deleteTs = System.currentTimeMillis();
             ListenableFuture<List<Void>> futures = pluginCtx.attributesService.removeAll(entityId, scope, keys);
-            Futures.addCallback(futures, getCallback(callback, v -> null), executor);
+            addCallback(entityId, futures, getCallback(callback, v -> null));
             if (entityId.getEntityType() == EntityType.DEVICE) {
-                onDeviceAttributesDeleted(tenantId, new DeviceId(entityId.getId()), keys.stream().map(key -> new AttributeKey(scope, key)).collect(Collectors.toSet()));
+                onDeviceAttributesDeleted(tenantId, new DeviceId(entityId.getId()), keys.stream().map(key -> new AttributeKey(scope, key)).collect(Collectors.toSet()), deleteTs);
             }
         }));
     }
@@ -117,7 +114,7 @@ public final class PluginProcessingContext implements PluginContext {
     public void loadAttribute(EntityId entityId, String attributeType, String attributeKey, final PluginCallback<Optional<AttributeKvEntry>> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<Optional<AttributeKvEntry>> future = pluginCtx.attributesService.find(entityId, attributeType, attributeKey);
-            Futures.addCallback(future, getCallback(callback, v -> v), executor);
+            addCallback(entityId, future, getCallback(callback, v -> v));
         }));
     }
 
@@ -125,7 +122,7 @@ public final class PluginProcessingContext implements PluginContext {
     public void loadAttributes(EntityId entityId, String attributeType, Collection<String> attributeKeys, final PluginCallback<List<AttributeKvEntry>> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<AttributeKvEntry>> future = pluginCtx.attributesService.find(entityId, attributeType, attributeKeys);
-            Futures.addCallback(future, getCallback(callback, v -> v), executor);
+            addCallback(entityId, future, getCallback(callback, v -> v));
         }));
     }
 
@@ -133,7 +130,7 @@ public final class PluginProcessingContext implements PluginContext {
     public void loadAttributes(EntityId entityId, String attributeType, PluginCallback<List<AttributeKvEntry>> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<AttributeKvEntry>> future = pluginCtx.attributesService.findAll(entityId, attributeType);
-            Futures.addCallback(future, getCallback(callback, v -> v), executor);
+            addCallback(entityId, future, getCallback(callback, v -> v));
         }));
     }
 
@@ -142,7 +139,7 @@ public final class PluginProcessingContext implements PluginContext {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             List<ListenableFuture<List<AttributeKvEntry>>> futures = new ArrayList<>();
             attributeTypes.forEach(attributeType -> futures.add(pluginCtx.attributesService.findAll(entityId, attributeType)));
-            convertFuturesAndAddCallback(callback, futures);
+            convertFuturesAndAddCallback(entityId, callback, futures);
         }));
     }
 
@@ -151,7 +148,7 @@ public final class PluginProcessingContext implements PluginContext {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             List<ListenableFuture<List<AttributeKvEntry>>> futures = new ArrayList<>();
             attributeTypes.forEach(attributeType -> futures.add(pluginCtx.attributesService.find(entityId, attributeType, attributeKeys)));
-            convertFuturesAndAddCallback(callback, futures);
+            convertFuturesAndAddCallback(entityId, callback, futures);
         }));
     }
 
@@ -159,7 +156,7 @@ public final class PluginProcessingContext implements PluginContext {
     public void saveTsData(final EntityId entityId, final TsKvEntry entry, final PluginCallback<Void> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<Void>> rsListFuture = pluginCtx.tsService.save(entityId, entry);
-            Futures.addCallback(rsListFuture, getListCallback(callback, v -> null), executor);
+            addCallback(entityId, rsListFuture, getListCallback(callback, v -> null));
         }));
     }
 
@@ -172,7 +169,7 @@ public final class PluginProcessingContext implements PluginContext {
     public void saveTsData(final EntityId entityId, final List<TsKvEntry> entries, long ttl, final PluginCallback<Void> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<Void>> rsListFuture = pluginCtx.tsService.save(entityId, entries, ttl);
-            Futures.addCallback(rsListFuture, getListCallback(callback, v -> null), executor);
+            addCallback(entityId, rsListFuture, getListCallback(callback, v -> null));
         }));
     }
 
@@ -181,7 +178,7 @@ public final class PluginProcessingContext implements PluginContext {
     public void loadTimeseries(final EntityId entityId, final List<TsKvQuery> queries, final PluginCallback<List<TsKvEntry>> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<TsKvEntry>> future = pluginCtx.tsService.findAll(entityId, queries);
-            Futures.addCallback(future, getCallback(callback, v -> v), executor);
+            addCallback(entityId, future, getCallback(callback, v -> v));
         }));
     }
 
@@ -189,7 +186,7 @@ public final class PluginProcessingContext implements PluginContext {
     public void loadLatestTimeseries(final EntityId entityId, final PluginCallback<List<TsKvEntry>> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<TsKvEntry>> future = pluginCtx.tsService.findAllLatest(entityId);
-            Futures.addCallback(future, getCallback(callback, v -> v), executor);
+            addCallback(entityId, future, getCallback(callback, v -> v));
         }));
     }
 
@@ -197,7 +194,7 @@ public final class PluginProcessingContext implements PluginContext {
     public void loadLatestTimeseries(final EntityId entityId, final Collection<String> keys, final PluginCallback<List<TsKvEntry>> callback) {
         validate(entityId, new ValidationCallback(callback, ctx -> {
             ListenableFuture<List<TsKvEntry>> rsListFuture = pluginCtx.tsService.findLatest(entityId, keys);
-            Futures.addCallback(rsListFuture, getCallback(callback, v -> v), executor);
+            addCallback(entityId, rsListFuture, getCallback(callback, v -> v));
         }));
     }
 
@@ -216,8 +213,8 @@ public final class PluginProcessingContext implements PluginContext {
         return securityCtx;
     }
 
-    private void onDeviceAttributesDeleted(TenantId tenantId, DeviceId deviceId, Set<AttributeKey> keys) {
-        pluginCtx.toDeviceActor(DeviceAttributesEventNotificationMsg.onDelete(tenantId, deviceId, keys));
+    private void onDeviceAttributesDeleted(TenantId tenantId, DeviceId deviceId, Set<AttributeKey> keys, long deleteTs) {
+        pluginCtx.toDeviceActor(DeviceAttributesEventNotificationMsg.onDelete(tenantId, deviceId, keys, deleteTs));
     }
 
     private void onDeviceAttributesChanged(TenantId tenantId, DeviceId deviceId, String scope, List<AttributeKvEntry> values) {
@@ -435,13 +432,17 @@ public final class PluginProcessingContext implements PluginContext {
     }
 
 
-    private void convertFuturesAndAddCallback(PluginCallback<List<AttributeKvEntry>> callback, List<ListenableFuture<List<AttributeKvEntry>>> futures) {
+    private <T> void addCallback(EntityId entityId, ListenableFuture<T> future, FutureCallback<? super T> callback) {
+        pluginCtx.callbackExecutor.addCallback(entityId, future, callback);
+    }
+
+    private void convertFuturesAndAddCallback(EntityId entityId, PluginCallback<List<AttributeKvEntry>> callback, List<ListenableFuture<List<AttributeKvEntry>>> futures) {
         ListenableFuture<List<AttributeKvEntry>> future = Futures.transform(Futures.successfulAsList(futures),
                 (Function<? super List<List<AttributeKvEntry>>, ? extends List<AttributeKvEntry>>) input -> {
                     List<AttributeKvEntry> result = new ArrayList<>();
                     input.forEach(r -> result.addAll(r));
                     return result;
-                }, executor);
-        Futures.addCallback(future, getCallback(callback, v -> v), executor);
+                });
+        addCallback(entityId, future, getCallback(callback, v -> v));
     }
 }
@@ -63,6 +63,7 @@ public final class SharedPluginProcessingContext {
     final ClusterRpcService rpcService;
     final ClusterRoutingService routingService;
     final RelationService relationService;
+    final PluginCallbackExecutor callbackExecutor;
     final PluginId pluginId;
     final TenantId tenantId;
 
@@ -86,6 +87,7 @@ public final class SharedPluginProcessingContext {
         this.customerService = sysContext.getCustomerService();
         this.tenantService = sysContext.getTenantService();
         this.relationService = sysContext.getRelationService();
+        this.callbackExecutor = sysContext.getPluginCallbackExecutor();
     }
 
     public PluginId getPluginId() {
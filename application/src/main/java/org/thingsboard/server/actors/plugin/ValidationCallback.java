@@ -36,7 +36,11 @@ public class ValidationCallback implements PluginCallback<Boolean> {
     @Override
     public void onSuccess(PluginContext ctx, Boolean value) {
         if (value) {
-            action.accept(ctx);
+            try {
+                action.accept(ctx);
+            } catch (Exception e) {
+                onFailure(ctx, e);
+            }
         } else {
             onFailure(ctx, new UnauthorizedException("Permission denied."));
         }
@@ -32,10 +32,14 @@ public class ChainProcessingContext {
 
 
     public ChainProcessingContext(ChainProcessingMetaData md) {
+        this(md, RuleEngineError.NO_RULES);
+    }
+
+    public ChainProcessingContext(ChainProcessingMetaData md, RuleEngineError error) {
         super();
         this.md = md;
         this.index = 0;
-        this.error = RuleEngineError.NO_RULES;
+        this.error = error;
     }
 
     private ChainProcessingContext(ChainProcessingContext other, int indexOffset, RuleEngineError error) {
@@ -111,6 +115,21 @@ public class ChainProcessingContext {
         this.response = response;
     }
 
+    /**
+     * Returns the parallel processing this context is a part of, or null if the chain is processed sequentially.
+     */
+    public ParallelChainProcessing getParallelProcessing() {
+        return md.parallelProcessing;
+    }
+
+    int getParallelIndex() {
+        return md.parallelIndex;
+    }
+
+    RuleEngineError getRuleEngineError() {
+        return error;
+    }
+
     public RuleEngineErrorMsg getError() {
         return new RuleEngineErrorMsg(md.inMsg.getPayload().getMsgType(), error);
     }
@@ -30,12 +30,21 @@ public final class ChainProcessingMetaData {
     final ToDeviceActorMsg inMsg;
     final ActorRef originator;
     final DeviceMetaData deviceMetaData;
+    final ParallelChainProcessing parallelProcessing;
+    final int parallelIndex;
 
     public ChainProcessingMetaData(RuleActorChain chain, ToDeviceActorMsg inMsg, DeviceMetaData deviceMetaData, ActorRef originator) {
+        this(chain, inMsg, deviceMetaData, originator, null, -1);
+    }
+
+    ChainProcessingMetaData(RuleActorChain chain, ToDeviceActorMsg inMsg, DeviceMetaData deviceMetaData, ActorRef originator,
+                            ParallelChainProcessing parallelProcessing, int parallelIndex) {
         super();
         this.chain = chain;
         this.inMsg = inMsg;
         this.originator = originator;
         this.deviceMetaData = deviceMetaData;
+        this.parallelProcessing = parallelProcessing;
+        this.parallelIndex = parallelIndex;
     }
 }
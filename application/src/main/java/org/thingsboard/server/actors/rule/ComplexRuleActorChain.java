@@ -15,6 +15,8 @@
  */
 package org.thingsboard.server.actors.rule;
 
+import org.thingsboard.server.common.msg.session.MsgType;
+
 public class ComplexRuleActorChain implements RuleActorChain {
 
     private final RuleActorChain systemChain;
@@ -40,4 +42,14 @@ public class ComplexRuleActorChain implements RuleActorChain {
         }
     }
 
+    @Override
+    public RuleActorChain getApplicableRules(MsgType msgType, String deviceType) {
+        return new ComplexRuleActorChain(systemChain.getApplicableRules(msgType, deviceType), tenantChain.getApplicableRules(msgType, deviceType));
+    }
+
+    @Override
+    public RuleActorChain getSkippedRules(MsgType msgType, String deviceType) {
+        return new ComplexRuleActorChain(systemChain.getSkippedRules(msgType, deviceType), tenantChain.getSkippedRules(msgType, deviceType));
+    }
+
 }
@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.rule;
+
+import org.thingsboard.server.common.msg.core.RuleEngineError;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Processing of a device message by the rules of a chain in parallel. The chain is split into stages before each rule
+ * that depends on the previous rules. Rules of a stage are processed concurrently, each of them in a separate context,
+ * and the next stage is started when all rules of the current stage are processed.
+ * Responses and errors of the rules are merged in the chain order, so the reply sent to the device is the same as of
+ * the sequential processing, including the stop on the first failure.
+ * Side effects are not: every rule of a stage processes the message and runs its action, including rules that follow
+ * a failed rule of the same stage. Later stages are not started after a failure.
+ * Is accessed by the device actor only.
+ */
+public class ParallelChainProcessing {
+
+    private final ChainProcessingMetaData md;
+    private final RuleEngineError initialError;
+    private final ChainProcessingContext[] results;
+    private int stage;
+    private int stageEnd;
+    private int pending;
+    private boolean timedOut;
+
+    public ParallelChainProcessing(ChainProcessingMetaData md, RuleEngineError initialError) {
+        this.md = md;
+        this.initialError = initialError;
+        this.results = new ChainProcessingContext[md.chain.size()];
+    }
+
+    /**
+     * Returns the contexts of the rules of the next stage, each of them should be sent to its current actor.
+     */
+    public List<ChainProcessingContext> startNextStage() {
+        int stageStart = stageEnd;
+        stageEnd++;
+        while (stageEnd < results.length && !md.chain.getRuleActorMd(stageEnd).isDependsOnPreviousRules()) {
+            stageEnd++;
+        }
+        stage++;
+        pending = stageEnd - stageStart;
+        List<ChainProcessingContext> contexts = new ArrayList<>(pending);
+        for (int i = stageStart; i < stageEnd; i++) {
+            contexts.add(new ChainProcessingContext(new ChainProcessingMetaData(SimpleRuleActorChain.of(md.chain.getRuleActorMd(i)),
+                    md.inMsg, md.deviceMetaData, md.originator, this, i)));
+        }
+        return contexts;
+    }
+
+    /**
+     * Stores the result of a rule of the current stage.
+     *
+     * @return true if it was the last pending rule of the stage
+     */
+    public boolean onRuleProcessed(ChainProcessingContext ruleCtx) {
+        int index = ruleCtx.getParallelIndex();
+        if (timedOut || index >= stageEnd || results[index] != null) {
+            return false;
+        }
+        results[index] = ruleCtx;
+        pending--;
+        return pending == 0;
+    }
+
+    /**
+     * Completes the processing if the given stage is still not processed.
+     *
+     * @return true if the processing was completed by the timeout
+     */
+    public boolean onTimeout(int stage) {
+        if (timedOut || stage != this.stage || pending == 0) {
+            return false;
+        }
+        timedOut = true;
+        return true;
+    }
+
+    public int getStage() {
+        return stage;
+    }
+
+    /**
+     * Whether there are no more stages to start, either all rules are processed or the processing failed or timed out.
+     */
+    public boolean isCompleted() {
+        return timedOut || stageEnd == results.length || getResult().isFailure();
+    }
+
+    /**
+     * Returns the merged results of the processed rules.
+     */
+    public ChainProcessingContext getResult() {
+        ChainProcessingContext result = new ChainProcessingContext(md, initialError);
+        for (int i = 0; i < stageEnd && !result.isFailure(); i++) {
+            ChainProcessingContext ruleCtx = results[i];
+            if (ruleCtx != null) {
+                result = result.withError(ruleCtx.getRuleEngineError());
+                if (ruleCtx.getResponse() != null) {
+                    result.mergeResponse(ruleCtx.getResponse());
+                }
+            }
+        }
+        if (timedOut && !result.isFailure()) {
+            result = result.withError(RuleEngineError.PLUGIN_TIMEOUT);
+        }
+        return result;
+    }
+
+}
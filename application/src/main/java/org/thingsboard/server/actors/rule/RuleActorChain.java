@@ -15,10 +15,22 @@
  */
 package org.thingsboard.server.actors.rule;
 
+import org.thingsboard.server.common.msg.session.MsgType;
+
 public interface RuleActorChain {
 
     int size();
 
     RuleActorMetaData getRuleActorMd(int index);
 
+    /**
+     * Returns the rules of this chain, in the same order, that can match messages of the given type and device type.
+     */
+    RuleActorChain getApplicableRules(MsgType msgType, String deviceType);
+
+    /**
+     * Returns the rules of this chain, in the same order, that are skipped for messages of the given type and device type.
+     */
+    RuleActorChain getSkippedRules(MsgType msgType, String deviceType);
+
 }
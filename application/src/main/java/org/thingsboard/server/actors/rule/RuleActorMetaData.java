@@ -27,6 +27,9 @@ public class RuleActorMetaData {
     private final boolean systemRule;
     private final int weight;
     private final ActorRef actorRef;
+    private final RuleApplicability applicability;
+    private final boolean dependsOnPreviousRules;
+    private volatile boolean active = true;
 
     public static final Comparator<RuleActorMetaData> RULE_ACTOR_MD_COMPARATOR = new Comparator<RuleActorMetaData>() {
 
@@ -43,19 +46,31 @@ public class RuleActorMetaData {
     };
 
     public static RuleActorMetaData systemRule(RuleId ruleId, int weight, ActorRef actorRef) {
-        return new RuleActorMetaData(ruleId, true, weight, actorRef);
+        return systemRule(ruleId, weight, actorRef, RuleApplicability.ANY);
+    }
+
+    public static RuleActorMetaData systemRule(RuleId ruleId, int weight, ActorRef actorRef, RuleApplicability applicability) {
+        return systemRule(ruleId, weight, actorRef, applicability, false);
+    }
+
+    public static RuleActorMetaData systemRule(RuleId ruleId, int weight, ActorRef actorRef, RuleApplicability applicability,
+                                               boolean dependsOnPreviousRules) {
+        return new RuleActorMetaData(ruleId, true, weight, actorRef, applicability, dependsOnPreviousRules);
     }
 
     public static RuleActorMetaData tenantRule(RuleId ruleId, int weight, ActorRef actorRef) {
-        return new RuleActorMetaData(ruleId, false, weight, actorRef);
+        return new RuleActorMetaData(ruleId, false, weight, actorRef, RuleApplicability.ANY, false);
     }
 
-    private RuleActorMetaData(RuleId ruleId, boolean systemRule, int weight, ActorRef actorRef) {
+    private RuleActorMetaData(RuleId ruleId, boolean systemRule, int weight, ActorRef actorRef, RuleApplicability applicability,
+                              boolean dependsOnPreviousRules) {
         super();
         this.ruleId = ruleId;
         this.systemRule = systemRule;
         this.weight = weight;
         this.actorRef = actorRef;
+        this.applicability = applicability;
+        this.dependsOnPreviousRules = dependsOnPreviousRules;
     }
 
     public RuleId getRuleId() {
@@ -74,6 +89,29 @@ public class RuleActorMetaData {
         return actorRef;
     }
 
+    public RuleApplicability getApplicability() {
+        return applicability;
+    }
+
+    /**
+     * Whether the rule has to be processed after the previous rules of the chain when the chain is processed in parallel.
+     */
+    public boolean isDependsOnPreviousRules() {
+        return dependsOnPreviousRules;
+    }
+
+    /**
+     * Whether the rule is still active. Chains built before the rule was suspended, updated or deleted may still
+     * reference it, and its actor then answers with {@link org.thingsboard.server.common.msg.core.RuleEngineError#NO_ACTIVE_RULES}.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    public void deactivate() {
+        this.active = false;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
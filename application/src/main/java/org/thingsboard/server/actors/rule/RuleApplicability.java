@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.rule;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.msg.session.MsgType;
+import org.thingsboard.server.extensions.core.filter.DeviceTypeFilter;
+import org.thingsboard.server.extensions.core.filter.DeviceTypeFilterConfiguration;
+import org.thingsboard.server.extensions.core.filter.MsgTypeFilter;
+import org.thingsboard.server.extensions.core.filter.MsgTypeFilterConfiguration;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Message types and device types a rule can match, derived from its message type and device type filters.
+ * Rules are skipped for messages they can't match instead of being asked to run their filters.
+ */
+@Slf4j
+public final class RuleApplicability {
+
+    public static final RuleApplicability ANY = new RuleApplicability(null, null);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Set<MsgType> msgTypes;
+    private final Set<String> deviceTypes;
+
+    private RuleApplicability(Set<MsgType> msgTypes, Set<String> deviceTypes) {
+        this.msgTypes = msgTypes;
+        this.deviceTypes = deviceTypes;
+    }
+
+    public static RuleApplicability of(JsonNode filters) {
+        if (filters == null || !filters.isArray()) {
+            return ANY;
+        }
+        Set<MsgType> msgTypes = null;
+        Set<String> deviceTypes = null;
+        try {
+            for (JsonNode filter : filters) {
+                String clazz = filter.has("clazz") ? filter.get("clazz").asText() : null;
+                if (MsgTypeFilter.class.getName().equals(clazz)) {
+                    MsgTypeFilterConfiguration configuration = mapper.treeToValue(filter.get("configuration"), MsgTypeFilterConfiguration.class);
+                    Set<MsgType> filterMsgTypes = EnumSet.noneOf(MsgType.class);
+                    Arrays.stream(configuration.getMessageTypes()).map(MsgTypeFilter::toMsgType).forEach(filterMsgTypes::add);
+                    msgTypes = intersect(msgTypes, filterMsgTypes);
+                } else if (DeviceTypeFilter.class.getName().equals(clazz)) {
+                    DeviceTypeFilterConfiguration configuration = mapper.treeToValue(filter.get("configuration"), DeviceTypeFilterConfiguration.class);
+                    Set<String> filterDeviceTypes = Arrays.stream(configuration.getDeviceTypes())
+                            .map(DeviceTypeFilterConfiguration.DeviceTypeName::getName)
+                            .collect(Collectors.toSet());
+                    deviceTypes = intersect(deviceTypes, filterDeviceTypes);
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Failed to parse rule filters {}, rule is applicable to all messages", filters, e);
+            return ANY;
+        }
+        return new RuleApplicability(msgTypes, deviceTypes);
+    }
+
+    private static <T> Set<T> intersect(Set<T> current, Set<T> filterValues) {
+        if (current == null) {
+            return filterValues;
+        }
+        Set<T> result = new HashSet<>(current);
+        result.retainAll(filterValues);
+        return result;
+    }
+
+    public boolean isApplicable(MsgType msgType) {
+        return msgTypes == null || msgTypes.contains(msgType);
+    }
+
+    public boolean isApplicable(MsgType msgType, String deviceType) {
+        return isApplicable(msgType) && (deviceTypes == null || deviceTypes.contains(deviceType));
+    }
+
+    public boolean hasDeviceTypes() {
+        return deviceTypes != null;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleApplicability [msgTypes=" + msgTypes + ", deviceTypes=" + deviceTypes + "]";
+    }
+}
@@ -15,17 +15,51 @@
  */
 package org.thingsboard.server.actors.rule;
 
+import org.thingsboard.server.common.msg.session.MsgType;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 public class SimpleRuleActorChain implements RuleActorChain {
 
+    private static final SimpleRuleActorChain EMPTY = new SimpleRuleActorChain(Collections.emptyList());
+
     private final List<RuleActorMetaData> rules;
+    private final Map<MsgType, RuleSelection> rulesByMsgType;
+    private final boolean hasDeviceTypes;
+    private final ConcurrentMap<MsgType, ConcurrentMap<String, RuleSelection>> rulesByDeviceType;
 
     public SimpleRuleActorChain(Set<RuleActorMetaData> ruleSet) {
         rules = new ArrayList<>(ruleSet);
         rules.sort(RuleActorMetaData.RULE_ACTOR_MD_COMPARATOR);
+        rulesByMsgType = new EnumMap<>(MsgType.class);
+        for (MsgType msgType : MsgType.values()) {
+            if (msgType.requiresRulesProcessing()) {
+                rulesByMsgType.put(msgType, RuleSelection.of(rules, Collections.emptyList(),
+                        rule -> rule.getApplicability().isApplicable(msgType)));
+            }
+        }
+        hasDeviceTypes = rules.stream().anyMatch(rule -> rule.getApplicability().hasDeviceTypes());
+        rulesByDeviceType = new ConcurrentHashMap<>();
+    }
+
+    private SimpleRuleActorChain(List<RuleActorMetaData> rules) {
+        this.rules = rules;
+        this.rulesByMsgType = null;
+        this.hasDeviceTypes = false;
+        this.rulesByDeviceType = null;
+    }
+
+    static SimpleRuleActorChain of(RuleActorMetaData rule) {
+        return new SimpleRuleActorChain(Collections.singletonList(rule));
     }
 
     public int size() {
@@ -36,4 +70,47 @@ public class SimpleRuleActorChain implements RuleActorChain {
         return rules.get(index);
     }
 
+    @Override
+    public RuleActorChain getApplicableRules(MsgType msgType, String deviceType) {
+        RuleSelection selection = select(msgType, deviceType);
+        return selection != null ? selection.applicable : this;
+    }
+
+    @Override
+    public RuleActorChain getSkippedRules(MsgType msgType, String deviceType) {
+        RuleSelection selection = select(msgType, deviceType);
+        return selection != null ? selection.skipped : EMPTY;
+    }
+
+    private RuleSelection select(MsgType msgType, String deviceType) {
+        RuleSelection msgTypeRules = rulesByMsgType != null ? rulesByMsgType.get(msgType) : null;
+        if (msgTypeRules == null || !hasDeviceTypes) {
+            return msgTypeRules;
+        }
+        return rulesByDeviceType.computeIfAbsent(msgType, type -> new ConcurrentHashMap<>())
+                .computeIfAbsent(String.valueOf(deviceType), type -> RuleSelection.of(msgTypeRules.applicable.rules, msgTypeRules.skipped.rules,
+                        rule -> rule.getApplicability().isApplicable(msgType, deviceType)));
+    }
+
+    /**
+     * Rules of the chain that can match a message and the ones that are skipped for it, both in chain order.
+     */
+    private static class RuleSelection {
+        private final SimpleRuleActorChain applicable;
+        private final SimpleRuleActorChain skipped;
+
+        private RuleSelection(SimpleRuleActorChain applicable, SimpleRuleActorChain skipped) {
+            this.applicable = applicable;
+            this.skipped = skipped;
+        }
+
+        static RuleSelection of(List<RuleActorMetaData> candidates, List<RuleActorMetaData> alreadySkipped, Predicate<RuleActorMetaData> isApplicable) {
+            Map<Boolean, List<RuleActorMetaData>> partitioned = candidates.stream().collect(Collectors.partitioningBy(isApplicable));
+            List<RuleActorMetaData> skipped = new ArrayList<>(alreadySkipped);
+            skipped.addAll(partitioned.get(false));
+            skipped.sort(RuleActorMetaData.RULE_ACTOR_MD_COMPARATOR);
+            return new RuleSelection(new SimpleRuleActorChain(partitioned.get(true)), new SimpleRuleActorChain(skipped));
+        }
+    }
+
 }
@@ -18,7 +18,10 @@ package org.thingsboard.server.actors.service;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
+import akka.actor.SupervisorStrategy;
 import akka.actor.Terminated;
+import akka.routing.Broadcast;
+import akka.routing.ConsistentHashingPool;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -29,7 +32,9 @@ import org.thingsboard.server.actors.rpc.RpcManagerActor;
 import org.thingsboard.server.actors.rpc.RpcSessionCreateRequestMsg;
 import org.thingsboard.server.actors.rpc.RpcSessionTellMsg;
 import org.thingsboard.server.actors.session.SessionManagerActor;
+import org.thingsboard.server.actors.session.SyncSessionManager;
 import org.thingsboard.server.actors.stats.StatsActor;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.PluginId;
 import org.thingsboard.server.common.data.id.RuleId;
@@ -43,6 +48,9 @@ import org.thingsboard.server.common.msg.core.ToDeviceSessionActorMsg;
 import org.thingsboard.server.extensions.api.device.DeviceNameOrTypeUpdateMsg;
 import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
+import org.thingsboard.server.dao.attributes.AttributesCache;
+import org.thingsboard.server.dao.rule.SensorThresholdService;
+import org.thingsboard.server.dao.timeseries.LatestTsKvCache;
 import org.thingsboard.server.extensions.api.device.DeviceCredentialsUpdateNotificationMsg;
 import org.thingsboard.server.extensions.api.device.ToDeviceActorNotificationMsg;
 import org.thingsboard.server.extensions.api.plugins.msg.ToPluginActorMsg;
@@ -83,6 +91,15 @@ public class DefaultActorService implements ActorService {
     @Autowired
     private DiscoveryService discoveryService;
 
+    @Autowired
+    private LatestTsKvCache latestTsKvCache;
+
+    @Autowired
+    private AttributesCache attributesCache;
+
+    @Autowired
+    private SensorThresholdService sensorThresholdService;
+
     private ActorSystem system;
 
     private ActorRef appActor;
@@ -91,6 +108,8 @@ public class DefaultActorService implements ActorService {
 
     private ActorRef rpcManagerActor;
 
+    private SyncSessionManager syncSessionManager;
+
     @PostConstruct
     public void initActorSystem() {
         log.info("Initializing Actor system. {}", actorContext.getRuleService());
@@ -101,8 +120,15 @@ public class DefaultActorService implements ActorService {
         appActor = system.actorOf(Props.create(new AppActor.ActorCreator(actorContext)).withDispatcher(APP_DISPATCHER_NAME), "appActor");
         actorContext.setAppActor(appActor);
 
-        sessionManagerActor = system.actorOf(Props.create(new SessionManagerActor.ActorCreator(actorContext)).withDispatcher(CORE_DISPATCHER_NAME),
+        int sessionManagerShards = actorContext.getSessionManagerShards() > 0 ?
+                actorContext.getSessionManagerShards() : Runtime.getRuntime().availableProcessors();
+        sessionManagerActor = system.actorOf(Props.create(new SessionManagerActor.ActorCreator(actorContext)).withDispatcher(CORE_DISPATCHER_NAME)
+                        .withRouter(new ConsistentHashingPool(sessionManagerShards)
+                                .withHashMapper(SessionManagerActor.SESSION_HASH_MAPPER)
+                                .withSupervisorStrategy(SupervisorStrategy.defaultStrategy())),
                 "sessionManagerActor");
+        log.info("Started session manager with {} shards", sessionManagerShards);
+        syncSessionManager = new SyncSessionManager(actorContext);
         actorContext.setSessionManagerActor(sessionManagerActor);
 
         rpcManagerActor = system.actorOf(Props.create(new RpcManagerActor.ActorCreator(actorContext)).withDispatcher(CORE_DISPATCHER_NAME),
@@ -113,6 +139,9 @@ public class DefaultActorService implements ActorService {
 
         rpcService.init(this);
 
+        latestTsKvCache.setOwnershipFilter(this::isOwnedByThisNode);
+        attributesCache.setOwnershipFilter(this::isOwnedByThisNode);
+        sensorThresholdService.setOwnershipFilter(this::isOwnedByThisNode);
         discoveryService.addListener(this);
         log.info("Actor system initialized.");
     }
@@ -131,7 +160,9 @@ public class DefaultActorService implements ActorService {
     @Override
     public void process(SessionAwareMsg msg) {
         log.debug("Processing session aware msg: {}", msg);
-        sessionManagerActor.tell(msg, ActorRef.noSender());
+        if (!syncSessionManager.process(msg)) {
+            sessionManagerActor.tell(msg, ActorRef.noSender());
+        }
     }
 
     @Override
@@ -167,7 +198,9 @@ public class DefaultActorService implements ActorService {
     @Override
     public void onMsg(ToDeviceSessionActorMsg msg) {
         log.trace("Processing session rpc msg: {}", msg);
-        sessionManagerActor.tell(msg, ActorRef.noSender());
+        if (!syncSessionManager.onToDeviceMsg(msg)) {
+            sessionManagerActor.tell(msg, ActorRef.noSender());
+        }
     }
 
     @Override
@@ -251,9 +284,17 @@ public class DefaultActorService implements ActorService {
         appActor.tell(msg, ActorRef.noSender());
     }
 
+    private boolean isOwnedByThisNode(EntityId entityId) {
+        return !actorContext.getRoutingService().resolveById(entityId).isPresent();
+    }
+
     private void broadcast(ClusterEventMsg msg) {
+        latestTsKvCache.invalidateNotOwned();
+        attributesCache.invalidateNotOwned();
+        sensorThresholdService.invalidateNotOwned();
         this.appActor.tell(msg, ActorRef.noSender());
-        this.sessionManagerActor.tell(msg, ActorRef.noSender());
+        this.sessionManagerActor.tell(new Broadcast(msg), ActorRef.noSender());
+        this.syncSessionManager.onClusterEvent(msg);
         this.rpcManagerActor.tell(msg, ActorRef.noSender());
     }
 }
@@ -38,6 +38,7 @@ abstract class AbstractSessionActorMsgProcessor extends AbstractContextAwareMsgP
     protected final SessionId sessionId;
     protected SessionContext sessionCtx;
     protected ToDeviceActorMsg toDeviceActorMsgPrototype;
+    private int pendingAppActorMsgs;
 
     protected AbstractSessionActorMsgProcessor(ActorSystemContext ctx, LoggingAdapter logger, SessionId sessionId) {
         super(ctx, logger);
@@ -93,7 +94,7 @@ abstract class AbstractSessionActorMsgProcessor extends AbstractContextAwareMsgP
                 systemContext.getRpcService().tell(newAddress.get(),
                         toForward.toOtherAddress(systemContext.getRoutingService().getCurrentServer()));
             } else {
-                getAppActor().tell(toForward, ctx.self());
+                forwardToTenantActor(ctx, toForward);
             }
         }
         return newAddress;
@@ -104,7 +105,25 @@ abstract class AbstractSessionActorMsgProcessor extends AbstractContextAwareMsgP
             systemContext.getRpcService().tell(address.get(),
                     toForward.toOtherAddress(systemContext.getRoutingService().getCurrentServer()));
         } else {
-            getAppActor().tell(toForward, ctx.self());
+            forwardToTenantActor(ctx, toForward);
+        }
+    }
+
+    /**
+     * Sends the message to the tenant actor directly once it is registered.
+     * Until the app actor confirms all messages sent through it, the following messages go the same way to keep their order.
+     */
+    private void forwardToTenantActor(ActorContext ctx, ToDeviceActorMsg toForward) {
+        if (pendingAppActorMsgs == 0 && systemContext.getTenantActorRegistry().tell(toForward, ctx.self())) {
+            return;
+        }
+        pendingAppActorMsgs++;
+        getAppActor().tell(toForward, ctx.self());
+    }
+
+    void onDeviceMsgForwarded() {
+        if (pendingAppActorMsgs > 0) {
+            pendingAppActorMsgs--;
         }
     }
 
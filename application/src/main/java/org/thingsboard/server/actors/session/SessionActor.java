@@ -19,6 +19,7 @@ import akka.actor.OneForOneStrategy;
 import akka.actor.SupervisorStrategy;
 import akka.japi.Function;
 import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.actors.app.DeviceMsgForwardedMsg;
 import org.thingsboard.server.actors.service.ContextAwareActor;
 import org.thingsboard.server.actors.service.ContextBasedCreator;
 import org.thingsboard.server.actors.shared.SessionTimeoutMsg;
@@ -73,6 +74,8 @@ public class SessionActor extends ContextAwareActor {
             processSessionCtrlMsg((SessionCtrlMsg) msg);
         } else if (msg instanceof ClusterEventMsg) {
             processClusterEvent((ClusterEventMsg) msg);
+        } else if (msg instanceof DeviceMsgForwardedMsg) {
+            processDeviceMsgForwarded();
         } else {
             logger.warning("[{}] Unknown msg: {}", sessionId, msg);
         }
@@ -82,6 +85,12 @@ public class SessionActor extends ContextAwareActor {
         processor.processClusterEvent(context(), msg);
     }
 
+    private void processDeviceMsgForwarded() {
+        if (processor != null) {
+            processor.onDeviceMsgForwarded();
+        }
+    }
+
     private void processDeviceMsg(ToDeviceActorSessionMsg msg) {
         initProcessor(msg);
         processor.processToDeviceActorMsg(context(), msg);
@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import akka.actor.*;
+import akka.routing.ConsistentHashingRouter.ConsistentHashMapper;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.service.ContextAwareActor;
 import org.thingsboard.server.actors.service.ContextBasedCreator;
@@ -35,10 +36,24 @@ import org.thingsboard.server.common.msg.core.SessionCloseMsg;
 import org.thingsboard.server.common.msg.core.ToDeviceSessionActorMsg;
 import org.thingsboard.server.common.msg.session.SessionCtrlMsg;
 
+/**
+ * Owns the session actors of one shard. Messages are routed to shards by the session id,
+ * see {@link #SESSION_HASH_MAPPER}.
+ */
 public class SessionManagerActor extends ContextAwareActor {
 
     private static final int INITIAL_SESSION_MAP_SIZE = 1024;
 
+    public static final ConsistentHashMapper SESSION_HASH_MAPPER = msg -> {
+        if (msg instanceof SessionAwareMsg) {
+            return ((SessionAwareMsg) msg).getSessionId().toUidStr();
+        } else if (msg instanceof SessionTimeoutMsg) {
+            return ((SessionTimeoutMsg) msg).getSessionId().toUidStr();
+        } else {
+            return null;
+        }
+    };
+
     private final LoggingAdapter log = Logging.getLogger(getContext().system(), this);
 
     private final Map<String, ActorRef> sessionActors;
@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.session;
+
+import akka.actor.ActorRef;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.common.data.id.SessionId;
+import org.thingsboard.server.common.msg.aware.SessionAwareMsg;
+import org.thingsboard.server.common.msg.cluster.ClusterEventMsg;
+import org.thingsboard.server.common.msg.cluster.ServerAddress;
+import org.thingsboard.server.common.msg.core.ToDeviceSessionActorMsg;
+import org.thingsboard.server.common.msg.device.BasicToDeviceActorMsg;
+import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
+import org.thingsboard.server.common.msg.session.BasicSessionActorToAdaptorMsg;
+import org.thingsboard.server.common.msg.session.SessionContext;
+import org.thingsboard.server.common.msg.session.SessionCtrlMsg;
+import org.thingsboard.server.common.msg.session.SessionType;
+import org.thingsboard.server.common.msg.session.ToDeviceActorSessionMsg;
+import org.thingsboard.server.common.msg.session.ctrl.SessionCloseMsg;
+import org.thingsboard.server.common.msg.session.ex.SessionException;
+import scala.concurrent.duration.Duration;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes request/response (HTTP, CoAP) sessions without session actors.
+ * The request is forwarded to the device actor directly and the session context is completed
+ * by the response or the timeout, same as by {@link SyncMsgProcessor}.
+ */
+@Slf4j
+public class SyncSessionManager {
+
+    private final ActorSystemContext systemContext;
+    private final ConcurrentMap<String, PendingSyncSession> pendingSessions = new ConcurrentHashMap<>();
+
+    public SyncSessionManager(ActorSystemContext systemContext) {
+        this.systemContext = systemContext;
+    }
+
+    /**
+     * Returns false if the message should be processed by the session actors.
+     */
+    public boolean process(SessionAwareMsg msg) {
+        if (msg instanceof ToDeviceActorSessionMsg) {
+            ToDeviceActorSessionMsg sessionMsg = (ToDeviceActorSessionMsg) msg;
+            SessionContext sessionCtx = sessionMsg.getSessionMsg().getSessionContext();
+            if (!systemContext.isSyncSessionLightweight() || sessionCtx.getSessionType() != SessionType.SYNC) {
+                return false;
+            }
+            String sessionIdStr = msg.getSessionId().toUidStr();
+            PendingSyncSession session = new PendingSyncSession(msg.getSessionId(), sessionCtx, new BasicToDeviceActorMsg(sessionMsg, SessionType.SYNC));
+            pendingSessions.put(sessionIdStr, session);
+            session.targetServer = forwardToAppActor(session.toDeviceActorMsg);
+            long timeout = sessionCtx.getTimeout() > 0 ? sessionCtx.getTimeout() : systemContext.getSyncSessionTimeout();
+            systemContext.getScheduler().scheduleOnce(Duration.create(timeout, TimeUnit.MILLISECONDS),
+                    () -> onTimeout(sessionIdStr, session), systemContext.getActorSystem().dispatcher());
+            return true;
+        } else if (msg instanceof SessionCtrlMsg) {
+            return pendingSessions.remove(msg.getSessionId().toUidStr()) != null;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns false if the response does not belong to a session processed by this manager.
+     */
+    public boolean onToDeviceMsg(ToDeviceSessionActorMsg msg) {
+        PendingSyncSession session = pendingSessions.remove(msg.getSessionId().toUidStr());
+        if (session == null) {
+            return false;
+        }
+        try {
+            session.sessionCtx.onMsg(new BasicSessionActorToAdaptorMsg(session.sessionCtx, msg.getMsg()));
+        } catch (SessionException e) {
+            log.warn("[{}] Failed to push session response msg", session.sessionId, e);
+        }
+        return true;
+    }
+
+    public void onClusterEvent(ClusterEventMsg msg) {
+        pendingSessions.values().forEach(session -> {
+            Optional<ServerAddress> newTargetServer = systemContext.getRoutingService().resolveById(session.toDeviceActorMsg.getDeviceId());
+            if (!newTargetServer.equals(session.targetServer)) {
+                log.debug("[{}] Forwarding msg to new server: {}", session.sessionId, newTargetServer);
+                forwardToAppActor(session.toDeviceActorMsg, newTargetServer);
+                session.targetServer = newTargetServer;
+            }
+        });
+    }
+
+    private void onTimeout(String sessionIdStr, PendingSyncSession session) {
+        if (pendingSessions.remove(sessionIdStr, session)) {
+            try {
+                session.sessionCtx.onMsg(SessionCloseMsg.onTimeout(session.sessionId));
+            } catch (SessionException e) {
+                log.warn("[{}] Failed to push session close msg", session.sessionId, e);
+            }
+        }
+    }
+
+    private Optional<ServerAddress> forwardToAppActor(ToDeviceActorMsg toForward) {
+        Optional<ServerAddress> address = systemContext.getRoutingService().resolveById(toForward.getDeviceId());
+        forwardToAppActor(toForward, address);
+        return address;
+    }
+
+    private void forwardToAppActor(ToDeviceActorMsg toForward, Optional<ServerAddress> address) {
+        if (address.isPresent()) {
+            systemContext.getRpcService().tell(address.get(),
+                    toForward.toOtherAddress(systemContext.getRoutingService().getCurrentServer()));
+        } else if (!systemContext.getTenantActorRegistry().tell(toForward, ActorRef.noSender())) {
+            systemContext.getAppActor().tell(toForward, ActorRef.noSender());
+        }
+    }
+
+    private static class PendingSyncSession {
+        private final SessionId sessionId;
+        private final SessionContext sessionCtx;
+        private final ToDeviceActorMsg toDeviceActorMsg;
+        private volatile Optional<ServerAddress> targetServer = Optional.empty();
+
+        PendingSyncSession(SessionId sessionId, SessionContext sessionCtx, ToDeviceActorMsg toDeviceActorMsg) {
+            this.sessionId = sessionId;
+            this.sessionCtx = sessionCtx;
+            this.toDeviceActorMsg = toDeviceActorMsg;
+        }
+    }
+}
@@ -18,11 +18,13 @@ package org.thingsboard.server.actors.shared.rule;
 import akka.actor.ActorContext;
 import akka.actor.ActorRef;
 import akka.actor.Props;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.rule.RuleActor;
 import org.thingsboard.server.actors.rule.RuleActorChain;
 import org.thingsboard.server.actors.rule.RuleActorMetaData;
+import org.thingsboard.server.actors.rule.RuleApplicability;
 import org.thingsboard.server.actors.rule.SimpleRuleActorChain;
 import org.thingsboard.server.actors.service.ContextAwareActor;
 import org.thingsboard.server.common.data.id.RuleId;
@@ -39,6 +41,8 @@ import java.util.*;
 @Slf4j
 public abstract class RuleManager {
 
+    private static final String DEPENDS_ON_PREVIOUS_RULES = "dependsOnPreviousRules";
+
     protected final ActorSystemContext systemContext;
     protected final RuleService ruleService;
     protected final Map<RuleId, ActorRef> ruleActors;
@@ -66,7 +70,7 @@ public abstract class RuleManager {
         for (RuleMetaData rule : ruleIterator) {
             log.debug("[{}] Creating rule actor {}", rule.getId(), rule);
             ActorRef ref = getOrCreateRuleActor(context, rule.getId());
-            ruleMap.put(rule, RuleActorMetaData.systemRule(rule.getId(), rule.getWeight(), ref));
+            ruleMap.put(rule, toRuleActorMetaData(rule, ref));
             log.debug("[{}] Rule actor created.", rule.getId());
         }
 
@@ -87,15 +91,26 @@ public abstract class RuleManager {
                     .findFirst()
                     .orElse(null);
             if (rule != null) {
-                ruleMap.remove(rule);
+                RuleActorMetaData removed = ruleMap.remove(rule);
+                if (removed != null) {
+                    removed.deactivate();
+                }
                 ruleActors.remove(ruleId);
             }
         }
         if (rule != null) {
             RuleActorMetaData actorMd = ruleMap.get(rule);
             if (actorMd == null) {
+                RuleMetaData updated = rule;
+                ruleMap.entrySet().removeIf(r -> {
+                    boolean replaced = r.getKey().getId().equals(updated.getId());
+                    if (replaced && updated.getState() != ComponentLifecycleState.ACTIVE) {
+                        r.getValue().deactivate();
+                    }
+                    return replaced;
+                });
                 ActorRef ref = getOrCreateRuleActor(context, rule.getId());
-                actorMd = RuleActorMetaData.systemRule(rule.getId(), rule.getWeight(), ref);
+                actorMd = toRuleActorMetaData(rule, ref);
                 ruleMap.put(rule, actorMd);
             }
             refreshRuleChain();
@@ -123,6 +138,12 @@ public abstract class RuleManager {
         return ruleChain;
     }
 
+    private static RuleActorMetaData toRuleActorMetaData(RuleMetaData rule, ActorRef ref) {
+        JsonNode additionalInfo = rule.getAdditionalInfo();
+        boolean dependsOnPreviousRules = additionalInfo != null && additionalInfo.path(DEPENDS_ON_PREVIOUS_RULES).asBoolean(false);
+        return RuleActorMetaData.systemRule(rule.getId(), rule.getWeight(), ref, RuleApplicability.of(rule.getFilters()), dependsOnPreviousRules);
+    }
+
     private void refreshRuleChain() {
         Set<RuleActorMetaData> activeRuleSet = new HashSet<>();
         for (Map.Entry<RuleMetaData, RuleActorMetaData> rule : ruleMap.entrySet()) {
@@ -15,12 +15,18 @@
  */
 package org.thingsboard.server.actors.tenant;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.device.DeviceActor;
+import org.thingsboard.server.actors.device.DeviceActorPassivationMsg;
+import org.thingsboard.server.actors.device.DeviceActorResumeMsg;
+import org.thingsboard.server.actors.device.DeviceActorStopMsg;
 import org.thingsboard.server.actors.plugin.PluginTerminationMsg;
 import org.thingsboard.server.actors.rule.ComplexRuleActorChain;
 import org.thingsboard.server.actors.rule.RuleActorChain;
@@ -38,6 +44,7 @@ import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
 
 import akka.actor.ActorRef;
 import akka.actor.Props;
+import akka.actor.Terminated;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
@@ -53,6 +60,7 @@ public class TenantActor extends ContextAwareActor {
     private final RuleManager ruleManager;
     private final PluginManager pluginManager;
     private final Map<DeviceId, ActorRef> deviceActors;
+    private final Map<DeviceId, List<Object>> passivatingDeviceMsgs;
 
     private TenantActor(ActorSystemContext systemContext, TenantId tenantId) {
         super(systemContext);
@@ -60,6 +68,7 @@ public class TenantActor extends ContextAwareActor {
         this.ruleManager = new TenantRuleManager(systemContext, tenantId);
         this.pluginManager = new TenantPluginManager(systemContext, tenantId);
         this.deviceActors = new HashMap<>();
+        this.passivatingDeviceMsgs = new HashMap<>();
     }
 
     @Override
@@ -93,6 +102,12 @@ public class TenantActor extends ContextAwareActor {
             onComponentLifecycleMsg((ComponentLifecycleMsg) msg);
         } else if (msg instanceof PluginTerminationMsg) {
             onPluginTerminated((PluginTerminationMsg) msg);
+        } else if (msg instanceof DeviceActorPassivationMsg) {
+            onDeviceActorPassivation((DeviceActorPassivationMsg) msg);
+        } else if (msg instanceof DeviceActorResumeMsg) {
+            onDeviceActorResume((DeviceActorResumeMsg) msg);
+        } else if (msg instanceof Terminated) {
+            onDeviceActorTerminated((Terminated) msg);
         } else {
             logger.warning("[{}] Unknown message: {}!", tenantId, msg);
         }
@@ -104,11 +119,11 @@ public class TenantActor extends ContextAwareActor {
     }
 
     private void onToDeviceActorMsg(ToDeviceActorMsg msg) {
-        getOrCreateDeviceActor(msg.getDeviceId()).tell(msg, ActorRef.noSender());
+        tellDeviceActor(msg.getDeviceId(), msg, ActorRef.noSender());
     }
 
     private void onToDeviceActorMsg(ToDeviceActorNotificationMsg msg) {
-        getOrCreateDeviceActor(msg.getDeviceId()).tell(msg, ActorRef.noSender());
+        tellDeviceActor(msg.getDeviceId(), msg, ActorRef.noSender());
     }
 
     private void onToRuleMsg(ToRuleActorMsg msg) {
@@ -150,10 +165,48 @@ public class TenantActor extends ContextAwareActor {
 
     private void process(RuleChainDeviceMsg msg) {
         ToDeviceActorMsg toDeviceActorMsg = msg.getToDeviceActorMsg();
-        ActorRef deviceActor = getOrCreateDeviceActor(toDeviceActorMsg.getDeviceId());
         RuleActorChain tenantChain = ruleManager.getRuleChain(this.context());
         RuleActorChain chain = new ComplexRuleActorChain(msg.getRuleChain(), tenantChain);
-        deviceActor.tell(new RuleChainDeviceMsg(toDeviceActorMsg, chain), context().self());
+        tellDeviceActor(toDeviceActorMsg.getDeviceId(), new RuleChainDeviceMsg(toDeviceActorMsg, chain), context().self());
+    }
+
+    private void tellDeviceActor(DeviceId deviceId, Object msg, ActorRef sender) {
+        List<Object> pendingMsgs = passivatingDeviceMsgs.get(deviceId);
+        if (pendingMsgs != null) {
+            pendingMsgs.add(msg);
+        } else {
+            getOrCreateDeviceActor(deviceId).tell(msg, sender);
+        }
+    }
+
+    private void onDeviceActorPassivation(DeviceActorPassivationMsg msg) {
+        ActorRef deviceActor = deviceActors.get(msg.getDeviceId());
+        if (deviceActor != null && deviceActor.equals(sender())) {
+            logger.debug("[{}][{}] Passivating device actor", tenantId, msg.getDeviceId());
+            deviceActors.remove(msg.getDeviceId());
+            passivatingDeviceMsgs.put(msg.getDeviceId(), new ArrayList<>());
+            context().watch(deviceActor);
+            deviceActor.tell(DeviceActorStopMsg.INSTANCE, context().self());
+        }
+    }
+
+    private void onDeviceActorResume(DeviceActorResumeMsg msg) {
+        List<Object> pendingMsgs = passivatingDeviceMsgs.remove(msg.getDeviceId());
+        if (pendingMsgs != null) {
+            context().unwatch(sender());
+            deviceActors.put(msg.getDeviceId(), sender());
+            pendingMsgs.forEach(pendingMsg -> sender().tell(pendingMsg, context().self()));
+        }
+    }
+
+    private void onDeviceActorTerminated(Terminated msg) {
+        DeviceId deviceId = new DeviceId(UUID.fromString(msg.getActor().path().name()));
+        List<Object> pendingMsgs = passivatingDeviceMsgs.remove(deviceId);
+        if (pendingMsgs != null && !pendingMsgs.isEmpty()) {
+            logger.debug("[{}][{}] Recreating device actor for {} pending messages", tenantId, deviceId, pendingMsgs.size());
+            ActorRef deviceActor = getOrCreateDeviceActor(deviceId);
+            pendingMsgs.forEach(pendingMsg -> deviceActor.tell(pendingMsg, context().self()));
+        }
     }
 
     private ActorRef getOrCreateDeviceActor(DeviceId deviceId) {
@@ -23,6 +23,8 @@ import static org.mockito.Mockito.when;
 import java.util.*;
 
 import com.google.common.util.concurrent.Futures;
+import org.thingsboard.server.actors.device.DeviceActorStats;
+import org.thingsboard.server.actors.plugin.PluginCallbackExecutor;
 import org.thingsboard.server.actors.service.DefaultActorService;
 import org.thingsboard.server.common.data.id.*;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
@@ -31,6 +33,7 @@ import org.thingsboard.server.common.data.plugin.ComponentDescriptor;
 import org.thingsboard.server.common.data.plugin.ComponentLifecycleState;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.session.*;
+import org.thingsboard.server.dao.attributes.AttributesCache;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.event.EventService;
 import org.thingsboard.server.gen.discovery.ServerInstanceProtos;
@@ -57,6 +60,8 @@ import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.plugin.PluginService;
 import org.thingsboard.server.dao.rule.RuleService;
 import org.thingsboard.server.dao.tenant.TenantService;
+import org.thingsboard.server.dao.rule.SensorThresholdService;
+import org.thingsboard.server.dao.timeseries.LatestTsKvCache;
 import org.thingsboard.server.dao.timeseries.TimeseriesService;
 import org.thingsboard.server.extensions.core.plugin.telemetry.TelemetryStoragePlugin;
 import org.junit.After;
@@ -123,6 +128,9 @@ public class DefaultActorServiceTest {
         ReflectionTestUtils.setField(actorService, "actorContext", actorContext);
         ReflectionTestUtils.setField(actorService, "rpcService", rpcService);
         ReflectionTestUtils.setField(actorService, "discoveryService", discoveryService);
+        ReflectionTestUtils.setField(actorService, "latestTsKvCache", mock(LatestTsKvCache.class));
+        ReflectionTestUtils.setField(actorService, "attributesCache", mock(AttributesCache.class));
+        ReflectionTestUtils.setField(actorService, "sensorThresholdService", mock(SensorThresholdService.class));
 
         ReflectionTestUtils.setField(actorContext, "syncSessionTimeout", 10000L);
         ReflectionTestUtils.setField(actorContext, "pluginActorTerminationDelay", 10000L);
@@ -141,6 +149,16 @@ public class DefaultActorServiceTest {
         ReflectionTestUtils.setField(actorContext, "tsService", tsService);
         ReflectionTestUtils.setField(actorContext, "routingService", routingService);
         ReflectionTestUtils.setField(actorContext, "attributesService", attributesService);
+        ReflectionTestUtils.setField(actorContext, "attributesCache", mock(AttributesCache.class));
+        ReflectionTestUtils.setField(actorContext, "deviceActorStats", new DeviceActorStats());
+        ReflectionTestUtils.setField(actorContext, "deviceActorInitMaxRetries", 10);
+        ReflectionTestUtils.setField(actorContext, "deviceActorMaxPendingMsgs", 1000);
+        PluginCallbackExecutor pluginCallbackExecutor = new PluginCallbackExecutor();
+        ReflectionTestUtils.setField(pluginCallbackExecutor, "threads", 1);
+        ReflectionTestUtils.setField(pluginCallbackExecutor, "queueSize", 1000);
+        ReflectionTestUtils.setField(pluginCallbackExecutor, "rejectionPolicy", "CALLER_RUNS");
+        pluginCallbackExecutor.init();
+        ReflectionTestUtils.setField(actorContext, "pluginCallbackExecutor", pluginCallbackExecutor);
         ReflectionTestUtils.setField(actorContext, "componentService", componentService);
         ReflectionTestUtils.setField(actorContext, "eventService", eventService);
 
@@ -185,6 +203,16 @@ public class DefaultActorServiceTest {
 
     @Test
     public void testBasicPostWithSyncSession() throws Exception {
+        testBasicPost();
+    }
+
+    @Test
+    public void testBasicPostWithLightweightSyncSession() throws Exception {
+        ReflectionTestUtils.setField(actorContext, "syncSessionLightweight", true);
+        testBasicPost();
+    }
+
+    private void testBasicPost() throws Exception {
         SessionContext ssnCtx = mock(SessionContext.class);
         KvEntry entry1 = new StringDataEntry("key1", "value1");
         KvEntry entry2 = new StringDataEntry("key2", "value2");
@@ -205,6 +233,7 @@ public class DefaultActorServiceTest {
         when(ssnCtx.getSessionType()).thenReturn(SessionType.SYNC);
         when(deviceAuthService.process(filter)).thenReturn(DeviceAuthResult.of(deviceId));
         when(deviceService.findDeviceById(deviceId)).thenReturn(device);
+        when(deviceService.findDeviceByIdAsync(deviceId)).thenReturn(Futures.immediateFuture(device));
 
         ObjectMapper ruleMapper = new ObjectMapper();
         when(ruleMock.getFilters()).thenReturn(ruleMapper.readTree(FILTERS_CONFIGURATION));
@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.rule;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.RuleId;
+import org.thingsboard.server.common.msg.core.BasicStatusCodeResponse;
+import org.thingsboard.server.common.msg.core.RuleEngineError;
+import org.thingsboard.server.common.msg.session.MsgType;
+import org.thingsboard.server.common.msg.session.ToDeviceMsg;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+public class ParallelChainProcessingTest {
+
+    @Test
+    public void rulesAreProcessedInStagesAndMergedInChainOrder() {
+        ParallelChainProcessing processing = new ParallelChainProcessing(chainMd(false, false, true, false), RuleEngineError.NO_RULES);
+
+        List<ChainProcessingContext> firstStage = processing.startNextStage();
+        Assert.assertEquals(2, firstStage.size());
+        Assert.assertSame(processing, firstStage.get(0).getParallelProcessing());
+        ToDeviceMsg firstResponse = BasicStatusCodeResponse.onSuccess(MsgType.POST_TELEMETRY_REQUEST, 1);
+        ToDeviceMsg secondResponse = BasicStatusCodeResponse.onSuccess(MsgType.POST_TELEMETRY_REQUEST, 2);
+        firstStage.get(0).mergeResponse(firstResponse);
+        firstStage.get(1).mergeResponse(secondResponse);
+        Assert.assertFalse(processing.onRuleProcessed(firstStage.get(1)));
+        Assert.assertFalse(processing.onRuleProcessed(firstStage.get(1)));
+        Assert.assertTrue(processing.onRuleProcessed(firstStage.get(0)));
+        Assert.assertFalse(processing.isCompleted());
+
+        List<ChainProcessingContext> secondStage = processing.startNextStage();
+        Assert.assertEquals(2, secondStage.size());
+        Assert.assertFalse(processing.onRuleProcessed(secondStage.get(0).withError(RuleEngineError.NO_FILTERS_MATCHED)));
+        Assert.assertTrue(processing.onRuleProcessed(secondStage.get(1).withError(RuleEngineError.NO_TWO_WAY_ACTIONS)));
+        Assert.assertTrue(processing.isCompleted());
+
+        ChainProcessingContext result = processing.getResult();
+        Assert.assertSame(secondResponse, result.getResponse());
+        Assert.assertEquals(RuleEngineError.NO_TWO_WAY_ACTIONS, result.getRuleEngineError());
+    }
+
+    @Test
+    public void failedRuleStopsProcessing() {
+        ParallelChainProcessing processing = new ParallelChainProcessing(chainMd(false, false, true), RuleEngineError.NO_RULES);
+
+        List<ChainProcessingContext> firstStage = processing.startNextStage();
+        ToDeviceMsg errorResponse = BasicStatusCodeResponse.onError(MsgType.POST_TELEMETRY_REQUEST, 1, new Exception());
+        firstStage.get(0).mergeResponse(errorResponse);
+        firstStage.get(1).mergeResponse(BasicStatusCodeResponse.onSuccess(MsgType.POST_TELEMETRY_REQUEST, 2));
+        processing.onRuleProcessed(firstStage.get(0));
+        Assert.assertTrue(processing.onRuleProcessed(firstStage.get(1)));
+
+        Assert.assertTrue(processing.isCompleted());
+        Assert.assertSame(errorResponse, processing.getResult().getResponse());
+    }
+
+    @Test
+    public void timeoutCompletesPendingStage() {
+        ParallelChainProcessing processing = new ParallelChainProcessing(chainMd(false, false), RuleEngineError.NO_FILTERS_MATCHED);
+
+        List<ChainProcessingContext> stage = processing.startNextStage();
+        processing.onRuleProcessed(stage.get(0));
+        Assert.assertFalse(processing.onTimeout(processing.getStage() - 1));
+        Assert.assertTrue(processing.onTimeout(processing.getStage()));
+        Assert.assertFalse(processing.onRuleProcessed(stage.get(1)));
+
+        Assert.assertTrue(processing.isCompleted());
+        Assert.assertEquals(RuleEngineError.PLUGIN_TIMEOUT, processing.getResult().getRuleEngineError());
+    }
+
+    private static ChainProcessingMetaData chainMd(boolean... dependsOnPreviousRules) {
+        Set<RuleActorMetaData> rules = new HashSet<>();
+        for (int i = 0; i < dependsOnPreviousRules.length; i++) {
+            rules.add(RuleActorMetaData.systemRule(new RuleId(UUID.randomUUID()), dependsOnPreviousRules.length - i, null,
+                    RuleApplicability.ANY, dependsOnPreviousRules[i]));
+        }
+        return new ChainProcessingMetaData(new SimpleRuleActorChain(rules), null, null, null);
+    }
+}
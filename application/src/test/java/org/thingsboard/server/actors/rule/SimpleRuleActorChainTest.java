@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.rule;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.RuleId;
+import org.thingsboard.server.common.msg.session.MsgType;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+public class SimpleRuleActorChainTest {
+
+    private static final String TELEMETRY_FILTER =
+            "[{\"clazz\":\"org.thingsboard.server.extensions.core.filter.MsgTypeFilter\", \"name\":\"TelemetryFilter\", \"configuration\": {\"messageTypes\":[\"POST_TELEMETRY\"]}}]";
+    private static final String THERMOSTAT_ATTRIBUTES_FILTER =
+            "[{\"clazz\":\"org.thingsboard.server.extensions.core.filter.MsgTypeFilter\", \"name\":\"AttributesFilter\", \"configuration\": {\"messageTypes\":[\"POST_ATTRIBUTES\", \"POST_TELEMETRY\"]}}," +
+                    "{\"clazz\":\"org.thingsboard.server.extensions.core.filter.DeviceTypeFilter\", \"name\":\"ThermostatFilter\", \"configuration\": {\"deviceTypes\":[{\"name\":\"thermostat\"}]}}]";
+    private static final String JS_FILTER =
+            "[{\"clazz\":\"org.thingsboard.server.extensions.core.filter.DeviceTelemetryFilter\", \"name\":\"JsFilter\", \"configuration\": {\"filter\":\"temperature > 30\"}}]";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void applicableRulesKeepChainOrder() throws IOException {
+        RuleActorMetaData telemetryRule = rule(30, TELEMETRY_FILTER);
+        RuleActorMetaData thermostatRule = rule(20, THERMOSTAT_ATTRIBUTES_FILTER);
+        RuleActorMetaData jsRule = rule(10, JS_FILTER);
+        Set<RuleActorMetaData> rules = new HashSet<>();
+        rules.add(jsRule);
+        rules.add(thermostatRule);
+        rules.add(telemetryRule);
+        SimpleRuleActorChain chain = new SimpleRuleActorChain(rules);
+
+        RuleActorChain thermostatTelemetry = chain.getApplicableRules(MsgType.POST_TELEMETRY_REQUEST, "thermostat");
+        Assert.assertEquals(3, thermostatTelemetry.size());
+        Assert.assertEquals(telemetryRule, thermostatTelemetry.getRuleActorMd(0));
+        Assert.assertEquals(thermostatRule, thermostatTelemetry.getRuleActorMd(1));
+        Assert.assertEquals(jsRule, thermostatTelemetry.getRuleActorMd(2));
+
+        RuleActorChain sensorTelemetry = chain.getApplicableRules(MsgType.POST_TELEMETRY_REQUEST, "sensor");
+        Assert.assertEquals(2, sensorTelemetry.size());
+        Assert.assertEquals(telemetryRule, sensorTelemetry.getRuleActorMd(0));
+        Assert.assertEquals(jsRule, sensorTelemetry.getRuleActorMd(1));
+
+        RuleActorChain sensorAttributes = chain.getApplicableRules(MsgType.POST_ATTRIBUTES_REQUEST, "sensor");
+        Assert.assertEquals(1, sensorAttributes.size());
+        Assert.assertEquals(jsRule, sensorAttributes.getRuleActorMd(0));
+
+        Assert.assertSame(thermostatTelemetry, chain.getApplicableRules(MsgType.POST_TELEMETRY_REQUEST, "thermostat"));
+    }
+
+    @Test
+    public void complexChainCombinesApplicableRules() throws IOException {
+        Set<RuleActorMetaData> systemRules = new HashSet<>();
+        systemRules.add(rule(10, TELEMETRY_FILTER));
+        Set<RuleActorMetaData> tenantRules = new HashSet<>();
+        tenantRules.add(rule(10, THERMOSTAT_ATTRIBUTES_FILTER));
+        tenantRules.add(rule(20, JS_FILTER));
+        RuleActorChain chain = new ComplexRuleActorChain(new SimpleRuleActorChain(systemRules), new SimpleRuleActorChain(tenantRules));
+
+        Assert.assertEquals(3, chain.getApplicableRules(MsgType.POST_TELEMETRY_REQUEST, "thermostat").size());
+        Assert.assertEquals(1, chain.getApplicableRules(MsgType.POST_ATTRIBUTES_REQUEST, "sensor").size());
+        Assert.assertEquals(1, chain.getApplicableRules(MsgType.TO_SERVER_RPC_REQUEST, "thermostat").size());
+    }
+
+    @Test
+    public void skippedRulesKeepChainOrder() throws IOException {
+        RuleActorMetaData telemetryRule = rule(30, TELEMETRY_FILTER);
+        RuleActorMetaData thermostatRule = rule(20, THERMOSTAT_ATTRIBUTES_FILTER);
+        RuleActorMetaData jsRule = rule(10, JS_FILTER);
+        Set<RuleActorMetaData> rules = new HashSet<>();
+        rules.add(jsRule);
+        rules.add(thermostatRule);
+        rules.add(telemetryRule);
+        SimpleRuleActorChain chain = new SimpleRuleActorChain(rules);
+
+        Assert.assertEquals(0, chain.getSkippedRules(MsgType.POST_TELEMETRY_REQUEST, "thermostat").size());
+
+        RuleActorChain sensorAttributes = chain.getSkippedRules(MsgType.POST_ATTRIBUTES_REQUEST, "sensor");
+        Assert.assertEquals(2, sensorAttributes.size());
+        Assert.assertEquals(telemetryRule, sensorAttributes.getRuleActorMd(0));
+        Assert.assertEquals(thermostatRule, sensorAttributes.getRuleActorMd(1));
+
+        thermostatRule.deactivate();
+        Assert.assertFalse(chain.getSkippedRules(MsgType.POST_TELEMETRY_REQUEST, "sensor").getRuleActorMd(0).isActive());
+    }
+
+    private RuleActorMetaData rule(int weight, String filters) throws IOException {
+        return RuleActorMetaData.systemRule(new RuleId(UUID.randomUUID()), weight, null, RuleApplicability.of(mapper.readTree(filters)));
+    }
+}
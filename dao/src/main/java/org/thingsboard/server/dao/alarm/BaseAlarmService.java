@@ -20,6 +20,7 @@ import com.google.common.base.Function;
 import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -83,7 +84,10 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
 
     @PostConstruct
     public void startExecutor() {
-        readResultsProcessingExecutor = Executors.newCachedThreadPool();
+        // Alarm updates block on relation futures that complete on the shared read results pool,
+        // so they must not run on that pool themselves.
+        readResultsProcessingExecutor = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("alarm-service-%d").setDaemon(true).build());
     }
 
     @PreDestroy
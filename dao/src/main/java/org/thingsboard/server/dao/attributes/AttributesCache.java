@@ -0,0 +1,270 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.attributes;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Attributes of the devices owned by this node, grouped by device and scope.
+ * All attribute writes of a device are reported to its owner by attribute notifications,
+ * so the cached values are updated on every write and loaded from the database on a miss.
+ * Removed and missing keys are kept as empty values, so a load that completes after a write
+ * never overrides the written value. A local write and a notification about the same attribute may
+ * arrive in any order, so a cached value or removal is only replaced by a value or removal with the same
+ * or a later time. Scopes are dropped <code>expire_after_write_ms</code> after they were cached, which bounds
+ * the staleness caused by a lost notification.
+ */
+@Component
+@Slf4j
+public class AttributesCache {
+
+    @Value("${cache.attributes.enabled}")
+    private boolean enabled;
+
+    @Value("${cache.attributes.max_size}")
+    private long maxSize;
+
+    @Value("${cache.attributes.expire_after_write_ms}")
+    private long expireAfterWriteMs;
+
+    @Value("${cache.attributes.stats_interval_ms}")
+    private long statsIntervalMs;
+
+    private Cache<AttributesCacheKey, ScopeAttributes> cache;
+
+    private volatile Predicate<EntityId> ownershipFilter = entityId -> true;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private ScheduledExecutorService statsScheduler;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maxSize);
+            if (expireAfterWriteMs > 0) {
+                builder.expireAfterWrite(expireAfterWriteMs, TimeUnit.MILLISECONDS);
+            }
+            cache = builder.build();
+            if (statsIntervalMs > 0) {
+                statsScheduler = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setNameFormat("attributes-cache-stats").setDaemon(true).build());
+                statsScheduler.scheduleAtFixedRate(() -> log.info("Attributes cache stats: size [{}], hits [{}], misses [{}]",
+                        cache.size(), hitCount.get(), missCount.get()), statsIntervalMs, statsIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Sets the check whether an entity is owned by this node.
+     */
+    public void setOwnershipFilter(Predicate<EntityId> ownershipFilter) {
+        this.ownershipFilter = ownershipFilter;
+    }
+
+    public boolean isCacheable(EntityId entityId) {
+        return cache != null && entityId.getEntityType() == EntityType.DEVICE && ownershipFilter.test(entityId);
+    }
+
+    /**
+     * Returns the cached attributes among the requested keys and adds the keys that are not cached to the missing keys.
+     */
+    public List<AttributeKvEntry> find(EntityId entityId, String scope, Collection<String> keys, Collection<String> missingKeys) {
+        List<AttributeKvEntry> result = new ArrayList<>(keys.size());
+        ScopeAttributes attributes = cache.getIfPresent(new AttributesCacheKey(entityId, scope));
+        if (attributes == null) {
+            missingKeys.addAll(keys);
+        } else {
+            attributes.find(keys, result, missingKeys);
+        }
+        hitCount.addAndGet(keys.size() - missingKeys.size());
+        missCount.addAndGet(missingKeys.size());
+        return result;
+    }
+
+    /**
+     * Returns all attributes of the scope if they were loaded before.
+     */
+    public Optional<List<AttributeKvEntry>> findAll(EntityId entityId, String scope) {
+        ScopeAttributes attributes = cache.getIfPresent(new AttributesCacheKey(entityId, scope));
+        Optional<List<AttributeKvEntry>> result = attributes != null ? attributes.findAll() : Optional.empty();
+        if (result.isPresent()) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Stores attributes loaded from the database for the requested keys, unless a write already stored newer values.
+     */
+    public void load(EntityId entityId, String scope, Collection<String> keys, List<AttributeKvEntry> loaded) {
+        if (isCacheable(entityId)) {
+            getOrCreate(entityId, scope).load(keys, loaded);
+        }
+    }
+
+    /**
+     * Stores all attributes of the scope loaded from the database, unless a write already stored newer values.
+     */
+    public void loadAll(EntityId entityId, String scope, List<AttributeKvEntry> loaded) {
+        if (isCacheable(entityId)) {
+            getOrCreate(entityId, scope).loadAll(loaded);
+        }
+    }
+
+    /**
+     * Stores written attributes, keeping cached values that were updated later.
+     */
+    public void put(EntityId entityId, String scope, List<AttributeKvEntry> attributes) {
+        if (isCacheable(entityId)) {
+            getOrCreate(entityId, scope).put(attributes);
+        }
+    }
+
+    /**
+     * Stores the removal of attributes at the given time, keeping cached values that were updated later.
+     */
+    public void remove(EntityId entityId, String scope, Collection<String> keys, long removeTs) {
+        if (isCacheable(entityId)) {
+            getOrCreate(entityId, scope).remove(keys, removeTs);
+        }
+    }
+
+    /**
+     * Drops the attributes of entities that are no longer owned by this node.
+     */
+    public void invalidateNotOwned() {
+        if (cache != null) {
+            cache.asMap().keySet().removeIf(key -> !ownershipFilter.test(key.getEntityId()));
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private ScopeAttributes getOrCreate(EntityId entityId, String scope) {
+        return cache.asMap().computeIfAbsent(new AttributesCacheKey(entityId, scope), key -> new ScopeAttributes());
+    }
+
+    @Data
+    private static class AttributesCacheKey {
+        private final EntityId entityId;
+        private final String scope;
+    }
+
+    private static class ScopeAttributes {
+
+        private final Map<String, CachedAttribute> values = new HashMap<>();
+        private boolean complete;
+
+        synchronized void find(Collection<String> keys, List<AttributeKvEntry> result, Collection<String> missingKeys) {
+            for (String key : keys) {
+                CachedAttribute value = values.get(key);
+                if (value != null) {
+                    value.getValue().ifPresent(result::add);
+                } else if (!complete) {
+                    missingKeys.add(key);
+                }
+            }
+        }
+
+        synchronized Optional<List<AttributeKvEntry>> findAll() {
+            if (!complete) {
+                return Optional.empty();
+            }
+            List<AttributeKvEntry> result = new ArrayList<>(values.size());
+            values.values().forEach(value -> value.getValue().ifPresent(result::add));
+            return Optional.of(result);
+        }
+
+        synchronized void load(Collection<String> keys, List<AttributeKvEntry> loaded) {
+            loaded.forEach(attribute -> values.putIfAbsent(attribute.getKey(), CachedAttribute.of(attribute)));
+            keys.forEach(key -> values.putIfAbsent(key, CachedAttribute.MISSING));
+        }
+
+        synchronized void loadAll(List<AttributeKvEntry> loaded) {
+            loaded.forEach(attribute -> values.putIfAbsent(attribute.getKey(), CachedAttribute.of(attribute)));
+            complete = true;
+        }
+
+        synchronized void put(List<AttributeKvEntry> attributes) {
+            attributes.forEach(attribute -> values.merge(attribute.getKey(), CachedAttribute.of(attribute), CachedAttribute::newer));
+        }
+
+        synchronized void remove(Collection<String> keys, long removeTs) {
+            CachedAttribute removed = new CachedAttribute(Optional.empty(), removeTs);
+            keys.forEach(key -> values.merge(key, removed, CachedAttribute::newer));
+        }
+    }
+
+    /**
+     * Cached value of an attribute, empty if the attribute is missing or removed, with the time of its last change.
+     */
+    @Data
+    private static class CachedAttribute {
+
+        private static final CachedAttribute MISSING = new CachedAttribute(Optional.empty(), Long.MIN_VALUE);
+
+        private final Optional<AttributeKvEntry> value;
+        private final long ts;
+
+        static CachedAttribute of(AttributeKvEntry attribute) {
+            return new CachedAttribute(Optional.of(attribute), attribute.getLastUpdateTs());
+        }
+
+        static CachedAttribute newer(CachedAttribute cached, CachedAttribute changed) {
+            return cached.getTs() > changed.getTs() ? cached : changed;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.dao.attributes;
 
+import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -28,9 +29,17 @@ import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.common.data.*;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author Andrew Shvayka
@@ -44,24 +53,53 @@ public class BaseAttributesService implements AttributesService {
     @Autowired
     private DeviceService deviceService;
 
+    @Autowired
+    private AttributesCache attributesCache;
+
     @Override
     public ListenableFuture<Optional<AttributeKvEntry>> find(EntityId entityId, String scope, String attributeKey) {
         validate(entityId, scope);
         Validator.validateString(attributeKey, "Incorrect attribute key " + attributeKey);
-        return attributesDao.find(entityId, scope, attributeKey);
+        if (!attributesCache.isCacheable(entityId)) {
+            return attributesDao.find(entityId, scope, attributeKey);
+        }
+        return Futures.transform(find(entityId, scope, Collections.singletonList(attributeKey)),
+                (Function<List<AttributeKvEntry>, Optional<AttributeKvEntry>>) entries -> entries.stream().findFirst());
     }
 
     @Override
     public ListenableFuture<List<AttributeKvEntry>> find(EntityId entityId, String scope, Collection<String> attributeKeys) {
         validate(entityId, scope);
         attributeKeys.forEach(attributeKey -> Validator.validateString(attributeKey, "Incorrect attribute key " + attributeKey));
-        return attributesDao.find(entityId, scope, attributeKeys);
+        if (!attributesCache.isCacheable(entityId)) {
+            return attributesDao.find(entityId, scope, attributeKeys);
+        }
+        Set<String> keys = new LinkedHashSet<>(attributeKeys);
+        List<String> missingKeys = new ArrayList<>();
+        List<AttributeKvEntry> cached = attributesCache.find(entityId, scope, keys, missingKeys);
+        if (missingKeys.isEmpty()) {
+            return Futures.immediateFuture(toKeysOrder(keys, cached, Collections.emptyList()));
+        }
+        return Futures.transform(attributesDao.find(entityId, scope, missingKeys), (Function<List<AttributeKvEntry>, List<AttributeKvEntry>>) loaded -> {
+            attributesCache.load(entityId, scope, missingKeys, loaded);
+            return toKeysOrder(keys, cached, loaded);
+        });
     }
 
     @Override
     public ListenableFuture<List<AttributeKvEntry>> findAll(EntityId entityId, String scope) {
         validate(entityId, scope);
-        return attributesDao.findAll(entityId, scope);
+        if (!attributesCache.isCacheable(entityId)) {
+            return attributesDao.findAll(entityId, scope);
+        }
+        Optional<List<AttributeKvEntry>> cached = attributesCache.findAll(entityId, scope);
+        if (cached.isPresent()) {
+            return Futures.immediateFuture(cached.get());
+        }
+        return Futures.transform(attributesDao.findAll(entityId, scope), (Function<List<AttributeKvEntry>, List<AttributeKvEntry>>) loaded -> {
+            attributesCache.loadAll(entityId, scope, loaded);
+            return loaded;
+        });
     }
 
     @Override
@@ -90,13 +128,27 @@ public class BaseAttributesService implements AttributesService {
             }
         }
         deviceService.saveDevice(device);
-        return Futures.allAsList(futures);
+        return Futures.transform(Futures.allAsList(futures), (Function<List<Void>, List<Void>>) result -> {
+            attributesCache.put(entityId, scope, attributes);
+            return result;
+        });
     }
 
     @Override
     public ListenableFuture<List<Void>> removeAll(EntityId entityId, String scope, List<String> keys) {
         validate(entityId, scope);
-        return attributesDao.removeAll(entityId, scope, keys);
+        long removeTs = System.currentTimeMillis();
+        return Futures.transform(attributesDao.removeAll(entityId, scope, keys), (Function<List<Void>, List<Void>>) result -> {
+            attributesCache.remove(entityId, scope, keys, removeTs);
+            return result;
+        });
+    }
+
+    private static List<AttributeKvEntry> toKeysOrder(Set<String> keys, List<AttributeKvEntry> cached, List<AttributeKvEntry> loaded) {
+        Map<String, AttributeKvEntry> entriesByKey = new HashMap<>();
+        cached.forEach(entry -> entriesByKey.put(entry.getKey(), entry));
+        loaded.forEach(entry -> entriesByKey.put(entry.getKey(), entry));
+        return keys.stream().map(entriesByKey::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     private static void validate(EntityId id, String scope) {
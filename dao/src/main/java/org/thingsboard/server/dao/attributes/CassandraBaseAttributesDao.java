@@ -22,6 +22,7 @@ import com.google.common.base.Function;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
@@ -32,11 +33,14 @@ import org.thingsboard.server.dao.timeseries.CassandraBaseTimeseriesDao;
 import org.thingsboard.server.dao.util.NoSqlDao;
 
 import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
@@ -51,18 +55,17 @@ import static org.thingsboard.server.dao.model.ModelConstants.*;
 @NoSqlDao
 public class CassandraBaseAttributesDao extends CassandraAbstractAsyncDao implements AttributesDao {
 
+    @Value("${cassandra.query.attributes_scan_min_keys}")
+    private int scanMinKeys;
+
     private PreparedStatement saveStmt;
+    private PreparedStatement findByKeysStmt;
 
     @PostConstruct
     public void init() {
         super.startExecutor();
     }
 
-    @PreDestroy
-    public void stop() {
-        super.stopExecutor();
-    }
-
     @Override
     public ListenableFuture<Optional<AttributeKvEntry>> find(EntityId entityId, String attributeType, String attributeKey) {
         Select.Where select = select().from(ATTRIBUTES_KV_CF)
@@ -78,16 +81,33 @@ public class CassandraBaseAttributesDao extends CassandraAbstractAsyncDao implem
 
     @Override
     public ListenableFuture<List<AttributeKvEntry>> find(EntityId entityId, String attributeType, Collection<String> attributeKeys) {
-        List<ListenableFuture<Optional<AttributeKvEntry>>> entries = new ArrayList<>();
-        attributeKeys.forEach(attributeKey -> entries.add(find(entityId, attributeType, attributeKey)));
-        return Futures.transform(Futures.allAsList(entries), (Function<List<Optional<AttributeKvEntry>>, ? extends List<AttributeKvEntry>>) input -> {
-            List<AttributeKvEntry> result = new ArrayList<>();
-            input.stream().filter(opt -> opt.isPresent()).forEach(opt -> result.add(opt.get()));
+        Set<String> keys = new LinkedHashSet<>(attributeKeys);
+        if (keys.isEmpty()) {
+            return Futures.immediateFuture(new ArrayList<>());
+        }
+        ListenableFuture<List<AttributeKvEntry>> found;
+        if (scanMinKeys > 0 && keys.size() >= scanMinKeys) {
+            found = findAll(entityId, attributeType);
+        } else {
+            BoundStatement stmt = getFindByKeysStmt().bind();
+            stmt.setString(0, entityId.getEntityType().name());
+            stmt.setUUID(1, entityId.getId());
+            stmt.setString(2, attributeType);
+            stmt.setList(3, new ArrayList<>(keys));
+            log.trace("Generated query [{}] for entityId {} and keys {}", stmt, entityId, keys);
+            found = Futures.transform(executeAsyncRead(stmt), (Function<? super ResultSet, ? extends List<AttributeKvEntry>>) input ->
+                            convertResultToAttributesKvEntryList(input)
+                    , readResultsProcessingExecutor);
+        }
+        return Futures.transform(found, (Function<List<AttributeKvEntry>, List<AttributeKvEntry>>) entries -> {
+            Map<String, AttributeKvEntry> entriesByKey = new HashMap<>();
+            entries.forEach(entry -> entriesByKey.put(entry.getKey(), entry));
+            List<AttributeKvEntry> result = new ArrayList<>(keys.size());
+            keys.stream().map(entriesByKey::get).filter(entry -> entry != null).forEach(result::add);
             return result;
-        }, readResultsProcessingExecutor);
+        });
     }
 
-
     @Override
     public ListenableFuture<List<AttributeKvEntry>> findAll(EntityId entityId, String attributeType) {
         Select.Where select = select().from(ATTRIBUTES_KV_CF)
@@ -144,7 +164,7 @@ public class CassandraBaseAttributesDao extends CassandraAbstractAsyncDao implem
                 .and(eq(ATTRIBUTE_TYPE_COLUMN, attributeType))
                 .and(eq(ATTRIBUTE_KEY_COLUMN, key));
         log.debug("Remove request: {}", delete.toString());
-        return getFuture(getSession().executeAsync(delete), rs -> null);
+        return getFuture(executeAsyncWrite(delete), rs -> null);
     }
 
     private PreparedStatement getSaveStmt() {
@@ -165,6 +185,17 @@ public class CassandraBaseAttributesDao extends CassandraAbstractAsyncDao implem
         return saveStmt;
     }
 
+    private PreparedStatement getFindByKeysStmt() {
+        if (findByKeysStmt == null) {
+            findByKeysStmt = getSession().prepare("SELECT * FROM " + ModelConstants.ATTRIBUTES_KV_CF +
+                    " WHERE " + ENTITY_TYPE_COLUMN + " = ?" +
+                    " AND " + ENTITY_ID_COLUMN + " = ?" +
+                    " AND " + ATTRIBUTE_TYPE_COLUMN + " = ?" +
+                    " AND " + ATTRIBUTE_KEY_COLUMN + " IN ?");
+        }
+        return findByKeysStmt;
+    }
+
     private AttributeKvEntry convertResultToAttributesKvEntry(String key, Row row) {
         AttributeKvEntry attributeEntry = null;
         if (row != null) {
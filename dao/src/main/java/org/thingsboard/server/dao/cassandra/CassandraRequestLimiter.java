@@ -0,0 +1,271 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.cassandra;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.dao.exception.DatabaseException;
+import org.thingsboard.server.dao.util.NoSqlDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of Cassandra requests that are in flight at the same time.
+ * Async requests that don't get a permit are queued and issued when a permit is released,
+ * so callers never block and a slow cluster doesn't overflow the driver request queue.
+ * Queued requests are issued from a dedicated thread, never from the driver thread that released the permit.
+ * Async requests above the queue size fail immediately. Sync requests wait for a permit up to the permit timeout.
+ */
+@Component
+@Slf4j
+@NoSqlDao
+public class CassandraRequestLimiter {
+
+    @Value("${cassandra.query.in_flight.max_reads}")
+    private int maxReads;
+
+    @Value("${cassandra.query.in_flight.max_writes}")
+    private int maxWrites;
+
+    @Value("${cassandra.query.in_flight.max_queued}")
+    private int maxQueued;
+
+    @Value("${cassandra.query.in_flight.permit_timeout_ms}")
+    private long permitTimeoutMs;
+
+    @Value("${cassandra.query.in_flight.stats_interval_ms}")
+    private long statsIntervalMs;
+
+    private ExecutorService drainExecutor;
+    private Permits readPermits;
+    private Permits writePermits;
+    private ScheduledExecutorService statsScheduler;
+
+    @PostConstruct
+    public void init() {
+        drainExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("cassandra-request-drain").setDaemon(true).build());
+        readPermits = new Permits("read", maxReads, maxQueued, permitTimeoutMs, drainExecutor);
+        writePermits = new Permits("write", maxWrites, maxQueued, permitTimeoutMs, drainExecutor);
+        if (statsIntervalMs > 0) {
+            statsScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("cassandra-in-flight-stats").setDaemon(true).build());
+            statsScheduler.scheduleAtFixedRate(this::logStats, statsIntervalMs, statsIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+        if (drainExecutor != null) {
+            drainExecutor.shutdownNow();
+        }
+    }
+
+    public Permits getReadPermits() {
+        return readPermits;
+    }
+
+    public Permits getWritePermits() {
+        return writePermits;
+    }
+
+    private void logStats() {
+        log.info("Cassandra in-flight requests: {}, {}", readPermits, writePermits);
+    }
+
+    public static class Permits {
+
+        private final String name;
+        private final int max;
+        private final long timeoutMs;
+        private final Semaphore semaphore;
+        private final BlockingQueue<Runnable> queue;
+        private final Executor drainExecutor;
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+        private final AtomicLong acquiredCount = new AtomicLong();
+        private final AtomicLong queuedCount = new AtomicLong();
+        private final AtomicLong rejectedCount = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        Permits(String name, int max, int maxQueued, long timeoutMs, Executor drainExecutor) {
+            this.name = name;
+            this.max = max;
+            this.timeoutMs = timeoutMs;
+            this.semaphore = max > 0 ? new Semaphore(max) : null;
+            this.queue = max > 0 ? new LinkedBlockingQueue<>(Math.max(maxQueued, 1)) : null;
+            this.drainExecutor = drainExecutor;
+        }
+
+        /**
+         * Acquires a permit without waiting, only if no async requests are queued.
+         */
+        public boolean tryAcquire() {
+            if (semaphore == null) {
+                return true;
+            }
+            if (queue.isEmpty() && semaphore.tryAcquire()) {
+                acquiredCount.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Queues the request, which is run on the drain executor holding a permit as soon as one is available.
+         * The request has to release the permit when it completes.
+         *
+         * @return false if the queue is full
+         */
+        public boolean enqueue(Runnable request) {
+            if (!queue.offer(request)) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            queuedCount.incrementAndGet();
+            scheduleDrain();
+            return true;
+        }
+
+        /**
+         * Blocks until a permit is available. Should not be called from the driver or actor threads.
+         */
+        public void acquire() {
+            if (semaphore == null) {
+                return;
+            }
+            if (semaphore.tryAcquire()) {
+                acquiredCount.incrementAndGet();
+                return;
+            }
+            long startTs = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = semaphore.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DatabaseException("Interrupted while waiting for a Cassandra " + name + " permit", e);
+            }
+            long waitNanos = System.nanoTime() - startTs;
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            if (!acquired) {
+                rejectedCount.incrementAndGet();
+                throw new DatabaseException("Timeout waiting for a Cassandra " + name + " permit. " + max + " requests are already in flight");
+            }
+            acquiredCount.incrementAndGet();
+        }
+
+        public void release() {
+            if (semaphore != null) {
+                semaphore.release();
+                scheduleDrain();
+            }
+        }
+
+        /**
+         * Hands the queued requests over to the drain executor. At most one drain task is pending at a time,
+         * releases that happen while it runs are picked up by its final check.
+         */
+        private void scheduleDrain() {
+            if (queue.isEmpty() || !drainScheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                drainExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+                log.warn("Failed to drain queued Cassandra {} requests", name, e);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!queue.isEmpty() && semaphore.tryAcquire()) {
+                    Runnable request = queue.poll();
+                    if (request == null) {
+                        semaphore.release();
+                    } else {
+                        acquiredCount.incrementAndGet();
+                        try {
+                            request.run();
+                        } catch (RuntimeException e) {
+                            log.warn("Failed to issue queued Cassandra {} request", name, e);
+                        }
+                    }
+                }
+            } finally {
+                drainScheduled.set(false);
+            }
+            if (!queue.isEmpty() && semaphore.availablePermits() > 0) {
+                scheduleDrain();
+            }
+        }
+
+        public int getInUse() {
+            return semaphore == null ? 0 : max - semaphore.availablePermits();
+        }
+
+        public int getQueueLength() {
+            return queue == null ? 0 : queue.size();
+        }
+
+        public long getAcquiredCount() {
+            return acquiredCount.get();
+        }
+
+        public long getQueuedCount() {
+            return queuedCount.get();
+        }
+
+        public long getRejectedCount() {
+            return rejectedCount.get();
+        }
+
+        public long getTotalWaitMs() {
+            return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+        }
+
+        public long getMaxWaitMs() {
+            return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return name + " [in use " + getInUse() + "/" + max + ", queued " + getQueueLength()
+                    + ", acquired " + getAcquiredCount() + ", total queued " + getQueuedCount() + ", rejected " + getRejectedCount()
+                    + ", total sync wait " + getTotalWaitMs() + " ms, max sync wait " + getMaxWaitMs() + " ms]";
+        }
+    }
+}
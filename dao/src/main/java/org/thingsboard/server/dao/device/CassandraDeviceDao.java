@@ -17,9 +17,14 @@ package org.thingsboard.server.dao.device;
 
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.mapping.Result;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -167,4 +172,29 @@ public class CassandraDeviceDao extends CassandraAbstractSearchTextDao<DeviceEnt
         });
     }
 
+    @Override
+    public ListenableFuture<Void> updateSensorAsync(UUID deviceId, Map<String, JsonNode> sensors) {
+        log.debug("Update sensor snapshot of device [{}]", deviceId);
+        Statement query = select(DEVICE_TENANT_ID_PROPERTY, DEVICE_CUSTOMER_ID_PROPERTY, DEVICE_TYPE_PROPERTY, DEVICE_SENSOR_PROPERTY)
+                .from(getColumnFamilyName())
+                .where(eq(ID_PROPERTY, deviceId));
+        return Futures.transform(executeAsyncRead(query), (AsyncFunction<ResultSet, Void>) resultSet -> {
+            Row row = resultSet.one();
+            if (row == null) {
+                log.debug("Device [{}] not found, skipping sensor snapshot", deviceId);
+                return Futures.immediateFuture(null);
+            }
+            JsonNode current = row.get(DEVICE_SENSOR_PROPERTY, JsonNode.class);
+            ObjectNode sensor = current != null && current.isObject() ? (ObjectNode) current : JsonNodeFactory.instance.objectNode();
+            sensors.forEach(sensor::set);
+            Statement update = update(getColumnFamilyName())
+                    .with(set(DEVICE_SENSOR_PROPERTY, sensor))
+                    .where(eq(ID_PROPERTY, deviceId))
+                    .and(eq(DEVICE_TENANT_ID_PROPERTY, row.getUUID(DEVICE_TENANT_ID_PROPERTY)))
+                    .and(eq(DEVICE_CUSTOMER_ID_PROPERTY, row.getUUID(DEVICE_CUSTOMER_ID_PROPERTY)))
+                    .and(eq(DEVICE_TYPE_PROPERTY, row.getString(DEVICE_TYPE_PROPERTY)));
+            return Futures.transform(executeAsyncWrite(update), (Function<ResultSet, Void>) rs -> null);
+        });
+    }
+
 }
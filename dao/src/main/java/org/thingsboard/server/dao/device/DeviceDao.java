@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.dao.device;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.EntitySubtype;
@@ -22,6 +23,7 @@ import org.thingsboard.server.common.data.page.TextPageLink;
 import org.thingsboard.server.dao.Dao;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -114,4 +116,13 @@ public interface DeviceDao extends Dao<Device> {
      * @return the list of tenant device type objects
      */
     ListenableFuture<List<EntitySubtype>> findTenantDeviceTypesAsync(UUID tenantId);
+
+    /**
+     * Merge sensor values into the sensor column of the device, leaving the other device columns untouched.
+     *
+     * @param deviceId the device id
+     * @param sensors the sensor values by sensor name
+     * @return the future completing once the sensor column is written
+     */
+    ListenableFuture<Void> updateSensorAsync(UUID deviceId, Map<String, JsonNode> sensors);
 }
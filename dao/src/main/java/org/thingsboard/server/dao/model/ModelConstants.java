@@ -335,6 +335,7 @@ public class ModelConstants {
     public static final String TS_KV_CF = "ts_kv_cf";
     public static final String TS_KV_PARTITIONS_CF = "ts_kv_partitions_cf";
     public static final String TS_KV_LATEST_CF = "ts_kv_latest_cf";
+    public static final String TS_KV_ROLLUP_CF = "ts_kv_rollup_cf";
 
 
     public static final String ENTITY_TYPE_COLUMN = "entity_type";
@@ -355,6 +356,25 @@ public class ModelConstants {
     public static final String LONG_VALUE_COLUMN = "long_v";
     public static final String DOUBLE_VALUE_COLUMN = "dbl_v";
 
+    public static final String GRANULARITY_COLUMN = "granularity";
+    public static final String LONG_COUNT_COLUMN = "long_cnt";
+    public static final String LONG_SUM_COLUMN = "long_sum";
+    public static final String LONG_MIN_COLUMN = "long_min";
+    public static final String LONG_MAX_COLUMN = "long_max";
+    public static final String DOUBLE_COUNT_COLUMN = "dbl_cnt";
+    public static final String DOUBLE_SUM_COLUMN = "dbl_sum";
+    public static final String DOUBLE_MIN_COLUMN = "dbl_min";
+    public static final String DOUBLE_MAX_COLUMN = "dbl_max";
+    public static final String BOOLEAN_COUNT_COLUMN = "bool_cnt";
+    public static final String BOOLEAN_MIN_COLUMN = "bool_min";
+    public static final String BOOLEAN_MAX_COLUMN = "bool_max";
+    public static final String STRING_COUNT_COLUMN = "str_cnt";
+    public static final String STRING_MIN_COLUMN = "str_min";
+    public static final String STRING_MAX_COLUMN = "str_max";
+    public static final String CHANGED_TS_COLUMN = "changed_ts";
+    public static final String CHANGED_TTL_COLUMN = "changed_ttl";
+    public static final String REBUILT_TS_COLUMN = "rebuilt_ts";
+
     public static final String[] NONE_AGGREGATION_COLUMNS = new String[]{LONG_VALUE_COLUMN, DOUBLE_VALUE_COLUMN, BOOLEAN_VALUE_COLUMN, STRING_VALUE_COLUMN, KEY_COLUMN, TS_COLUMN};
 
     public static final String[] COUNT_AGGREGATION_COLUMNS = new String[]{count(LONG_VALUE_COLUMN), count(DOUBLE_VALUE_COLUMN), count(BOOLEAN_VALUE_COLUMN), count(STRING_VALUE_COLUMN)};
@@ -0,0 +1,154 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.model.sql;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.dao.model.ToData;
+import org.thingsboard.server.dao.timeseries.TsKvRollup;
+import org.thingsboard.server.dao.timeseries.TsKvRollupGranularity;
+
+import javax.persistence.*;
+
+import static org.thingsboard.server.dao.model.ModelConstants.*;
+
+@Data
+@Entity
+@Table(name = "ts_kv_rollup")
+@IdClass(TsKvRollupCompositeKey.class)
+public final class TsKvRollupEntity implements ToData<TsKvRollup> {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = ENTITY_TYPE_COLUMN)
+    private EntityType entityType;
+
+    @Id
+    @Column(name = ENTITY_ID_COLUMN)
+    private String entityId;
+
+    @Id
+    @Column(name = KEY_COLUMN)
+    private String key;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = GRANULARITY_COLUMN)
+    private TsKvRollupGranularity granularity;
+
+    @Id
+    @Column(name = TS_COLUMN)
+    private long ts;
+
+    @Column(name = LONG_COUNT_COLUMN)
+    private long longCount;
+
+    @Column(name = LONG_SUM_COLUMN)
+    private Long longSum;
+
+    @Column(name = LONG_MIN_COLUMN)
+    private Long longMin;
+
+    @Column(name = LONG_MAX_COLUMN)
+    private Long longMax;
+
+    @Column(name = DOUBLE_COUNT_COLUMN)
+    private long doubleCount;
+
+    @Column(name = DOUBLE_SUM_COLUMN)
+    private Double doubleSum;
+
+    @Column(name = DOUBLE_MIN_COLUMN)
+    private Double doubleMin;
+
+    @Column(name = DOUBLE_MAX_COLUMN)
+    private Double doubleMax;
+
+    @Column(name = BOOLEAN_COUNT_COLUMN)
+    private long booleanCount;
+
+    @Column(name = BOOLEAN_MIN_COLUMN)
+    private Boolean booleanMin;
+
+    @Column(name = BOOLEAN_MAX_COLUMN)
+    private Boolean booleanMax;
+
+    @Column(name = STRING_COUNT_COLUMN)
+    private long strCount;
+
+    @Column(name = STRING_MIN_COLUMN)
+    private String strMin;
+
+    @Column(name = STRING_MAX_COLUMN)
+    private String strMax;
+
+    // Change marks are only written by TsKvRollupRepository.markChanged, a rebuild must not overwrite them
+    @Column(name = CHANGED_TS_COLUMN, updatable = false)
+    private Long changedTs;
+
+    @Column(name = CHANGED_TTL_COLUMN, updatable = false)
+    private Long changedTtl;
+
+    @Column(name = REBUILT_TS_COLUMN)
+    private Long rebuiltTs;
+
+    public TsKvRollupEntity() {
+    }
+
+    public TsKvRollupEntity(TsKvRollup rollup) {
+        this.ts = rollup.getTs();
+        this.longCount = rollup.getLongCount();
+        this.longSum = rollup.getLongSum();
+        this.longMin = rollup.getLongMin();
+        this.longMax = rollup.getLongMax();
+        this.doubleCount = rollup.getDoubleCount();
+        this.doubleSum = rollup.getDoubleSum();
+        this.doubleMin = rollup.getDoubleMin();
+        this.doubleMax = rollup.getDoubleMax();
+        this.booleanCount = rollup.getBooleanCount();
+        this.booleanMin = rollup.getBooleanMin();
+        this.booleanMax = rollup.getBooleanMax();
+        this.strCount = rollup.getStrCount();
+        this.strMin = rollup.getStrMin();
+        this.strMax = rollup.getStrMax();
+        this.changedTs = rollup.getChangedTs();
+        this.changedTtl = rollup.getChangedTtl();
+        this.rebuiltTs = rollup.getRebuiltTs();
+    }
+
+    @Override
+    public TsKvRollup toData() {
+        TsKvRollup rollup = new TsKvRollup(ts);
+        rollup.setLongCount(longCount);
+        rollup.setLongSum(longSum);
+        rollup.setLongMin(longMin);
+        rollup.setLongMax(longMax);
+        rollup.setDoubleCount(doubleCount);
+        rollup.setDoubleSum(doubleSum);
+        rollup.setDoubleMin(doubleMin);
+        rollup.setDoubleMax(doubleMax);
+        rollup.setBooleanCount(booleanCount);
+        rollup.setBooleanMin(booleanMin);
+        rollup.setBooleanMax(booleanMax);
+        rollup.setStrCount(strCount);
+        rollup.setStrMin(strMin);
+        rollup.setStrMax(strMax);
+        rollup.setChangedTs(changedTs);
+        rollup.setChangedTtl(changedTtl != null ? changedTtl : 0L);
+        rollup.setRebuiltTs(rebuiltTs);
+        return rollup;
+    }
+}
@@ -20,30 +20,26 @@ import com.datastax.driver.core.ResultSetFuture;
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.server.dao.util.ReadResultsExecutorService;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Created by ashvayka on 21.02.17.
  */
 public abstract class CassandraAbstractAsyncDao extends CassandraAbstractDao {
 
+    @Autowired
+    private ReadResultsExecutorService readResultsExecutorService;
+
     protected ExecutorService readResultsProcessingExecutor;
 
     @PostConstruct
     public void startExecutor() {
-        readResultsProcessingExecutor = Executors.newCachedThreadPool();
-    }
-
-    @PreDestroy
-    public void stopExecutor() {
-        if (readResultsProcessingExecutor != null) {
-            readResultsProcessingExecutor.shutdownNow();
-        }
+        readResultsProcessingExecutor = readResultsExecutorService.getExecutor();
     }
 
     protected <T> ListenableFuture<T> getFuture(ResultSetFuture future, java.util.function.Function<ResultSet, T> transformer) {
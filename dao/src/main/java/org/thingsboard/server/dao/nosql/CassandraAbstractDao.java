@@ -17,17 +17,26 @@ package org.thingsboard.server.dao.nosql;
 
 import com.datastax.driver.core.*;
 import com.datastax.driver.core.exceptions.CodecNotFoundException;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.thingsboard.server.dao.cassandra.CassandraCluster;
+import org.thingsboard.server.dao.cassandra.CassandraRequestLimiter;
+import org.thingsboard.server.dao.exception.DatabaseException;
 import org.thingsboard.server.dao.model.type.*;
 
+import java.util.function.Supplier;
+
 @Slf4j
 public abstract class CassandraAbstractDao {
 
     @Autowired
     protected CassandraCluster cluster;
 
+    @Autowired
+    private CassandraRequestLimiter requestLimiter;
+
     private Session session;
 
     private ConsistencyLevel defaultReadLevel;
@@ -59,34 +68,89 @@ public abstract class CassandraAbstractDao {
     }
 
     protected ResultSet executeRead(Statement statement) {
-        return execute(statement, defaultReadLevel);
+        return execute(statement, defaultReadLevel, requestLimiter.getReadPermits());
     }
 
     protected ResultSet executeWrite(Statement statement) {
-        return execute(statement, defaultWriteLevel);
+        return execute(statement, defaultWriteLevel, requestLimiter.getWritePermits());
     }
 
     protected ResultSetFuture executeAsyncRead(Statement statement) {
-        return executeAsync(statement, defaultReadLevel);
+        return executeAsync(statement, defaultReadLevel, requestLimiter.getReadPermits());
     }
 
     protected ResultSetFuture executeAsyncWrite(Statement statement) {
-        return executeAsync(statement, defaultWriteLevel);
+        return executeAsync(statement, defaultWriteLevel, requestLimiter.getWritePermits());
     }
 
-    private ResultSet execute(Statement statement, ConsistencyLevel level) {
+    private ResultSet execute(Statement statement, ConsistencyLevel level, CassandraRequestLimiter.Permits permits) {
         log.debug("Execute cassandra statement {}", statement);
         if (statement.getConsistencyLevel() == null) {
             statement.setConsistencyLevel(level);
         }
-        return getSession().execute(statement);
+        permits.acquire();
+        try {
+            return getSession().execute(statement);
+        } finally {
+            permits.release();
+        }
     }
 
-    private ResultSetFuture executeAsync(Statement statement, ConsistencyLevel level) {
+    private ResultSetFuture executeAsync(Statement statement, ConsistencyLevel level, CassandraRequestLimiter.Permits permits) {
         log.debug("Execute cassandra async statement {}", statement);
         if (statement.getConsistencyLevel() == null) {
             statement.setConsistencyLevel(level);
         }
-        return getSession().executeAsync(statement);
+        return executeWithPermit(permits, () -> getSession().executeAsync(statement));
+    }
+
+    /**
+     * Fetches the next page of the result set holding a read permit, like any other read request.
+     */
+    protected ListenableFuture<ResultSet> fetchMoreResults(ResultSet resultSet) {
+        return executeWithPermit(requestLimiter.getReadPermits(), resultSet::fetchMoreResults);
+    }
+
+    /**
+     * Issues the request immediately if a permit is available, otherwise queues it without blocking the caller.
+     */
+    private ResultSetFuture executeWithPermit(CassandraRequestLimiter.Permits permits, Supplier<ListenableFuture<ResultSet>> request) {
+        if (permits.tryAcquire()) {
+            ListenableFuture<ResultSet> future = issue(permits, request);
+            if (future instanceof ResultSetFuture) {
+                return (ResultSetFuture) future;
+            }
+            QueuedResultSetFuture result = new QueuedResultSetFuture();
+            result.setFrom(future);
+            return result;
+        }
+        QueuedResultSetFuture result = new QueuedResultSetFuture();
+        boolean queued = permits.enqueue(() -> {
+            if (result.isCancelled()) {
+                permits.release();
+            } else {
+                try {
+                    result.setFrom(issue(permits, request));
+                } catch (RuntimeException e) {
+                    result.fail(e);
+                }
+            }
+        });
+        if (!queued) {
+            result.fail(new DatabaseException("Too many Cassandra requests are waiting for a permit"));
+        }
+        return result;
+    }
+
+    private ListenableFuture<ResultSet> issue(CassandraRequestLimiter.Permits permits, Supplier<ListenableFuture<ResultSet>> request) {
+        ListenableFuture<ResultSet> future;
+        try {
+            future = request.get();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        future.addListener(permits::release, MoreExecutors.directExecutor());
+        return future;
     }
-}
\ No newline at end of file
+}
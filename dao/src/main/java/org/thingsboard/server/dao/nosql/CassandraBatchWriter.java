@@ -0,0 +1,186 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.nosql;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Groups write statements that target the same Cassandra partition into unlogged batches.
+ * A batch is sent once it reaches the max size or once it is older than the linger time.
+ * The linger timeout is scheduled only when a batch is opened, so an idle writer costs nothing.
+ *
+ * @param <K> partition key of the grouped statements
+ */
+@Slf4j
+public class CassandraBatchWriter<K> {
+
+    private final Function<Statement, ? extends ListenableFuture<ResultSet>> executor;
+    private final ScheduledExecutorService scheduler;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final ConcurrentMap<K, PendingBatch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor  executes the single statements and the batches
+     * @param scheduler sends the batches that reached the linger time, may be shared between writers
+     */
+    public CassandraBatchWriter(Function<Statement, ? extends ListenableFuture<ResultSet>> executor, ScheduledExecutorService scheduler,
+                                int maxBatchSize, long lingerMs) {
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMs = lingerMs;
+    }
+
+    public ListenableFuture<Void> add(K key, Statement statement) {
+        return add(key, statement, null, 0L);
+    }
+
+    /**
+     * Adds a statement that supersedes the statements with the same row key in the batch. Statements of a batch share
+     * one write timestamp, so only the statement with the highest version is kept for each row, the last added one
+     * on a tie. The superseded statements complete together with the batch.
+     */
+    public ListenableFuture<Void> add(K key, Statement statement, Object rowKey, long version) {
+        SettableFuture<Void> future = SettableFuture.create();
+        List<PendingBatch> opened = new ArrayList<>(1);
+        List<PendingBatch> full = new ArrayList<>(1);
+        batches.compute(key, (k, batch) -> {
+            if (batch == null) {
+                batch = new PendingBatch();
+                opened.add(batch);
+            }
+            batch.add(statement, rowKey, version, future);
+            if (batch.size() >= maxBatchSize) {
+                full.add(batch);
+                return null;
+            }
+            return batch;
+        });
+        if (!full.isEmpty()) {
+            execute(full.get(0));
+        } else if (!opened.isEmpty()) {
+            scheduleLinger(key, opened.get(0));
+        }
+        return future;
+    }
+
+    public void stop() {
+        for (K key : batches.keySet()) {
+            PendingBatch batch = batches.remove(key);
+            if (batch != null) {
+                execute(batch);
+            }
+        }
+    }
+
+    private void scheduleLinger(K key, PendingBatch batch) {
+        try {
+            scheduler.schedule(() -> {
+                if (batches.remove(key, batch)) {
+                    execute(batch);
+                }
+            }, lingerMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (batches.remove(key, batch)) {
+                execute(batch);
+            }
+        }
+    }
+
+    private void execute(PendingBatch batch) {
+        Statement statement;
+        if (batch.size() == 1) {
+            statement = batch.statements.get(0);
+        } else {
+            statement = new BatchStatement(BatchStatement.Type.UNLOGGED).addAll(batch.statements);
+        }
+        try {
+            Futures.addCallback(executor.apply(statement), new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(@Nullable ResultSet result) {
+                    batch.futures.forEach(f -> f.set(null));
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    batch.futures.forEach(f -> f.setException(t));
+                }
+            }, MoreExecutors.directExecutor());
+        } catch (Exception e) {
+            batch.futures.forEach(f -> f.setException(e));
+        }
+    }
+
+    private static class PendingBatch {
+        private final List<Statement> statements = new ArrayList<>();
+        private final List<SettableFuture<Void>> futures = new ArrayList<>();
+        private Map<Object, RowStatement> rows;
+
+        void add(Statement statement, Object rowKey, long version, SettableFuture<Void> future) {
+            futures.add(future);
+            if (rowKey == null) {
+                statements.add(statement);
+                return;
+            }
+            if (rows == null) {
+                rows = new HashMap<>();
+            }
+            RowStatement current = rows.get(rowKey);
+            if (current == null) {
+                rows.put(rowKey, new RowStatement(statements.size(), version));
+                statements.add(statement);
+            } else if (current.version <= version) {
+                current.version = version;
+                statements.set(current.index, statement);
+            }
+        }
+
+        int size() {
+            return statements.size();
+        }
+    }
+
+    private static class RowStatement {
+        private final int index;
+        private long version;
+
+        RowStatement(int index, long version) {
+            this.index = index;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.nosql;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.DriverInternalError;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of a request that is issued later, once the request limiter grants it a permit.
+ * Cancelling it cancels the issued driver request as well.
+ */
+class QueuedResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+    private volatile ListenableFuture<ResultSet> issued;
+
+    void setFrom(ListenableFuture<ResultSet> future) {
+        issued = future;
+        if (isCancelled()) {
+            future.cancel(false);
+            return;
+        }
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+                set(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                setException(t);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    void fail(Throwable t) {
+        setException(t);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!super.cancel(mayInterruptIfRunning)) {
+            return false;
+        }
+        ListenableFuture<ResultSet> future = issued;
+        if (future != null) {
+            future.cancel(mayInterruptIfRunning);
+        }
+        return true;
+    }
+
+    @Override
+    public ResultSet getUninterruptibly() {
+        try {
+            return Uninterruptibles.getUninterruptibly(this);
+        } catch (ExecutionException e) {
+            throw propagateCause(e);
+        }
+    }
+
+    @Override
+    public ResultSet getUninterruptibly(long timeout, TimeUnit unit) throws TimeoutException {
+        try {
+            return Uninterruptibles.getUninterruptibly(this, timeout, unit);
+        } catch (ExecutionException e) {
+            throw propagateCause(e);
+        }
+    }
+
+    private static RuntimeException propagateCause(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof DriverException) {
+            return ((DriverException) cause).copy();
+        } else if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else {
+            return new DriverInternalError("Unexpected exception thrown", cause);
+        }
+    }
+}
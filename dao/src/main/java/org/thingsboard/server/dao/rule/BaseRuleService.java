@@ -71,6 +71,9 @@ public class BaseRuleService extends AbstractEntityService implements RuleServic
     @Autowired
     private ComponentDescriptorService componentDescriptorService;
 
+    @Autowired
+    private SensorThresholdService sensorThresholdService;
+
     @Override
     public RuleMetaData saveRule(RuleMetaData rule) {
         ruleValidator.validate(rule);
@@ -110,7 +113,9 @@ public class BaseRuleService extends AbstractEntityService implements RuleServic
         rule.setSensor_name(device.getSensor().get("temperature").get("sensor_name").asText());
 
 
-        return ruleDao.save(rule);
+        RuleMetaData savedRule = ruleDao.save(rule);
+        sensorThresholdService.onRuleSaved(savedRule);
+        return savedRule;
     }
 
     private void validateFilters(JsonNode filtersJson) {
@@ -270,6 +275,7 @@ public class BaseRuleService extends AbstractEntityService implements RuleServic
         validateId(ruleId, "Incorrect rule id for delete rule request.");
         deleteEntityRelations(ruleId);
         ruleDao.deleteById(ruleId);
+        sensorThresholdService.onRuleDeleted(ruleId);
     }
 
     @Override
@@ -288,7 +294,7 @@ public class BaseRuleService extends AbstractEntityService implements RuleServic
         if (rule != null) {
             rule.setState(state);
             validateRuleAndPluginState(rule);
-            ruleDao.save(rule);
+            sensorThresholdService.onRuleSaved(ruleDao.save(rule));
         } else {
             throw new DatabaseException("Plugin not found!");
         }
@@ -321,6 +327,7 @@ public class BaseRuleService extends AbstractEntityService implements RuleServic
                 @Override
                 protected void removeEntity(RuleMetaData entity) {
                     ruleDao.deleteById(entity.getUuidId());
+                    sensorThresholdService.onRuleDeleted(entity.getId());
                 }
             };
 
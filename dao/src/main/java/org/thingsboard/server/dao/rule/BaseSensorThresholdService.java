@@ -0,0 +1,382 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.rule;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleState;
+import org.thingsboard.server.common.data.rule.RuleMetaData;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the rules with a device, a sensor and limits in memory, indexed by device and sensor id,
+ * so every telemetry entry is checked with a single map lookup. Alarm status changes are written
+ * to the rule asynchronously, and the rules are reloaded periodically to pick up changes made on other nodes.
+ * <p>
+ * Only devices owned by this node are evaluated, so the in-memory alarm state is authoritative until the device
+ * moves to another node. The state of a sensor whose device was owned by another node meanwhile may be outdated.
+ * It is reloaded from the rule in the database, and values received until the reload completes are evaluated
+ * against the reloaded state, in arrival order.
+ */
+@Service
+@Slf4j
+public class BaseSensorThresholdService implements SensorThresholdService {
+
+    private static final int MAX_PENDING_VALUES = 1000;
+
+    @Value("${sensor_threshold.enabled}")
+    private boolean enabled;
+
+    @Value("${sensor_threshold.hysteresis}")
+    private double hysteresis;
+
+    @Value("${sensor_threshold.debounce_count}")
+    private int debounceCount;
+
+    @Value("${sensor_threshold.reload_interval_ms}")
+    private long reloadIntervalMs;
+
+    @Autowired
+    private RuleDao ruleDao;
+
+    private final ConcurrentMap<RuleId, SensorThreshold> thresholds = new ConcurrentHashMap<>();
+
+    private volatile Map<SensorKey, List<SensorThreshold>> thresholdsBySensor = Collections.emptyMap();
+
+    private volatile Predicate<EntityId> ownershipFilter = entityId -> true;
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            executor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("sensor-threshold-reload").setDaemon(true).build());
+            executor.execute(this::reload);
+            if (reloadIntervalMs > 0) {
+                executor.scheduleWithFixedDelay(this::reload, reloadIntervalMs, reloadIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public void setOwnershipFilter(Predicate<EntityId> ownershipFilter) {
+        this.ownershipFilter = ownershipFilter;
+    }
+
+    @Override
+    public void invalidateNotOwned() {
+        thresholds.values().forEach(threshold -> {
+            if (!ownershipFilter.test(new DeviceId(threshold.getKey().getDeviceId()))) {
+                threshold.invalidate();
+            }
+        });
+    }
+
+    @Override
+    public void evaluate(EntityId entityId, List<TsKvEntry> tsKvEntries) {
+        Map<SensorKey, List<SensorThreshold>> index = thresholdsBySensor;
+        if (index.isEmpty() || entityId.getEntityType() != EntityType.DEVICE || !ownershipFilter.test(entityId)) {
+            return;
+        }
+        for (TsKvEntry tsKvEntry : tsKvEntries) {
+            List<SensorThreshold> sensorThresholds = index.get(new SensorKey(entityId.getId(), tsKvEntry.getKey()));
+            if (sensorThresholds != null) {
+                Double value = toDouble(tsKvEntry);
+                if (value != null) {
+                    sensorThresholds.forEach(threshold -> evaluate(threshold, tsKvEntry.getTs(), value));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onRuleSaved(RuleMetaData rule) {
+        if (enabled) {
+            SensorThreshold previous;
+            SensorThreshold threshold;
+            synchronized (this) {
+                previous = thresholds.get(rule.getId());
+                threshold = toThreshold(rule, getTrusted(rule.getId()));
+                if (threshold != null) {
+                    thresholds.put(rule.getId(), threshold);
+                } else {
+                    thresholds.remove(rule.getId());
+                }
+                refreshIndex();
+            }
+            handOver(previous, threshold);
+        }
+    }
+
+    @Override
+    public synchronized void onRuleDeleted(RuleId ruleId) {
+        if (enabled) {
+            SensorThreshold previous = thresholds.remove(ruleId);
+            if (previous != null) {
+                refreshIndex();
+                previous.replaceWith(null);
+            }
+        }
+    }
+
+    @Override
+    public void reload() {
+        try {
+            List<RuleMetaData> rules = ruleDao.find();
+            Map<RuleId, SensorThreshold> previous;
+            Map<RuleId, SensorThreshold> loaded = new HashMap<>();
+            synchronized (this) {
+                previous = new HashMap<>(thresholds);
+                for (RuleMetaData rule : rules) {
+                    SensorThreshold threshold = toThreshold(rule, getTrusted(rule.getId()));
+                    if (threshold != null) {
+                        loaded.put(rule.getId(), threshold);
+                    }
+                }
+                thresholds.keySet().retainAll(loaded.keySet());
+                thresholds.putAll(loaded);
+                refreshIndex();
+                log.debug("Loaded {} sensor thresholds", loaded.size());
+            }
+            previous.forEach((ruleId, threshold) -> handOver(threshold, loaded.get(ruleId)));
+        } catch (Exception e) {
+            log.warn("Failed to load sensor thresholds", e);
+        }
+    }
+
+    private SensorThreshold getTrusted(RuleId ruleId) {
+        SensorThreshold current = thresholds.get(ruleId);
+        return current != null && current.isTrusted() ? current : null;
+    }
+
+    private void evaluate(SensorThreshold threshold, long ts, double value) {
+        if (!threshold.isTrusted()) {
+            if (!threshold.addPending(new PendingValue(ts, value))) {
+                log.debug("[{}] Too many values waiting for the sensor threshold reload, skipping value", threshold.getRuleId());
+            }
+            if (threshold.startRefresh()) {
+                executor.execute(() -> refresh(threshold));
+            }
+            if (threshold.isReplaced()) {
+                // The value may have been added after the pending values were handed over
+                handOver(threshold, threshold.getReplacement());
+            }
+            return;
+        }
+        Boolean alarmStatus = threshold.getState().update(ts, value);
+        if (alarmStatus != null) {
+            log.debug("[{}] Sensor [{}] alarm status changed to [{}]", threshold.getRuleId(), threshold.getKey().getSensorId(), alarmStatus);
+            executor.execute(() -> saveAlarmStatus(threshold, alarmStatus));
+        }
+    }
+
+    /**
+     * Rebuilds the state of the rule threshold from the rule in the database, unless the threshold was replaced meanwhile.
+     */
+    private void refresh(SensorThreshold previous) {
+        RuleId ruleId = previous.getRuleId();
+        try {
+            RuleMetaData rule = ruleDao.findById(ruleId);
+            SensorThreshold threshold;
+            synchronized (this) {
+                if (thresholds.get(ruleId) != previous) {
+                    return;
+                }
+                threshold = rule != null ? toThreshold(rule, null) : null;
+                if (threshold != null) {
+                    thresholds.put(ruleId, threshold);
+                } else {
+                    thresholds.remove(ruleId);
+                }
+                refreshIndex();
+            }
+            handOver(previous, threshold);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to reload sensor threshold", ruleId, e);
+            previous.getRefreshing().set(false);
+        }
+    }
+
+    /**
+     * Evaluates the values that arrived while the previous threshold was reloaded against the one replacing it.
+     * Values of a removed threshold are dropped.
+     */
+    private void handOver(SensorThreshold previous, SensorThreshold replacement) {
+        if (previous == null || previous == replacement) {
+            return;
+        }
+        previous.replaceWith(replacement);
+        PendingValue pending;
+        while ((pending = previous.pollPending()) != null) {
+            if (replacement != null) {
+                evaluate(replacement, pending.getTs(), pending.getValue());
+            }
+        }
+    }
+
+    private void saveAlarmStatus(SensorThreshold threshold, boolean alarmStatus) {
+        try {
+            ruleDao.updateAlarmStatus(threshold.getRuleId(), threshold.getTenantId(), alarmStatus);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to save alarm status", threshold.getRuleId(), e);
+        }
+    }
+
+    private void refreshIndex() {
+        Map<SensorKey, List<SensorThreshold>> index = new HashMap<>();
+        thresholds.values().forEach(threshold -> index.computeIfAbsent(threshold.getKey(), key -> new ArrayList<>(1)).add(threshold));
+        thresholdsBySensor = index;
+    }
+
+    /**
+     * Returns the threshold of the rule, keeping the state of the current one if its sensor and limits are unchanged,
+     * or null if the rule does not check sensor limits. A new state starts from the alarm status stored in the rule.
+     */
+    private SensorThreshold toThreshold(RuleMetaData rule, SensorThreshold current) {
+        if (rule.getState() == ComponentLifecycleState.SUSPENDED || rule.getDevice_id() == null || rule.getSensor_id() == null
+                || (rule.getLower_limit() == null && rule.getUpper_limit() == null)) {
+            return null;
+        }
+        UUID deviceId;
+        try {
+            deviceId = UUID.fromString(rule.getDevice_id());
+        } catch (IllegalArgumentException e) {
+            log.debug("[{}] Invalid device id [{}] of sensor rule", rule.getId(), rule.getDevice_id());
+            return null;
+        }
+        SensorKey key = new SensorKey(deviceId, rule.getSensor_id());
+        if (current != null && current.getKey().equals(key) && current.getState().hasLimits(rule.getLower_limit(), rule.getUpper_limit())) {
+            return current;
+        }
+        SensorThreshold threshold = new SensorThreshold(rule.getId(), rule.getTenantId(), key,
+                new SensorThresholdState(rule.getLower_limit(), rule.getUpper_limit(), rule.getAlarm_status(), hysteresis, debounceCount));
+        if (!ownershipFilter.test(new DeviceId(deviceId))) {
+            threshold.invalidate();
+        }
+        return threshold;
+    }
+
+    private static Double toDouble(TsKvEntry tsKvEntry) {
+        switch (tsKvEntry.getDataType()) {
+            case DOUBLE:
+                return tsKvEntry.getDoubleValue().orElse(null);
+            case LONG:
+                return tsKvEntry.getLongValue().map(Long::doubleValue).orElse(null);
+            default:
+                return null;
+        }
+    }
+
+    @Data
+    private static class SensorKey {
+        private final UUID deviceId;
+        private final String sensorId;
+    }
+
+    @Data
+    private static class PendingValue {
+        private final long ts;
+        private final double value;
+    }
+
+    @Data
+    private static class SensorThreshold {
+        private final RuleId ruleId;
+        private final TenantId tenantId;
+        private final SensorKey key;
+        private final SensorThresholdState state;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final Queue<PendingValue> pendingValues = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendingCount = new AtomicInteger();
+        private volatile boolean invalidated;
+        private volatile SensorThreshold replacement;
+        private volatile boolean replaced;
+
+        boolean isTrusted() {
+            return !invalidated;
+        }
+
+        void invalidate() {
+            invalidated = true;
+        }
+
+        boolean startRefresh() {
+            return refreshing.compareAndSet(false, true);
+        }
+
+        boolean addPending(PendingValue value) {
+            if (pendingCount.incrementAndGet() > MAX_PENDING_VALUES) {
+                pendingCount.decrementAndGet();
+                return false;
+            }
+            pendingValues.add(value);
+            return true;
+        }
+
+        PendingValue pollPending() {
+            PendingValue value = pendingValues.poll();
+            if (value != null) {
+                pendingCount.decrementAndGet();
+            }
+            return value;
+        }
+
+        /**
+         * Marks the threshold as replaced, so values added to it afterwards are handed over by the adding thread.
+         */
+        void replaceWith(SensorThreshold replacement) {
+            this.invalidated = true;
+            this.replacement = replacement;
+            this.replaced = true;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import java.util.UUID;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.*;
 import static org.thingsboard.server.dao.model.ModelConstants.NULL_UUID;
+import static org.thingsboard.server.dao.model.ModelConstants.RULE_ALARM_STATUS;
 import static org.thingsboard.server.dao.model.ModelConstants.RULE_BY_SENSOR_ID;
 import static org.thingsboard.server.dao.model.ModelConstants.RULE_SENSOR_ID;
 
@@ -111,6 +112,15 @@ public class CassandraBaseRuleDao extends CassandraAbstractSearchTextDao<RuleMet
         return Optional.ofNullable(DaoUtil.getData(findOneByStatement(query)));
     }
 
+    @Override
+    public void updateAlarmStatus(RuleId ruleId, TenantId tenantId, Boolean alarmStatus) {
+        log.debug("Update alarm status of rule [{}] to [{}]", ruleId, alarmStatus);
+        executeWrite(update(getColumnFamilyName())
+                .with(set(RULE_ALARM_STATUS, alarmStatus))
+                .where(eq(ModelConstants.ID_PROPERTY, ruleId.getId()))
+                .and(eq(ModelConstants.RULE_TENANT_ID_PROPERTY, tenantId.getId())));
+    }
+
 
 
     @Override
@@ -37,6 +37,11 @@ public interface RuleDao extends Dao<RuleMetaData> {
 
     Optional<RuleMetaData> findRuleBySensorId(UUID sensor_id);
 
+    /**
+     * Updates the alarm status of the rule without overriding its other fields.
+     */
+    void updateAlarmStatus(RuleId ruleId, TenantId tenantId, Boolean alarmStatus);
+
     List<RuleMetaData> findByTenantIdAndPageLink(TenantId tenantId, TextPageLink pageLink);
 
     /**
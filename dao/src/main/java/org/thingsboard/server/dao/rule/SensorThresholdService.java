@@ -0,0 +1,53 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.rule;
+
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleId;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.data.rule.RuleMetaData;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Checks device telemetry against the lower and upper limits of the sensor rules kept in memory
+ * and persists the rule alarm status when it changes.
+ */
+public interface SensorThresholdService {
+
+    /**
+     * Sets the check whether an entity is owned by this node. Telemetry of other entities is not evaluated.
+     */
+    void setOwnershipFilter(Predicate<EntityId> ownershipFilter);
+
+    /**
+     * Marks the alarm states of devices that are no longer owned by this node as outdated.
+     */
+    void invalidateNotOwned();
+
+    /**
+     * Evaluates telemetry that was saved successfully.
+     */
+    void evaluate(EntityId entityId, List<TsKvEntry> tsKvEntries);
+
+    void onRuleSaved(RuleMetaData rule);
+
+    void onRuleDeleted(RuleId ruleId);
+
+    void reload();
+
+}
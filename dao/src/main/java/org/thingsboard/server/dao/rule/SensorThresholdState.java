@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.rule;
+
+/**
+ * Alarm state of a sensor rule with lower and/or upper limits. A value outside of the limits raises the alarm,
+ * while a raised alarm is cleared only by a value inside the limits narrowed by the hysteresis.
+ * The state changes only after the configured number of consecutive values agree on the new state,
+ * values older than the last evaluated one are ignored.
+ */
+class SensorThresholdState {
+
+    private final Double lowerLimit;
+    private final Double upperLimit;
+    private final double hysteresis;
+    private final int debounceCount;
+
+    private Boolean alarm;
+    private boolean candidate;
+    private int candidateCount;
+    private long lastTs = Long.MIN_VALUE;
+
+    SensorThresholdState(Double lowerLimit, Double upperLimit, Boolean alarm, double hysteresis, int debounceCount) {
+        this.lowerLimit = lowerLimit;
+        this.upperLimit = upperLimit;
+        this.alarm = alarm;
+        this.hysteresis = hysteresis;
+        this.debounceCount = Math.max(debounceCount, 1);
+    }
+
+    /**
+     * Evaluates the value against the limits.
+     *
+     * @return the new alarm status if the value changed it, otherwise null
+     */
+    synchronized Boolean update(long ts, double value) {
+        if (ts < lastTs) {
+            return null;
+        }
+        lastTs = ts;
+        boolean next = isOutside(value, Boolean.TRUE.equals(alarm) ? hysteresis : 0.0);
+        if (alarm != null && next == alarm) {
+            candidateCount = 0;
+            return null;
+        }
+        if (candidateCount == 0 || candidate != next) {
+            candidate = next;
+            candidateCount = 0;
+        }
+        if (++candidateCount < debounceCount) {
+            return null;
+        }
+        alarm = next;
+        candidateCount = 0;
+        return alarm;
+    }
+
+    synchronized Boolean getAlarm() {
+        return alarm;
+    }
+
+    boolean hasLimits(Double lowerLimit, Double upperLimit) {
+        return equal(this.lowerLimit, lowerLimit) && equal(this.upperLimit, upperLimit);
+    }
+
+    private boolean isOutside(double value, double margin) {
+        return (lowerLimit != null && value < lowerLimit + margin) || (upperLimit != null && value > upperLimit - margin);
+    }
+
+    private static boolean equal(Double d1, Double d2) {
+        return d1 == null ? d2 == null : d1.equals(d2);
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sensor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.device.DeviceDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects sensor updates per device in memory and writes them to the device entity periodically,
+ * so that the telemetry ingest path never waits on the device table. Updates of a device received
+ * between two flushes are coalesced into a single write of the sensor column.
+ */
+@Service
+@Slf4j
+public class BaseSensorSnapshotService implements SensorSnapshotService {
+
+    private static final int MAX_BACKOFF_SHIFT = 6;
+
+    @Value("${sensor_snapshot.flush_interval_ms}")
+    private long flushIntervalMs;
+
+    @Value("${sensor_snapshot.max_retries}")
+    private int maxRetries;
+
+    @Autowired
+    private DeviceDao deviceDao;
+
+    private final ConcurrentMap<DeviceId, Map<String, SensorSnapshot>> pending = new ConcurrentHashMap<>();
+
+    private final Map<DeviceId, FailedAttempts> failures = new HashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("sensor-snapshot-flush").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        flush(true);
+    }
+
+    @Override
+    public void update(EntityId entityId, List<TsKvEntry> tsKvEntries) {
+        if (entityId.getEntityType() != EntityType.DEVICE || tsKvEntries.isEmpty()) {
+            return;
+        }
+        Map<String, SensorSnapshot> snapshots = new HashMap<>();
+        for (TsKvEntry tsKvEntry : tsKvEntries) {
+            putIfNewer(snapshots, new SensorSnapshot(tsKvEntry));
+        }
+        merge(new DeviceId(entityId.getId()), snapshots);
+    }
+
+    /**
+     * Writes the collected snapshots of all devices in parallel, updating only the sensor column of each device.
+     * Snapshots of devices that failed to save are merged back with the updates received meanwhile and retried
+     * with an exponential backoff, up to the configured number of retries.
+     */
+    @Override
+    public void flush() {
+        flush(false);
+    }
+
+    private synchronized void flush(boolean force) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<DeviceId, Map<String, SensorSnapshot>> batch = new LinkedHashMap<>();
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (DeviceId deviceId : new ArrayList<>(pending.keySet())) {
+            FailedAttempts failed = failures.get(deviceId);
+            if (!force && failed != null && failed.nextAttemptTs > now) {
+                continue;
+            }
+            Map<String, SensorSnapshot> sensors = pending.remove(deviceId);
+            if (sensors != null) {
+                batch.put(deviceId, sensors);
+                futures.add(deviceDao.updateSensorAsync(deviceId.getId(), toJson(sensors)));
+            }
+        }
+        log.trace("Flushing sensor snapshots for {} devices", batch.size());
+        int i = 0;
+        for (Map.Entry<DeviceId, Map<String, SensorSnapshot>> entry : batch.entrySet()) {
+            try {
+                futures.get(i++).get();
+                failures.remove(entry.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                onFailure(entry.getKey(), entry.getValue(), now, e);
+            } catch (Exception e) {
+                onFailure(entry.getKey(), entry.getValue(), now, e);
+            }
+        }
+    }
+
+    private void onFailure(DeviceId deviceId, Map<String, SensorSnapshot> sensors, long now, Exception e) {
+        FailedAttempts failed = failures.computeIfAbsent(deviceId, id -> new FailedAttempts());
+        failed.count++;
+        if (failed.count > maxRetries) {
+            log.warn("[{}] Failed to save sensor snapshot {} times, dropping it", deviceId, failed.count, e);
+            failures.remove(deviceId);
+            return;
+        }
+        failed.nextAttemptTs = now + (flushIntervalMs << Math.min(failed.count - 1, MAX_BACKOFF_SHIFT));
+        log.debug("[{}] Failed to save sensor snapshot, retry {} of {}", deviceId, failed.count, maxRetries, e);
+        merge(deviceId, sensors);
+    }
+
+    private void merge(DeviceId deviceId, Map<String, SensorSnapshot> snapshots) {
+        pending.compute(deviceId, (id, sensors) -> {
+            if (sensors == null) {
+                sensors = new HashMap<>();
+            }
+            for (SensorSnapshot snapshot : snapshots.values()) {
+                putIfNewer(sensors, snapshot);
+            }
+            return sensors;
+        });
+    }
+
+    private static void putIfNewer(Map<String, SensorSnapshot> sensors, SensorSnapshot snapshot) {
+        SensorSnapshot current = sensors.get(snapshot.getName());
+        if (current == null || current.getTs() <= snapshot.getTs()) {
+            sensors.put(snapshot.getName(), snapshot);
+        }
+    }
+
+    private static Map<String, JsonNode> toJson(Map<String, SensorSnapshot> sensors) {
+        Map<String, JsonNode> result = new HashMap<>();
+        sensors.forEach((name, snapshot) -> result.put(name, snapshot.toJson()));
+        return result;
+    }
+
+    private static class FailedAttempts {
+        private int count;
+        private long nextAttemptTs;
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sensor;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.Data;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+@Data
+public class SensorSnapshot {
+
+    public static final String SENSOR_NAME = "sensor_name";
+    public static final String SENSOR_TYPE = "sensor_type";
+    public static final String SENSOR_VALUE = "sensor_value";
+
+    private static final String BOOLEAN_TYPE = "BOOLEAN";
+    private static final String STRING_TYPE = "STRING";
+    private static final String NUMERICAL_TYPE = "NUMERICAL";
+
+    private final String name;
+    private final long ts;
+    private final TsKvEntry entry;
+
+    public SensorSnapshot(TsKvEntry entry) {
+        this.name = entry.getKey();
+        this.ts = entry.getTs();
+        this.entry = entry;
+    }
+
+    public ObjectNode toJson() {
+        ObjectNode node = JsonNodeFactory.instance.objectNode();
+        node.put(SENSOR_NAME, name);
+        switch (entry.getDataType()) {
+            case BOOLEAN:
+                node.put(SENSOR_TYPE, BOOLEAN_TYPE);
+                node.put(SENSOR_VALUE, entry.getBooleanValue().get());
+                break;
+            case STRING:
+                node.put(SENSOR_TYPE, STRING_TYPE);
+                node.put(SENSOR_VALUE, entry.getStrValue().get());
+                break;
+            case LONG:
+                node.put(SENSOR_TYPE, NUMERICAL_TYPE);
+                node.put(SENSOR_VALUE, entry.getLongValue().get());
+                break;
+            case DOUBLE:
+                node.put(SENSOR_TYPE, NUMERICAL_TYPE);
+                node.put(SENSOR_VALUE, entry.getDoubleValue().get());
+                break;
+        }
+        return node;
+    }
+}
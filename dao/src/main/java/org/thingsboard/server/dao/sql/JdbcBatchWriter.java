@@ -0,0 +1,187 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates entities and writes them with one JDBC batch statement.
+ * A batch is executed once it reaches the max size or once its first entity waited for the linger time.
+ * When a batch fails, its entities are written one by one so that a single bad entity fails only its own future.
+ * Entities added while the queue is full fail immediately.
+ *
+ * @param <E> type of the written entities
+ */
+@Slf4j
+public class JdbcBatchWriter<E> {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    public interface ParameterSetter<E> {
+        void setValues(PreparedStatement ps, E entity) throws SQLException;
+    }
+
+    private final String name;
+    private final JdbcTemplate jdbcTemplate;
+    private final String sql;
+    private final ParameterSetter<E> parameterSetter;
+    private final int maxBatchSize;
+    private final long lingerMs;
+    private final BlockingQueue<PendingEntity<E>> queue;
+    private final ExecutorService executor;
+
+    private volatile boolean stopped;
+
+    public JdbcBatchWriter(String name, JdbcTemplate jdbcTemplate, String sql, ParameterSetter<E> parameterSetter,
+                           int maxBatchSize, long lingerMs, int maxQueueSize) {
+        this.name = name;
+        this.jdbcTemplate = jdbcTemplate;
+        this.sql = sql;
+        this.parameterSetter = parameterSetter;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerMs = lingerMs;
+        this.queue = new LinkedBlockingQueue<>(Math.max(this.maxBatchSize, maxQueueSize));
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat(name + "-batch-writer").setDaemon(true).build());
+        this.executor.submit(this::run);
+    }
+
+    public ListenableFuture<Void> add(E entity) {
+        SettableFuture<Void> future = SettableFuture.create();
+        if (stopped) {
+            future.setException(new IllegalStateException(name + " batch writer is stopped"));
+            return future;
+        }
+        PendingEntity<E> pendingEntity = new PendingEntity<>(entity, future);
+        if (!queue.offer(pendingEntity)) {
+            future.setException(new IllegalStateException(name + " batch writer queue is full"));
+        } else if (stopped && queue.remove(pendingEntity)) {
+            // Raced with stop(), the queue may already be drained
+            future.setException(new IllegalStateException(name + " batch writer is stopped"));
+        }
+        return future;
+    }
+
+    public void stop() {
+        stopped = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("[{}] Batch writer did not finish pending writes in time", name);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        List<PendingEntity<E>> unwritten = new ArrayList<>();
+        queue.drainTo(unwritten);
+        if (!unwritten.isEmpty()) {
+            log.warn("[{}] Failed {} entities that were not written before stop", name, unwritten.size());
+            IllegalStateException e = new IllegalStateException(name + " batch writer is stopped");
+            unwritten.forEach(p -> p.future.setException(e));
+        }
+    }
+
+    private void run() {
+        List<PendingEntity<E>> batch = new ArrayList<>(maxBatchSize);
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                PendingEntity<E> first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + lingerMs;
+                while (batch.size() < maxBatchSize) {
+                    long waitMs = deadline - System.currentTimeMillis();
+                    PendingEntity<E> next = waitMs > 0 ? queue.poll(waitMs, TimeUnit.MILLISECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                execute(batch);
+            } catch (InterruptedException e) {
+                log.info("[{}] Batch writer interrupted", name);
+                batch.forEach(p -> p.future.setException(e));
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<PendingEntity<E>> batch) {
+        try {
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    parameterSetter.setValues(ps, batch.get(i).entity);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+            log.trace("[{}] Saved batch of {} entities", name, batch.size());
+            batch.forEach(p -> p.future.set(null));
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                log.warn("[{}] Failed to save entity", name, e);
+                batch.get(0).future.setException(e);
+            } else {
+                log.warn("[{}] Failed to save batch of {} entities, saving them one by one", name, batch.size(), e);
+                batch.forEach(this::executeSingle);
+            }
+        }
+    }
+
+    private void executeSingle(PendingEntity<E> pendingEntity) {
+        try {
+            jdbcTemplate.update(sql, ps -> parameterSetter.setValues(ps, pendingEntity.entity));
+            pendingEntity.future.set(null);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to save entity", name, e);
+            pendingEntity.future.setException(e);
+        }
+    }
+
+    private static class PendingEntity<E> {
+        private final E entity;
+        private final SettableFuture<Void> future;
+
+        PendingEntity(E entity, SettableFuture<Void> future) {
+            this.entity = entity;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.dao.util.InstrumentedThreadPoolExecutor;
+import org.thingsboard.server.dao.util.SqlDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded executor for blocking JPA and JDBC reads, so callers get a future instead of waiting on the database.
+ */
+@Component
+@Slf4j
+@SqlDao
+public class JpaReadExecutorService {
+
+    @Value("${sql.read_executor.pool_size}")
+    private int poolSize;
+
+    @Value("${sql.read_executor.queue_size}")
+    private int queueSize;
+
+    @Value("${sql.read_executor.rejection_policy}")
+    private String rejectionPolicy;
+
+    @Value("${sql.read_executor.stats_interval_ms}")
+    private long statsIntervalMs;
+
+    private InstrumentedThreadPoolExecutor executor;
+    private ListeningExecutorService listeningExecutor;
+    private ScheduledExecutorService statsScheduler;
+
+    @PostConstruct
+    public void init() {
+        executor = new InstrumentedThreadPoolExecutor("sql-read", poolSize, queueSize, rejectionPolicy);
+        listeningExecutor = MoreExecutors.listeningDecorator(executor);
+        if (statsIntervalMs > 0) {
+            statsScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("sql-read-executor-stats").setDaemon(true).build());
+            statsScheduler.scheduleAtFixedRate(() -> log.info("Executor stats: {}", executor.getStats()),
+                    statsIntervalMs, statsIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Submits a read. A rejected read results in a failed future rather than an exception on the calling thread.
+     */
+    public <T> ListenableFuture<T> submit(Callable<T> read) {
+        try {
+            return listeningExecutor.submit(read);
+        } catch (RejectedExecutionException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    public InstrumentedThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+}
@@ -21,6 +21,7 @@ import org.thingsboard.server.dao.model.sql.AttributeKvCompositeKey;
 import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import java.util.Collection;
 import java.util.List;
 
 @SqlDao
@@ -29,5 +30,10 @@ public interface AttributeKvRepository extends CrudRepository<AttributeKvEntity,
     List<AttributeKvEntity> findAllByEntityTypeAndEntityIdAndAttributeType(EntityType entityType,
                                                                            String entityId,
                                                                            String attributeType);
+
+    List<AttributeKvEntity> findAllByEntityTypeAndEntityIdAndAttributeTypeAndAttributeKeyIn(EntityType entityType,
+                                                                                          String entityId,
+                                                                                          String attributeType,
+                                                                                          Collection<String> attributeKeys);
 }
 
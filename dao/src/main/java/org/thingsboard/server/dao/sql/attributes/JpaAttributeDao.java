@@ -29,11 +29,18 @@ import org.thingsboard.server.dao.attributes.AttributesDao;
 import org.thingsboard.server.dao.model.sql.AttributeKvCompositeKey;
 import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
+import org.thingsboard.server.dao.sql.JpaReadExecutorService;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static org.thingsboard.server.common.data.UUIDConverter.fromTimeUUID;
@@ -46,6 +53,9 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
     @Autowired
     private AttributeKvRepository attributeKvRepository;
 
+    @Autowired
+    private JpaReadExecutorService readExecutor;
+
     @Override
     public ListenableFuture<Optional<AttributeKvEntry>> find(EntityId entityId, String attributeType, String attributeKey) {
         AttributeKvCompositeKey compositeKey =
@@ -56,14 +66,19 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
 
     @Override
     public ListenableFuture<List<AttributeKvEntry>> find(EntityId entityId, String attributeType, Collection<String> attributeKeys) {
-        List<AttributeKvCompositeKey> compositeKeys =
-                attributeKeys
-                        .stream()
-                        .map(attributeKey ->
-                                getAttributeKvCompositeKey(entityId, attributeType, attributeKey))
-                        .collect(Collectors.toList());
-        return Futures.immediateFuture(
-                DaoUtil.convertDataList(Lists.newArrayList(attributeKvRepository.findAll(compositeKeys))));
+        Set<String> keys = new LinkedHashSet<>(attributeKeys);
+        if (keys.isEmpty()) {
+            return Futures.immediateFuture(new ArrayList<>());
+        }
+        return readExecutor.submit(() -> {
+            Map<String, AttributeKvEntry> entriesByKey = new HashMap<>();
+            attributeKvRepository.findAllByEntityTypeAndEntityIdAndAttributeTypeAndAttributeKeyIn(
+                    entityId.getEntityType(),
+                    fromTimeUUID(entityId.getId()),
+                    attributeType,
+                    keys).forEach(entity -> entriesByKey.put(entity.getAttributeKey(), entity.toData()));
+            return keys.stream().map(entriesByKey::get).filter(Objects::nonNull).collect(Collectors.toList());
+        });
     }
 
     @Override
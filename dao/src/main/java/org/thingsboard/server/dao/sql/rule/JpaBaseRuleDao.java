@@ -76,6 +76,12 @@ public class JpaBaseRuleDao extends JpaAbstractSearchTextDao<RuleMetaDataEntity,
         return null;
     }
 
+    @Override
+    public void updateAlarmStatus(RuleId ruleId, TenantId tenantId, Boolean alarmStatus) {
+        // The SQL schema does not store sensor limits and alarm status of the rules
+        log.debug("Skip alarm status update of rule [{}]", ruleId);
+    }
+
     @Override
     public List<RuleMetaData> findByTenantIdAndPageLink(TenantId tenantId, TextPageLink pageLink) {
         log.debug("Try to find rules by tenantId [{}] and pageLink [{}]", tenantId, pageLink);
@@ -19,11 +19,14 @@ import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.SettableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.UUIDConverter;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.*;
@@ -31,15 +34,20 @@ import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.sql.TsKvEntity;
 import org.thingsboard.server.dao.model.sql.TsKvLatestCompositeKey;
 import org.thingsboard.server.dao.model.sql.TsKvLatestEntity;
+import org.thingsboard.server.dao.sql.JdbcBatchWriter;
 import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
+import org.thingsboard.server.dao.sql.JpaReadExecutorService;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
 import org.thingsboard.server.dao.util.SqlDao;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import static org.thingsboard.server.common.data.UUIDConverter.fromTimeUUID;
@@ -50,12 +58,98 @@ import static org.thingsboard.server.common.data.UUIDConverter.fromTimeUUID;
 @SqlDao
 public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService implements TimeseriesDao {
 
+    private static final String TS_KV_COLUMNS = "entity_type, entity_id, key, ts, bool_v, str_v, long_v, dbl_v";
+
+    private static final String VALUES_UPDATE = "bool_v = EXCLUDED.bool_v, str_v = EXCLUDED.str_v, long_v = EXCLUDED.long_v, dbl_v = EXCLUDED.dbl_v";
+
+    private static final String TS_KV_POSTGRES_UPSERT = "INSERT INTO ts_kv (" + TS_KV_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (entity_type, entity_id, key, ts) DO UPDATE SET " + VALUES_UPDATE;
+
+    private static final String TS_KV_LATEST_POSTGRES_UPSERT = "INSERT INTO ts_kv_latest (" + TS_KV_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (entity_type, entity_id, key) DO UPDATE SET ts = EXCLUDED.ts, " + VALUES_UPDATE;
+
+    private static final String HSQL_MERGE_SOURCE = "USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(31)), CAST(? AS VARCHAR(255)), CAST(? AS BIGINT), " +
+            "CAST(? AS BOOLEAN), CAST(? AS VARCHAR(10000000)), CAST(? AS BIGINT), CAST(? AS DOUBLE))) AS v (" + TS_KV_COLUMNS + ") ";
+
+    private static final String HSQL_MERGE_INSERT = "WHEN NOT MATCHED THEN INSERT (" + TS_KV_COLUMNS + ") " +
+            "VALUES (v.entity_type, v.entity_id, v.key, v.ts, v.bool_v, v.str_v, v.long_v, v.dbl_v)";
+
+    private static final String TS_KV_HSQL_MERGE = "MERGE INTO ts_kv " + HSQL_MERGE_SOURCE +
+            "ON ts_kv.entity_type = v.entity_type AND ts_kv.entity_id = v.entity_id AND ts_kv.key = v.key AND ts_kv.ts = v.ts " +
+            "WHEN MATCHED THEN UPDATE SET ts_kv.bool_v = v.bool_v, ts_kv.str_v = v.str_v, ts_kv.long_v = v.long_v, ts_kv.dbl_v = v.dbl_v " +
+            HSQL_MERGE_INSERT;
+
+    private static final String TS_KV_LATEST_HSQL_MERGE = "MERGE INTO ts_kv_latest " + HSQL_MERGE_SOURCE +
+            "ON ts_kv_latest.entity_type = v.entity_type AND ts_kv_latest.entity_id = v.entity_id AND ts_kv_latest.key = v.key " +
+            "WHEN MATCHED THEN UPDATE SET ts_kv_latest.ts = v.ts, ts_kv_latest.bool_v = v.bool_v, ts_kv_latest.str_v = v.str_v, " +
+            "ts_kv_latest.long_v = v.long_v, ts_kv_latest.dbl_v = v.dbl_v " +
+            HSQL_MERGE_INSERT;
+
     @Autowired
     private TsKvRepository tsKvRepository;
 
     @Autowired
     private TsKvLatestRepository tsKvLatestRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JpaReadExecutorService readExecutor;
+
+    @Value("${sql.ts_kv_batch.enabled}")
+    private boolean batchEnabled;
+
+    @Value("${sql.ts_kv_batch.max_size}")
+    private int batchMaxSize;
+
+    @Value("${sql.ts_kv_batch.linger_ms}")
+    private long batchLingerMs;
+
+    @Value("${sql.ts_kv_batch.max_queue_size}")
+    private int batchMaxQueueSize;
+
+    private JdbcBatchWriter<TsKvEntity> tsKvWriter;
+    private JdbcBatchWriter<TsKvLatestEntity> tsKvLatestWriter;
+
+    @PostConstruct
+    public void init() {
+        if (!batchEnabled) {
+            return;
+        }
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) con -> con.getMetaData().getDatabaseProductName());
+        String tsKvSql;
+        String tsKvLatestSql;
+        if (database.toLowerCase().contains("postgres")) {
+            tsKvSql = TS_KV_POSTGRES_UPSERT;
+            tsKvLatestSql = TS_KV_LATEST_POSTGRES_UPSERT;
+        } else if (database.toLowerCase().contains("hsql")) {
+            tsKvSql = TS_KV_HSQL_MERGE;
+            tsKvLatestSql = TS_KV_LATEST_HSQL_MERGE;
+        } else {
+            log.warn("Batch insert of timeseries is not supported for {}, falling back to single inserts", database);
+            return;
+        }
+        tsKvWriter = new JdbcBatchWriter<>("ts-kv", jdbcTemplate, tsKvSql,
+                (ps, e) -> setValues(ps, e.getEntityType(), e.getEntityId(), e.getKey(), e.getTs(),
+                        e.getBooleanValue(), e.getStrValue(), e.getLongValue(), e.getDoubleValue()),
+                batchMaxSize, batchLingerMs, batchMaxQueueSize);
+        tsKvLatestWriter = new JdbcBatchWriter<>("ts-kv-latest", jdbcTemplate, tsKvLatestSql,
+                (ps, e) -> setValues(ps, e.getEntityType(), e.getEntityId(), e.getKey(), e.getTs(),
+                        e.getBooleanValue(), e.getStrValue(), e.getLongValue(), e.getDoubleValue()),
+                batchMaxSize, batchLingerMs, batchMaxQueueSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (tsKvWriter != null) {
+            tsKvWriter.stop();
+        }
+        if (tsKvLatestWriter != null) {
+            tsKvLatestWriter.stop();
+        }
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllAsync(EntityId entityId, List<TsKvQuery> queries) {
         List<ListenableFuture<List<TsKvEntry>>> futures = queries
@@ -80,112 +174,80 @@ public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService imp
         if (query.getAggregation() == Aggregation.NONE) {
             return findAllAsyncWithLimit(entityId, query);
         } else {
-            long stepTs = query.getStartTs();
-            List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
-            while (stepTs < query.getEndTs()) {
-                long startTs = stepTs;
-                long endTs = stepTs + query.getInterval();
-                long ts = startTs + (endTs - startTs) / 2;
-                futures.add(findAndAggregateAsync(entityId, query.getKey(), startTs, endTs, ts, query.getAggregation()));
-                stepTs = endTs;
-            }
-            ListenableFuture<List<Optional<TsKvEntry>>> future = Futures.allAsList(futures);
-            return Futures.transform(future, new Function<List<Optional<TsKvEntry>>, List<TsKvEntry>>() {
-                @Nullable
-                @Override
-                public List<TsKvEntry> apply(@Nullable List<Optional<TsKvEntry>> results) {
-                    if (results == null || results.isEmpty()) {
-                        return null;
-                    }
-                    return results.stream()
-                            .filter(Optional::isPresent)
-                            .map(Optional::get)
-                            .collect(Collectors.toList());
-                }
-            }, service);
+            return findAndAggregateAsync(entityId, query);
         }
     }
 
-    private ListenableFuture<Optional<TsKvEntry>> findAndAggregateAsync(EntityId entityId, String key, long startTs, long endTs, long ts, Aggregation aggregation) {
-        CompletableFuture<TsKvEntity> entity;
+    private ListenableFuture<List<TsKvEntry>> findAndAggregateAsync(EntityId entityId, TsKvQuery query) {
         String entityIdStr = fromTimeUUID(entityId.getId());
+        long startTs = query.getStartTs();
+        long interval = query.getInterval();
+        long endTs = startTs + ((query.getEndTs() - startTs + interval - 1) / interval) * interval;
+        return readExecutor.submit(() -> {
+            List<Object[]> rows = tsKvRepository.findAggregatesByInterval(
+                    entityIdStr,
+                    entityId.getEntityType().name(),
+                    query.getKey(),
+                    startTs,
+                    endTs,
+                    interval);
+            List<TsKvEntry> result = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                TsKvEntity entity = toAggregatedEntity(row, query.getAggregation());
+                if (entity.isNotEmpty()) {
+                    long bucketStartTs = startTs + toLong(row[0]) * interval;
+                    entity.setEntityId(entityIdStr);
+                    entity.setEntityType(entityId.getEntityType());
+                    entity.setKey(query.getKey());
+                    entity.setTs(bucketStartTs + interval / 2);
+                    result.add(DaoUtil.getData(entity));
+                }
+            }
+            return result;
+        });
+    }
+
+    private static TsKvEntity toAggregatedEntity(Object[] row, Aggregation aggregation) {
+        long longCount = toLong(row[3]);
+        long doubleCount = toLong(row[4]);
         switch (aggregation) {
             case AVG:
-                entity = tsKvRepository.findAvg(
-                        entityIdStr,
-                        entityId.getEntityType(),
-                        key,
-                        startTs,
-                        endTs);
-
-                break;
-            case MAX:
-                entity = tsKvRepository.findMax(
-                        entityIdStr,
-                        entityId.getEntityType(),
-                        key,
-                        startTs,
-                        endTs);
-
-                break;
-            case MIN:
-                entity = tsKvRepository.findMin(
-                        entityIdStr,
-                        entityId.getEntityType(),
-                        key,
-                        startTs,
-                        endTs);
-
-                break;
+                return new TsKvEntity(
+                        longCount > 0 ? (Double) (toDouble(row[5]) / longCount) : null,
+                        doubleCount > 0 ? (Double) (toDouble(row[6]) / doubleCount) : null);
             case SUM:
-                entity = tsKvRepository.findSum(
-                        entityIdStr,
-                        entityId.getEntityType(),
-                        key,
-                        startTs,
-                        endTs);
-
-                break;
+                return new TsKvEntity(
+                        row[5] != null ? (Long) toLong(row[5]) : null,
+                        row[6] != null ? (Double) toDouble(row[6]) : null);
+            case MIN:
+                return new TsKvEntity((String) row[7], toNullableLong(row[8]), toNullableDouble(row[9]));
+            case MAX:
+                return new TsKvEntity((String) row[10], toNullableLong(row[11]), toNullableDouble(row[12]));
             case COUNT:
-                entity = tsKvRepository.findCount(
-                        entityIdStr,
-                        entityId.getEntityType(),
-                        key,
-                        startTs,
-                        endTs);
-
-                break;
+                return new TsKvEntity(toLong(row[1]), toLong(row[2]), longCount, doubleCount);
             default:
                 throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
         }
+    }
 
-        SettableFuture<TsKvEntity> listenableFuture = SettableFuture.create();
-        entity.whenComplete((tsKvEntity, throwable) -> {
-            if (throwable != null) {
-                listenableFuture.setException(throwable);
-            } else {
-                listenableFuture.set(tsKvEntity);
-            }
-        });
-        return Futures.transform(listenableFuture, new Function<TsKvEntity, Optional<TsKvEntry>>() {
-            @Nullable
-            @Override
-            public Optional<TsKvEntry> apply(@Nullable TsKvEntity entity) {
-                if (entity != null && entity.isNotEmpty()) {
-                    entity.setEntityId(entityIdStr);
-                    entity.setEntityType(entityId.getEntityType());
-                    entity.setKey(key);
-                    entity.setTs(ts);
-                    return Optional.of(DaoUtil.getData(entity));
-                } else {
-                    return Optional.empty();
-                }
-            }
-        });
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    private static Long toNullableLong(Object value) {
+        return value != null ? ((Number) value).longValue() : null;
+    }
+
+    private static Double toNullableDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : null;
     }
 
     private ListenableFuture<List<TsKvEntry>> findAllAsyncWithLimit(EntityId entityId, TsKvQuery query) {
-        return Futures.immediateFuture(
+        return readExecutor.submit(() ->
                 DaoUtil.convertDataList(
                         tsKvRepository.findAllWithLimit(
                                 fromTimeUUID(entityId.getId()),
@@ -203,19 +265,19 @@ public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService imp
                         entityId.getEntityType(),
                         fromTimeUUID(entityId.getId()),
                         key);
-        TsKvLatestEntity entry = tsKvLatestRepository.findOne(compositeKey);
-        TsKvEntry result;
-        if (entry != null) {
-            result = DaoUtil.getData(entry);
-        } else {
-            result = new BasicTsKvEntry(System.currentTimeMillis(), new StringDataEntry(key, null));
-        }
-        return Futures.immediateFuture(result);
+        return readExecutor.submit(() -> {
+            TsKvLatestEntity entry = tsKvLatestRepository.findOne(compositeKey);
+            if (entry != null) {
+                return DaoUtil.getData(entry);
+            } else {
+                return new BasicTsKvEntry(System.currentTimeMillis(), new StringDataEntry(key, null));
+            }
+        });
     }
 
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(EntityId entityId) {
-        return Futures.immediateFuture(
+        return readExecutor.submit(() ->
                 DaoUtil.convertDataList(Lists.newArrayList(
                         tsKvLatestRepository.findAllByEntityTypeAndEntityId(
                                 entityId.getEntityType(),
@@ -233,6 +295,9 @@ public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService imp
         entity.setDoubleValue(tsKvEntry.getDoubleValue().orElse(null));
         entity.setLongValue(tsKvEntry.getLongValue().orElse(null));
         entity.setBooleanValue(tsKvEntry.getBooleanValue().orElse(null));
+        if (tsKvWriter != null) {
+            return tsKvWriter.add(entity);
+        }
         return service.submit(() -> {
             tsKvRepository.save(entity);
             return null;
@@ -255,10 +320,25 @@ public class JpaTimeseriesDao extends JpaAbstractDaoListeningExecutorService imp
         latestEntity.setDoubleValue(tsKvEntry.getDoubleValue().orElse(null));
         latestEntity.setLongValue(tsKvEntry.getLongValue().orElse(null));
         latestEntity.setBooleanValue(tsKvEntry.getBooleanValue().orElse(null));
+        if (tsKvLatestWriter != null) {
+            return tsKvLatestWriter.add(latestEntity);
+        }
         return service.submit(() -> {
             tsKvLatestRepository.save(latestEntity);
             return null;
         });
     }
 
+    private static void setValues(PreparedStatement ps, EntityType entityType, String entityId, String key, long ts,
+                                  Boolean booleanValue, String strValue, Long longValue, Double doubleValue) throws SQLException {
+        ps.setString(1, entityType.name());
+        ps.setString(2, entityId);
+        ps.setString(3, key);
+        ps.setLong(4, ts);
+        ps.setObject(5, booleanValue, Types.BOOLEAN);
+        ps.setObject(6, strValue, Types.VARCHAR);
+        ps.setObject(7, longValue, Types.BIGINT);
+        ps.setObject(8, doubleValue, Types.DOUBLE);
+    }
+
 }
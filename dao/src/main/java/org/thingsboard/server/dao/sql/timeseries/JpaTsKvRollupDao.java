@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.timeseries;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.dao.DaoUtil;
+import org.thingsboard.server.dao.model.sql.TsKvRollupEntity;
+import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
+import org.thingsboard.server.dao.sql.JpaReadExecutorService;
+import org.thingsboard.server.dao.timeseries.TsKvRollup;
+import org.thingsboard.server.dao.timeseries.TsKvRollupDao;
+import org.thingsboard.server.dao.timeseries.TsKvRollupGranularity;
+import org.thingsboard.server.dao.util.SqlDao;
+
+import java.util.List;
+
+import static org.thingsboard.server.common.data.UUIDConverter.fromTimeUUID;
+
+@Component
+@Slf4j
+@SqlDao
+public class JpaTsKvRollupDao extends JpaAbstractDaoListeningExecutorService implements TsKvRollupDao {
+
+    @Autowired
+    private TsKvRollupRepository tsKvRollupRepository;
+
+    @Autowired
+    private JpaReadExecutorService readExecutor;
+
+    @Override
+    public ListenableFuture<List<TsKvRollup>> findAllAsync(EntityId entityId, String key, TsKvRollupGranularity granularity, long startTs, long endTs) {
+        return readExecutor.submit(() -> DaoUtil.convertDataList(
+                tsKvRollupRepository.findAllInRange(
+                        fromTimeUUID(entityId.getId()),
+                        entityId.getEntityType(),
+                        key,
+                        granularity,
+                        startTs,
+                        endTs)));
+    }
+
+    @Override
+    public ListenableFuture<Void> save(EntityId entityId, String key, TsKvRollupGranularity granularity, TsKvRollup rollup, long ttl) {
+        TsKvRollupEntity entity = toEntity(entityId, key, granularity, rollup);
+        return service.submit(() -> {
+            tsKvRollupRepository.save(entity);
+            return null;
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> markChanged(EntityId entityId, String key, TsKvRollupGranularity granularity, long ts, long changedTs, long ttl) {
+        String strEntityId = fromTimeUUID(entityId.getId());
+        return service.submit(() -> {
+            if (tsKvRollupRepository.markChanged(strEntityId, entityId.getEntityType(), key, granularity, ts, changedTs, ttl) == 0) {
+                TsKvRollup rollup = new TsKvRollup(ts);
+                rollup.setChangedTs(changedTs);
+                rollup.setChangedTtl(ttl);
+                try {
+                    tsKvRollupRepository.save(toEntity(entityId, key, granularity, rollup));
+                } catch (DataIntegrityViolationException e) {
+                    log.debug("[{}][{}] Rollup {} was created concurrently, marking it as changed", entityId, key, ts);
+                    tsKvRollupRepository.markChanged(strEntityId, entityId.getEntityType(), key, granularity, ts, changedTs, ttl);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static TsKvRollupEntity toEntity(EntityId entityId, String key, TsKvRollupGranularity granularity, TsKvRollup rollup) {
+        TsKvRollupEntity entity = new TsKvRollupEntity(rollup);
+        entity.setEntityType(entityId.getEntityType());
+        entity.setEntityId(fromTimeUUID(entityId.getId()));
+        entity.setKey(key);
+        entity.setGranularity(granularity);
+        return entity;
+    }
+}
@@ -19,14 +19,12 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
-import org.springframework.scheduling.annotation.Async;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.dao.model.sql.TsKvCompositeKey;
 import org.thingsboard.server.dao.model.sql.TsKvEntity;
 import org.thingsboard.server.dao.util.SqlDao;
 
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 
 @SqlDao
 public interface TsKvRepository extends CrudRepository<TsKvEntity, TsKvCompositeKey> {
@@ -41,54 +39,26 @@ public interface TsKvRepository extends CrudRepository<TsKvEntity, TsKvComposite
                                       @Param("endTs") long endTs,
                                       Pageable pageable);
 
-    @Async
-    @Query("SELECT new TsKvEntity(MAX(tskv.strValue), MAX(tskv.longValue), MAX(tskv.doubleValue)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.entityType = :entityType " +
-            "AND tskv.key = :entityKey AND tskv.ts > :startTs AND tskv.ts < :endTs")
-    CompletableFuture<TsKvEntity> findMax(@Param("entityId") String entityId,
-                                          @Param("entityType") EntityType entityType,
-                                          @Param("entityKey") String entityKey,
-                                          @Param("startTs") long startTs,
-                                          @Param("endTs") long endTs);
-
-    @Async
-    @Query("SELECT new TsKvEntity(MIN(tskv.strValue), MIN(tskv.longValue), MIN(tskv.doubleValue)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.entityType = :entityType " +
-            "AND tskv.key = :entityKey AND tskv.ts > :startTs AND tskv.ts < :endTs")
-    CompletableFuture<TsKvEntity> findMin(@Param("entityId") String entityId,
-                       @Param("entityType") EntityType entityType,
-                       @Param("entityKey") String entityKey,
-                       @Param("startTs") long startTs,
-                       @Param("endTs") long endTs);
-
-    @Async
-    @Query("SELECT new TsKvEntity(COUNT(tskv.booleanValue), COUNT(tskv.strValue), COUNT(tskv.longValue), COUNT(tskv.doubleValue)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.entityType = :entityType " +
-            "AND tskv.key = :entityKey AND tskv.ts > :startTs AND tskv.ts < :endTs")
-    CompletableFuture<TsKvEntity> findCount(@Param("entityId") String entityId,
-                                 @Param("entityType") EntityType entityType,
-                                 @Param("entityKey") String entityKey,
-                                 @Param("startTs") long startTs,
-                                 @Param("endTs") long endTs);
-
-    @Async
-    @Query("SELECT new TsKvEntity(AVG(tskv.longValue), AVG(tskv.doubleValue)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.entityType = :entityType " +
-            "AND tskv.key = :entityKey AND tskv.ts > :startTs AND tskv.ts < :endTs")
-    CompletableFuture<TsKvEntity> findAvg(@Param("entityId") String entityId,
-                       @Param("entityType") EntityType entityType,
-                       @Param("entityKey") String entityKey,
-                       @Param("startTs") long startTs,
-                       @Param("endTs") long endTs);
-
-
-    @Async
-    @Query("SELECT new TsKvEntity(SUM(tskv.longValue), SUM(tskv.doubleValue)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.entityType = :entityType " +
-            "AND tskv.key = :entityKey AND tskv.ts > :startTs AND tskv.ts < :endTs")
-    CompletableFuture<TsKvEntity> findSum(@Param("entityId") String entityId,
-                       @Param("entityType") EntityType entityType,
-                       @Param("entityKey") String entityKey,
-                       @Param("startTs") long startTs,
-                       @Param("endTs") long endTs);
+    /**
+     * Aggregates all intervals of a query at once. Each row contains the interval index followed by
+     * counts of boolean, string, long and double values, sums of long and double values,
+     * minimums and maximums of string, long and double values.
+     * Values at interval bounds are excluded, the same way as by per-interval queries.
+     */
+    @Query(value = "SELECT b.bucket, " +
+            "COUNT(b.bool_v), COUNT(b.str_v), COUNT(b.long_v), COUNT(b.dbl_v), " +
+            "SUM(b.long_v), SUM(b.dbl_v), " +
+            "MIN(b.str_v), MIN(b.long_v), MIN(b.dbl_v), " +
+            "MAX(b.str_v), MAX(b.long_v), MAX(b.dbl_v) " +
+            "FROM (SELECT (tskv.ts - :startTs) / :interval AS bucket, tskv.bool_v, tskv.str_v, tskv.long_v, tskv.dbl_v " +
+            "FROM ts_kv tskv WHERE tskv.entity_id = :entityId AND tskv.entity_type = :entityType " +
+            "AND tskv.key = :entityKey AND tskv.ts > :startTs AND tskv.ts < :endTs " +
+            "AND MOD(tskv.ts - :startTs, :interval) <> 0) b " +
+            "GROUP BY b.bucket ORDER BY b.bucket", nativeQuery = true)
+    List<Object[]> findAggregatesByInterval(@Param("entityId") String entityId,
+                                            @Param("entityType") String entityType,
+                                            @Param("entityKey") String entityKey,
+                                            @Param("startTs") long startTs,
+                                            @Param("endTs") long endTs,
+                                            @Param("interval") long interval);
 }
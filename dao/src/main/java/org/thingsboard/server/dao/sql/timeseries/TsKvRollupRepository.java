@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.timeseries;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.dao.model.sql.TsKvRollupCompositeKey;
+import org.thingsboard.server.dao.model.sql.TsKvRollupEntity;
+import org.thingsboard.server.dao.timeseries.TsKvRollupGranularity;
+import org.thingsboard.server.dao.util.SqlDao;
+
+import java.util.List;
+
+@SqlDao
+public interface TsKvRollupRepository extends CrudRepository<TsKvRollupEntity, TsKvRollupCompositeKey> {
+
+    @Query("SELECT r FROM TsKvRollupEntity r WHERE r.entityId = :entityId " +
+            "AND r.entityType = :entityType AND r.key = :entityKey AND r.granularity = :granularity " +
+            "AND r.ts >= :startTs AND r.ts < :endTs ORDER BY r.ts ASC")
+    List<TsKvRollupEntity> findAllInRange(@Param("entityId") String entityId,
+                                          @Param("entityType") EntityType entityType,
+                                          @Param("entityKey") String key,
+                                          @Param("granularity") TsKvRollupGranularity granularity,
+                                          @Param("startTs") long startTs,
+                                          @Param("endTs") long endTs);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE TsKvRollupEntity r SET r.changedTs = :changedTs, r.changedTtl = :changedTtl " +
+            "WHERE r.entityId = :entityId AND r.entityType = :entityType AND r.key = :entityKey " +
+            "AND r.granularity = :granularity AND r.ts = :ts")
+    int markChanged(@Param("entityId") String entityId,
+                    @Param("entityType") EntityType entityType,
+                    @Param("entityKey") String key,
+                    @Param("granularity") TsKvRollupGranularity granularity,
+                    @Param("ts") long ts,
+                    @Param("changedTs") Long changedTs,
+                    @Param("changedTtl") Long changedTtl);
+}
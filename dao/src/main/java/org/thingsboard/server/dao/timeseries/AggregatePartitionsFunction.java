@@ -57,109 +57,30 @@ public class AggregatePartitionsFunction implements com.google.common.base.Funct
             if (rsList == null || rsList.size() == 0) {
                 return Optional.empty();
             }
-            long count = 0;
-            DataType dataType = null;
-
-            Boolean bValue = null;
-            String sValue = null;
-            Double dValue = null;
-            Long lValue = null;
-
+            TsKvAggregationState state = new TsKvAggregationState(aggregation);
             for (ResultSet rs : rsList) {
                 for (Row row : rs.all()) {
-                    long curCount;
-
-                    Long curLValue = null;
-                    Double curDValue = null;
-                    Boolean curBValue = null;
-                    String curSValue = null;
-
                     long longCount = row.getLong(LONG_CNT_POS);
                     long doubleCount = row.getLong(DOUBLE_CNT_POS);
                     long boolCount = row.getLong(BOOL_CNT_POS);
                     long strCount = row.getLong(STR_CNT_POS);
 
                     if (longCount > 0) {
-                        dataType = DataType.LONG;
-                        curCount = longCount;
-                        curLValue = getLongValue(row);
+                        state.update(DataType.LONG, longCount, getLongValue(row), null, null, null);
                     } else if (doubleCount > 0) {
-                        dataType = DataType.DOUBLE;
-                        curCount = doubleCount;
-                        curDValue = getDoubleValue(row);
+                        state.update(DataType.DOUBLE, doubleCount, null, getDoubleValue(row), null, null);
                     } else if (boolCount > 0) {
-                        dataType = DataType.BOOLEAN;
-                        curCount = boolCount;
-                        curBValue = getBooleanValue(row);
+                        state.update(DataType.BOOLEAN, boolCount, null, null, getBooleanValue(row), null);
                     } else if (strCount > 0) {
-                        dataType = DataType.STRING;
-                        curCount = strCount;
-                        curSValue = getStringValue(row);
-                    } else {
-                        continue;
-                    }
-
-                    if (aggregation == Aggregation.COUNT) {
-                        count += curCount;
-                    } else if (aggregation == Aggregation.AVG || aggregation == Aggregation.SUM) {
-                        count += curCount;
-                        if (curDValue != null) {
-                            dValue = dValue == null ? curDValue : dValue + curDValue;
-                        } else if (curLValue != null) {
-                            lValue = lValue == null ? curLValue : lValue + curLValue;
-                        }
-                    } else if (aggregation == Aggregation.MIN) {
-                        if (curDValue != null) {
-                            dValue = dValue == null ? curDValue : Math.min(dValue, curDValue);
-                        } else if (curLValue != null) {
-                            lValue = lValue == null ? curLValue : Math.min(lValue, curLValue);
-                        } else if (curBValue != null) {
-                            bValue = bValue == null ? curBValue : bValue && curBValue;
-                        } else if (curSValue != null) {
-                            if (sValue == null || curSValue.compareTo(sValue) < 0) {
-                                sValue = curSValue;
-                            }
-                        }
-                    } else if (aggregation == Aggregation.MAX) {
-                        if (curDValue != null) {
-                            dValue = dValue == null ? curDValue : Math.max(dValue, curDValue);
-                        } else if (curLValue != null) {
-                            lValue = lValue == null ? curLValue : Math.max(lValue, curLValue);
-                        } else if (curBValue != null) {
-                            bValue = bValue == null ? curBValue : bValue || curBValue;
-                        } else if (curSValue != null) {
-                            if (sValue == null || curSValue.compareTo(sValue) > 0) {
-                                sValue = curSValue;
-                            }
-                        }
+                        state.update(DataType.STRING, strCount, null, null, null, getStringValue(row));
                     }
                 }
             }
-            if (dataType == null) {
-                return Optional.empty();
-            } else if (aggregation == Aggregation.COUNT) {
-                return Optional.of(new BasicTsKvEntry(ts, new LongDataEntry(key, (long) count)));
-            } else if (aggregation == Aggregation.AVG || aggregation == Aggregation.SUM) {
-                if (count == 0 || (dataType == DataType.DOUBLE && dValue == null) || (dataType == DataType.LONG && lValue == null)) {
-                    return Optional.empty();
-                } else if (dataType == DataType.DOUBLE) {
-                    return Optional.of(new BasicTsKvEntry(ts, new DoubleDataEntry(key, aggregation == Aggregation.SUM ? dValue : (dValue / count))));
-                } else if (dataType == DataType.LONG) {
-                    return Optional.of(new BasicTsKvEntry(ts, new LongDataEntry(key, aggregation == Aggregation.SUM ? lValue : (lValue / count))));
-                }
-            } else if (aggregation == Aggregation.MIN || aggregation == Aggregation.MAX) {
-                if (dataType == DataType.DOUBLE) {
-                    return Optional.of(new BasicTsKvEntry(ts, new DoubleDataEntry(key, dValue)));
-                } else if (dataType == DataType.LONG) {
-                    return Optional.of(new BasicTsKvEntry(ts, new LongDataEntry(key, lValue)));
-                } else if (dataType == DataType.STRING) {
-                    return Optional.of(new BasicTsKvEntry(ts, new StringDataEntry(key, sValue)));
-                } else {
-                    return Optional.of(new BasicTsKvEntry(ts, new BooleanDataEntry(key, bValue)));
-                }
+            Optional<TsKvEntry> result = state.toTsKvEntry(key, ts);
+            if (!result.isPresent()) {
+                log.trace("[{}][{}][{}] Aggregated data is empty.", key, ts, aggregation);
             }
-            log.trace("[{}][{}][{}] Aggregated data is empty.", key, ts, aggregation);
-            return Optional.empty();
+            return result;
         }catch (Exception e){
             log.error("[{}][{}][{}] Failed to aggregate data", key, ts, aggregation, e);
             return Optional.empty();
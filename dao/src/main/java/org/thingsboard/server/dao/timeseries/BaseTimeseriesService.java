@@ -15,7 +15,9 @@
  */
 package org.thingsboard.server.dao.timeseries;
 
+import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
@@ -24,20 +26,13 @@ import org.springframework.stereotype.Service;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.common.data.kv.TsKvQuery;
-import org.thingsboard.server.common.data.rule.RuleMetaData;
 import org.thingsboard.server.dao.exception.IncorrectParameterException;
-import org.thingsboard.server.dao.rule.RuleService;
+import org.thingsboard.server.dao.rule.SensorThresholdService;
+import org.thingsboard.server.dao.sensor.SensorSnapshotService;
 import org.thingsboard.server.dao.service.Validator;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.thingsboard.server.common.data.id.DeviceId;
-import org.thingsboard.server.dao.device.DeviceService;
-import org.thingsboard.server.common.data.*;
 
 import java.util.*;
 
-import java.io.IOException;
-
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 /**
@@ -53,16 +48,37 @@ public class BaseTimeseriesService implements TimeseriesService {
     private TimeseriesDao timeseriesDao;
 
     @Autowired
-    private DeviceService deviceService;
+    private SensorSnapshotService sensorSnapshotService;
+
+    @Autowired
+    private TsKvRollupService rollupService;
+
+    @Autowired
+    private LatestTsKvCache latestCache;
 
     @Autowired
-    private RuleService ruleService;
+    private SensorThresholdService sensorThresholdService;
 
     @Override
     public ListenableFuture<List<TsKvEntry>> findAll(EntityId entityId, List<TsKvQuery> queries) {
         validate(entityId);
         queries.forEach(query -> validate(query));
-        return timeseriesDao.findAllAsync(entityId, queries);
+        if (queries.stream().noneMatch(rollupService::isApplicable)) {
+            return timeseriesDao.findAllAsync(entityId, queries);
+        }
+        List<ListenableFuture<List<TsKvEntry>>> futures = new ArrayList<>(queries.size());
+        for (TsKvQuery query : queries) {
+            if (rollupService.isApplicable(query)) {
+                futures.add(rollupService.findAllAsync(entityId, query));
+            } else {
+                futures.add(timeseriesDao.findAllAsync(entityId, Collections.singletonList(query)));
+            }
+        }
+        return Futures.transform(Futures.allAsList(futures), (Function<List<List<TsKvEntry>>, List<TsKvEntry>>) results -> {
+            List<TsKvEntry> entries = new ArrayList<>();
+            results.stream().filter(Objects::nonNull).forEach(entries::addAll);
+            return entries;
+        });
     }
 
     @Override
@@ -70,14 +86,37 @@ public class BaseTimeseriesService implements TimeseriesService {
         validate(entityId);
         List<ListenableFuture<TsKvEntry>> futures = Lists.newArrayListWithExpectedSize(keys.size());
         keys.forEach(key -> Validator.validateString(key, "Incorrect key " + key));
-        keys.forEach(key -> futures.add(timeseriesDao.findLatest(entityId, key)));
+        if (!latestCache.isCacheable(entityId)) {
+            keys.forEach(key -> futures.add(timeseriesDao.findLatest(entityId, key)));
+            return Futures.allAsList(futures);
+        }
+        for (String key : keys) {
+            TsKvEntry cached = latestCache.get(entityId, key);
+            if (cached != null) {
+                futures.add(Futures.immediateFuture(cached));
+            } else {
+                futures.add(Futures.transform(timeseriesDao.findLatest(entityId, key), (Function<TsKvEntry, TsKvEntry>) entry -> {
+                    latestCache.putIfAbsent(entityId, entry);
+                    return entry;
+                }));
+            }
+        }
         return Futures.allAsList(futures);
     }
 
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(EntityId entityId) {
         validate(entityId);
-        return timeseriesDao.findAllLatest(entityId);
+        ListenableFuture<List<TsKvEntry>> future = timeseriesDao.findAllLatest(entityId);
+        if (!latestCache.isCacheable(entityId)) {
+            return future;
+        }
+        return Futures.transform(future, (Function<List<TsKvEntry>, List<TsKvEntry>>) entries -> {
+            if (entries != null) {
+                entries.forEach(entry -> latestCache.putIfAbsent(entityId, entry));
+            }
+            return entries;
+        });
     }
 
     @Override
@@ -88,71 +127,49 @@ public class BaseTimeseriesService implements TimeseriesService {
         }
         List<ListenableFuture<Void>> futures = Lists.newArrayListWithExpectedSize(INSERTS_PER_ENTRY);
         saveAndRegisterFutures(futures, entityId, tsKvEntry, 0L);
-        return Futures.allAsList(futures);
+        futures.add(rollupService.update(entityId, Collections.singletonList(tsKvEntry), 0L));
+        return evaluateOnSuccess(entityId, Collections.singletonList(tsKvEntry), Futures.allAsList(futures));
     }
 
     @Override
     public ListenableFuture<List<Void>> save(EntityId entityId, List<TsKvEntry> tsKvEntries, long ttl) {
         List<ListenableFuture<Void>> futures = Lists.newArrayListWithExpectedSize(tsKvEntries.size() * INSERTS_PER_ENTRY);
-        Map<String,Object> sensors = new HashMap<String,Object>();
         for (TsKvEntry tsKvEntry : tsKvEntries) {
-            /*Optional<RuleMetaData> rule = ruleService.findRuleBySensorId(UUID.fromString("38400000-8cf0-11bd-b23e-10b96e4ef00d"));//这个UUID作为测试 实际应从tskventry获取
-            if (rule.isPresent() && tsKvEntry.getKey().equals("temperature")) {
-                Double lower_limit=rule.get().getLower_limit();
-                Double upper_limit=rule.get().getUpper_limit();
-                if((tsKvEntry.getDoubleValue().isPresent())){
-                    //String ttt = tsKvEntry.getValue().toString();
-                    if(lower_limit>tsKvEntry.getDoubleValue().get()||tsKvEntry.getDoubleValue().get()>upper_limit){//异常，需要报警
-                        rule.get().setAlarm_status(true);
-                    }
-                    else{
-                        rule.get().setAlarm_status(false);
-                    }
-                    ruleService.saveRule(rule.get());
-                }
-
-            }*/
             if (tsKvEntry == null) {
                 throw new IncorrectParameterException("Key value entry can't be null");
             }
             saveAndRegisterFutures(futures, entityId, tsKvEntry, ttl);
+        }
+        sensorSnapshotService.update(entityId, tsKvEntries);
+        futures.add(rollupService.update(entityId, tsKvEntries, ttl));
+        return evaluateOnSuccess(entityId, tsKvEntries, Futures.allAsList(futures));
+    }
 
-            Map<String,Object> sensor = new HashMap<String,Object>();
-            sensor.put("sensor_name",tsKvEntry.getKey());
-            if (tsKvEntry.getBooleanValue().isPresent()) {
-                sensor.put("sensor_type","BOOLEAN");
-                sensor.put("sensor_value",tsKvEntry.getBooleanValue().get());
-            }else if(tsKvEntry.getStrValue().isPresent()){
-                sensor.put("sensor_type","STRING");
-                sensor.put("sensor_value",tsKvEntry.getStrValue().get());
-            }else if(tsKvEntry.getLongValue().isPresent()){
-                sensor.put("sensor_type","NUMERICAL");
-                sensor.put("sensor_value",tsKvEntry.getLongValue().get());
-            }else if(tsKvEntry.getDoubleValue().isPresent()){
-                sensor.put("sensor_type","NUMERICAL");
-                sensor.put("sensor_value",tsKvEntry.getDoubleValue().get());
+    private ListenableFuture<List<Void>> evaluateOnSuccess(EntityId entityId, List<TsKvEntry> tsKvEntries, ListenableFuture<List<Void>> saveFuture) {
+        Futures.addCallback(saveFuture, new FutureCallback<List<Void>>() {
+            @Override
+            public void onSuccess(List<Void> result) {
+                sensorThresholdService.evaluate(entityId, tsKvEntries);
             }
-            sensors.put(tsKvEntry.getKey(),sensor);
-        }
-        DeviceId deviceId = new DeviceId(entityId.getId());
-        Device device = deviceService.findDeviceById(deviceId);
-       // String json = "{\"sensor_name\":\"temperature\",\"sensor_ID\":\"temp_1\",\"type\":\"On_Off\",\"decimal\":\"0.2\",\"unit\":\"C\",\"location\":{\"longitude\":100,\"latitude\":100,\"height\":15},\"value\":\"15\"}";
-        ObjectMapper objectMapper = new ObjectMapper();
-        JsonNode node = objectMapper.valueToTree(sensors);
-        device.setSensor(node);
-        deviceService.saveDevice(device);
-
-        /*for (RuleMetaData rule : rules){
-            Double lower_limit=rule.getLower_limit();
-            Double upper_limit=rule.getUpper_limit();
-        }*/
 
-        return Futures.allAsList(futures);
+            @Override
+            public void onFailure(Throwable t) {
+                log.debug("[{}] Skipping sensor threshold evaluation of unsaved telemetry", entityId);
+            }
+        });
+        return saveFuture;
     }
 
     private void saveAndRegisterFutures(List<ListenableFuture<Void>> futures, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
         futures.add(timeseriesDao.savePartition(entityId, tsKvEntry.getTs(), tsKvEntry.getKey(), ttl));
-        futures.add(timeseriesDao.saveLatest(entityId, tsKvEntry));
+        ListenableFuture<Void> latestFuture = timeseriesDao.saveLatest(entityId, tsKvEntry);
+        if (latestCache.isCacheable(entityId)) {
+            latestFuture = Futures.transform(latestFuture, (Function<Void, Void>) v -> {
+                latestCache.put(entityId, tsKvEntry);
+                return v;
+            });
+        }
+        futures.add(latestFuture);
         futures.add(timeseriesDao.save(entityId, tsKvEntry, ttl));
     }
 
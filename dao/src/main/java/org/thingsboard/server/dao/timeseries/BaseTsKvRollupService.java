@@ -0,0 +1,460 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseTsKvQuery;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.data.kv.TsKvQuery;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains count, sum, min and max of timeseries values per key at the configured granularities.
+ * <p>
+ * A saved value marks its rollup intervals as changed, both in memory and in the persisted rollup, and the save
+ * completes only once the persisted mark is written. Once an interval is closed and has not changed for
+ * <code>rebuild_delay_ms</code>, it is rebuilt: the finest granularity from the raw values, read page by page,
+ * and coarser granularities from the rollups of the next finer one. A rebuild overwrites the aggregates, so rewrites
+ * of the same timestamp, concurrent flushes on several nodes and retries are idempotent.
+ * Rollups are saved with the longest ttl of the values that changed them.
+ * <p>
+ * Aggregated queries whose intervals are aligned with a granularity are answered from rollups only for intervals
+ * that are old enough to be rebuilt and whose rollups were rebuilt after their last change. Other intervals are
+ * aggregated from raw values. Marks lost with a stopped node are therefore never served as stale rollups, and a query
+ * that hits such a rollup schedules its rebuild.
+ */
+@Service
+@Slf4j
+public class BaseTsKvRollupService implements TsKvRollupService {
+
+    @Value("${timeseries_rollup.enabled}")
+    private boolean enabled;
+
+    @Value("${timeseries_rollup.granularities}")
+    private String granularitiesStr;
+
+    @Value("${timeseries_rollup.available_from_ts}")
+    private long availableFromTs;
+
+    @Value("${timeseries_rollup.flush_interval_ms}")
+    private long flushIntervalMs;
+
+    @Value("${timeseries_rollup.rebuild_delay_ms}")
+    private long rebuildDelayMs;
+
+    @Value("${timeseries_rollup.max_batch_size}")
+    private int maxBatchSize;
+
+    @Value("${timeseries_rollup.raw_page_size}")
+    private int rawPageSize;
+
+    @Autowired
+    private TsKvRollupDao rollupDao;
+
+    @Autowired
+    private TimeseriesDao timeseriesDao;
+
+    /**
+     * Changed rollup intervals per series.
+     */
+    private final ConcurrentMap<RollupSeriesKey, NavigableMap<Long, PendingRollup>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Granularities ordered from the finest to the coarsest.
+     */
+    private List<TsKvRollupGranularity> granularities;
+
+    private ScheduledExecutorService scheduler;
+
+    private ListenableFuture<Void> currentFlush = Futures.immediateFuture(null);
+
+    @PostConstruct
+    public void init() {
+        granularities = new ArrayList<>();
+        rawPageSize = Math.max(2, rawPageSize);
+        if (enabled) {
+            for (String granularity : granularitiesStr.split(",")) {
+                if (!granularity.trim().isEmpty()) {
+                    granularities.add(TsKvRollupGranularity.valueOf(granularity.trim().toUpperCase()));
+                }
+            }
+            granularities.sort(Comparator.comparingLong(TsKvRollupGranularity::getWidth));
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("ts-kv-rollup-flush").setDaemon(true).build());
+            scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        try {
+            flush().get(flushIntervalMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("Failed to rebuild changed rollups on stop, they are rebuilt when queried", e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Void> update(EntityId entityId, List<TsKvEntry> tsKvEntries, long ttl) {
+        if (granularities.isEmpty()) {
+            return Futures.immediateFuture(null);
+        }
+        long now = System.currentTimeMillis();
+        List<ListenableFuture<Void>> marks = new ArrayList<>();
+        for (TsKvEntry tsKvEntry : tsKvEntries) {
+            for (TsKvRollupGranularity granularity : granularities) {
+                marks.add(markChanged(new RollupSeriesKey(entityId, tsKvEntry.getKey(), granularity),
+                        granularity.toRollupTs(tsKvEntry.getTs()), ttl, now));
+            }
+        }
+        return Futures.transform(Futures.allAsList(marks), (Function<List<Void>, Void>) v -> null);
+    }
+
+    /**
+     * Marks the interval as changed in memory. The mark is persisted when the interval is marked for the first time
+     * since its last rebuild, when its ttl grows or when persisting the previous mark failed.
+     *
+     * @return the future of the persisted mark
+     */
+    private ListenableFuture<Void> markChanged(RollupSeriesKey seriesKey, long rollupTs, long ttl, long now) {
+        List<ListenableFuture<Void>> persisted = new ArrayList<>(1);
+        List<PendingRollup> toPersist = new ArrayList<>(1);
+        pending.compute(seriesKey, (key, rollups) -> {
+            if (rollups == null) {
+                rollups = new TreeMap<>();
+            }
+            PendingRollup rollup = rollups.get(rollupTs);
+            if (rollup == null) {
+                rollup = new PendingRollup(ttl);
+                rollups.put(rollupTs, rollup);
+            } else {
+                long mergedTtl = mergeTtl(rollup.getTtl(), ttl);
+                if (mergedTtl != rollup.getTtl()) {
+                    rollup.setTtl(mergedTtl);
+                    rollup.setPersisted(null);
+                }
+            }
+            rollup.setLastChangedTs(now);
+            if (rollup.getPersisted() == null) {
+                rollup.setPersisted(SettableFuture.create());
+                toPersist.add(rollup);
+            }
+            persisted.add(rollup.getPersisted());
+            return rollups;
+        });
+        if (!toPersist.isEmpty()) {
+            // Issued outside of compute, a failure callback running in place updates the pending map again
+            persistMark(seriesKey, rollupTs, toPersist.get(0).getTtl(), now, (SettableFuture<Void>) persisted.get(0));
+        }
+        return persisted.get(0);
+    }
+
+    private void persistMark(RollupSeriesKey seriesKey, long rollupTs, long ttl, long now, SettableFuture<Void> result) {
+        ListenableFuture<Void> future = rollupDao.markChanged(seriesKey.getEntityId(), seriesKey.getKey(), seriesKey.getGranularity(),
+                rollupTs, now, ttl);
+        Futures.addCallback(future, new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void v) {
+                result.set(null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                pending.computeIfPresent(seriesKey, (key, rollups) -> {
+                    PendingRollup rollup = rollups.get(rollupTs);
+                    if (rollup != null && rollup.getPersisted() == result) {
+                        rollup.setPersisted(null);
+                    }
+                    return rollups;
+                });
+                result.setException(t);
+            }
+        });
+    }
+
+    /**
+     * Schedules the rebuild of an interval whose persisted rollup is not up to date, without persisting a new mark.
+     */
+    private void requestRebuild(RollupSeriesKey seriesKey, long rollupTs, long ttl) {
+        pending.compute(seriesKey, (key, rollups) -> {
+            if (rollups == null) {
+                rollups = new TreeMap<>();
+            }
+            rollups.computeIfAbsent(rollupTs, ts -> {
+                PendingRollup rollup = new PendingRollup(ttl);
+                rollup.setPersisted(Futures.immediateFuture(null));
+                return rollup;
+            });
+            return rollups;
+        });
+    }
+
+    private static long mergeTtl(long ttl1, long ttl2) {
+        return ttl1 == 0 || ttl2 == 0 ? 0 : Math.max(ttl1, ttl2);
+    }
+
+    @Override
+    public boolean isApplicable(TsKvQuery query) {
+        return getGranularity(query).isPresent();
+    }
+
+    private Optional<TsKvRollupGranularity> getGranularity(TsKvQuery query) {
+        if (query.getAggregation() == Aggregation.NONE || query.getStartTs() < availableFromTs) {
+            return Optional.empty();
+        }
+        for (int i = granularities.size() - 1; i >= 0; i--) {
+            if (granularities.get(i).fits(query.getStartTs(), query.getInterval())) {
+                return Optional.of(granularities.get(i));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public ListenableFuture<List<TsKvEntry>> findAllAsync(EntityId entityId, TsKvQuery query) {
+        TsKvRollupGranularity granularity = getGranularity(query)
+                .orElseThrow(() -> new IllegalArgumentException("Query " + query + " can't be answered from rollups"));
+        long rebuiltBeforeTs = System.currentTimeMillis() - rebuildDelayMs - 2 * flushIntervalMs;
+        long splitTs;
+        if (query.getEndTs() <= rebuiltBeforeTs) {
+            splitTs = query.getEndTs();
+        } else {
+            splitTs = query.getStartTs() + Math.max(0, Math.floorDiv(rebuiltBeforeTs - query.getStartTs(), query.getInterval())) * query.getInterval();
+        }
+        List<ListenableFuture<List<TsKvEntry>>> futures = new ArrayList<>(2);
+        if (splitTs > query.getStartTs()) {
+            futures.add(findAllInRollups(entityId, query, granularity, splitTs));
+        }
+        if (splitTs < query.getEndTs()) {
+            futures.add(findAllInRaw(entityId, query, splitTs, query.getEndTs()));
+        }
+        return Futures.transform(Futures.allAsList(futures), (Function<List<List<TsKvEntry>>, List<TsKvEntry>>) results -> {
+            List<TsKvEntry> entries = new ArrayList<>();
+            results.forEach(entries::addAll);
+            return entries;
+        });
+    }
+
+    /**
+     * Aggregates the query intervals from rollups. Intervals that contain a rollup changed after its last rebuild
+     * are aggregated from raw values instead, and the rebuild of such rollups is scheduled.
+     */
+    private ListenableFuture<List<TsKvEntry>> findAllInRollups(EntityId entityId, TsKvQuery query, TsKvRollupGranularity granularity, long endTs) {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(query.getKey(), query.getAggregation(),
+                query.getStartTs(), endTs, query.getInterval());
+        ListenableFuture<List<TsKvRollup>> persisted = rollupDao.findAllAsync(entityId, query.getKey(), granularity,
+                aggregator.getStartTs(), aggregator.getEndTs());
+        return Futures.transform(persisted, (AsyncFunction<List<TsKvRollup>, List<TsKvEntry>>) rollups -> {
+            RollupSeriesKey seriesKey = new RollupSeriesKey(entityId, query.getKey(), granularity);
+            Set<Long> outdated = new TreeSet<>();
+            for (TsKvRollup rollup : rollups) {
+                if (!rollup.isRebuilt()) {
+                    outdated.add(toIntervalStartTs(query, rollup.getTs()));
+                    requestRebuild(seriesKey, rollup.getTs(), rollup.getChangedTtl());
+                }
+            }
+            rollups.stream().filter(r -> !outdated.contains(toIntervalStartTs(query, r.getTs()))).forEach(aggregator::add);
+            if (outdated.isEmpty()) {
+                return Futures.immediateFuture(aggregator.getResult());
+            }
+            List<ListenableFuture<List<TsKvEntry>>> futures = new ArrayList<>();
+            futures.add(Futures.immediateFuture(aggregator.getResult()));
+            for (long intervalStartTs : outdated) {
+                futures.add(findAllInRaw(entityId, query, intervalStartTs, Math.min(intervalStartTs + query.getInterval(), endTs)));
+            }
+            return Futures.transform(Futures.allAsList(futures), (Function<List<List<TsKvEntry>>, List<TsKvEntry>>) results -> {
+                List<TsKvEntry> entries = new ArrayList<>();
+                results.forEach(entries::addAll);
+                entries.sort(Comparator.comparingLong(TsKvEntry::getTs));
+                return entries;
+            });
+        });
+    }
+
+    private static long toIntervalStartTs(TsKvQuery query, long ts) {
+        return query.getStartTs() + Math.floorDiv(ts - query.getStartTs(), query.getInterval()) * query.getInterval();
+    }
+
+    private ListenableFuture<List<TsKvEntry>> findAllInRaw(EntityId entityId, TsKvQuery query, long startTs, long endTs) {
+        TsKvQuery rawQuery = new BaseTsKvQuery(query.getKey(), startTs, endTs, query.getInterval(), query.getLimit(), query.getAggregation());
+        return timeseriesDao.findAllAsync(entityId, Collections.singletonList(rawQuery));
+    }
+
+    /**
+     * Starts the rebuild of changed rollup intervals that are closed and unchanged for <code>rebuild_delay_ms</code>,
+     * from the finest granularity to the coarsest, in batches of <code>max_batch_size</code> concurrent rebuilds.
+     * Intervals that failed to rebuild are marked as changed again and retried on the next flush.
+     * A flush requested while the previous one still runs returns the running one.
+     *
+     * @return the future completing once all rebuilds are done
+     */
+    @Override
+    public synchronized ListenableFuture<Void> flush() {
+        if (!currentFlush.isDone() || pending.isEmpty()) {
+            return currentFlush;
+        }
+        long now = System.currentTimeMillis();
+        long settledBeforeTs = now - rebuildDelayMs;
+        Map<TsKvRollupGranularity, List<RollupRebuild>> rebuilds = new EnumMap<>(TsKvRollupGranularity.class);
+        for (RollupSeriesKey seriesKey : new ArrayList<>(pending.keySet())) {
+            long closedBeforeTs = settledBeforeTs - seriesKey.getGranularity().getWidth();
+            pending.computeIfPresent(seriesKey, (key, rollups) -> {
+                Iterator<Map.Entry<Long, PendingRollup>> it = rollups.headMap(closedBeforeTs, true).entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, PendingRollup> rollup = it.next();
+                    if (rollup.getValue().getLastChangedTs() <= settledBeforeTs) {
+                        rebuilds.computeIfAbsent(seriesKey.getGranularity(), g -> new ArrayList<>())
+                                .add(new RollupRebuild(seriesKey, rollup.getKey(), rollup.getValue().getTtl()));
+                        it.remove();
+                    }
+                }
+                return rollups.isEmpty() ? null : rollups;
+            });
+        }
+        ListenableFuture<Void> chain = Futures.immediateFuture(null);
+        for (TsKvRollupGranularity granularity : granularities) {
+            for (List<RollupRebuild> batch : Lists.partition(rebuilds.getOrDefault(granularity, Collections.emptyList()), maxBatchSize)) {
+                chain = Futures.transform(chain, (AsyncFunction<Void, Void>) v -> rebuildBatch(batch, now));
+            }
+        }
+        currentFlush = chain;
+        return chain;
+    }
+
+    private ListenableFuture<Void> rebuildBatch(List<RollupRebuild> batch, long rebuiltTs) {
+        log.trace("Rebuilding {} rollups", batch.size());
+        List<ListenableFuture<Void>> futures = new ArrayList<>(batch.size());
+        for (RollupRebuild rebuild : batch) {
+            futures.add(Futures.withFallback(rebuild(rebuild, rebuiltTs), (FutureFallback<Void>) t -> {
+                log.warn("Failed to rebuild rollup {}", rebuild, t);
+                requestRebuild(rebuild.getSeriesKey(), rebuild.getRollupTs(), rebuild.getTtl());
+                return Futures.immediateFuture(null);
+            }));
+        }
+        return Futures.transform(Futures.allAsList(futures), (Function<List<Void>, Void>) v -> null);
+    }
+
+    private ListenableFuture<Void> rebuild(RollupRebuild rebuild, long rebuiltTs) {
+        RollupSeriesKey seriesKey = rebuild.getSeriesKey();
+        TsKvRollup rollup = new TsKvRollup(rebuild.getRollupTs());
+        rollup.setRebuiltTs(rebuiltTs);
+        Optional<TsKvRollupGranularity> finer = getFiner(seriesKey.getGranularity());
+        ListenableFuture<TsKvRollup> aggregated = finer.isPresent() ? aggregateFiner(seriesKey, finer.get(), rollup) :
+                aggregateRaw(seriesKey, rollup, rollup.getTs() + seriesKey.getGranularity().getWidth(), true);
+        return Futures.transform(aggregated, (AsyncFunction<TsKvRollup, Void>) result ->
+                rollupDao.save(seriesKey.getEntityId(), seriesKey.getKey(), seriesKey.getGranularity(), result, rebuild.getTtl()));
+    }
+
+    private Optional<TsKvRollupGranularity> getFiner(TsKvRollupGranularity granularity) {
+        int idx = granularities.indexOf(granularity);
+        if (idx > 0 && granularity.getWidth() % granularities.get(idx - 1).getWidth() == 0) {
+            return Optional.of(granularities.get(idx - 1));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Merges the rollups of the finer granularity within the interval, which are rebuilt earlier in the same flush.
+     * Falls back to the raw values if any of them is not up to date.
+     */
+    private ListenableFuture<TsKvRollup> aggregateFiner(RollupSeriesKey seriesKey, TsKvRollupGranularity finer, TsKvRollup rollup) {
+        long endTs = rollup.getTs() + seriesKey.getGranularity().getWidth();
+        ListenableFuture<List<TsKvRollup>> finerRollups = rollupDao.findAllAsync(seriesKey.getEntityId(), seriesKey.getKey(), finer,
+                rollup.getTs(), endTs);
+        return Futures.transform(finerRollups, (AsyncFunction<List<TsKvRollup>, TsKvRollup>) rollups -> {
+            if (rollups.stream().allMatch(TsKvRollup::isRebuilt)) {
+                rollups.forEach(rollup::merge);
+                return Futures.immediateFuture(rollup);
+            }
+            return aggregateRaw(seriesKey, rollup, endTs, true);
+        });
+    }
+
+    /**
+     * Folds the raw values of <code>(rollup.ts, endTs]</code> into the rollup, reading at most <code>raw_page_size</code>
+     * values at a time from the latest to the earliest. A page ends at the earliest timestamp of the previous page,
+     * which is skipped as it was already added.
+     */
+    private ListenableFuture<TsKvRollup> aggregateRaw(RollupSeriesKey seriesKey, TsKvRollup rollup, long endTs, boolean firstPage) {
+        TsKvQuery rawQuery = new BaseTsKvQuery(seriesKey.getKey(), rollup.getTs(), endTs,
+                seriesKey.getGranularity().getWidth(), rawPageSize, Aggregation.NONE);
+        ListenableFuture<List<TsKvEntry>> values = timeseriesDao.findAllAsync(seriesKey.getEntityId(), Collections.singletonList(rawQuery));
+        return Futures.transform(values, (AsyncFunction<List<TsKvEntry>, TsKvRollup>) entries -> {
+            long earliestTs = endTs;
+            for (TsKvEntry entry : entries) {
+                if (firstPage || entry.getTs() < endTs) {
+                    rollup.add(entry);
+                }
+                earliestTs = Math.min(earliestTs, entry.getTs());
+            }
+            if (entries.size() < rawPageSize || earliestTs <= rollup.getTs()) {
+                return Futures.immediateFuture(rollup);
+            }
+            return aggregateRaw(seriesKey, rollup, earliestTs, false);
+        });
+    }
+
+    @Data
+    private static class RollupSeriesKey {
+        private final EntityId entityId;
+        private final String key;
+        private final TsKvRollupGranularity granularity;
+    }
+
+    @Data
+    private static class RollupRebuild {
+        private final RollupSeriesKey seriesKey;
+        private final long rollupTs;
+        private final long ttl;
+    }
+
+    @Data
+    private static class PendingRollup {
+        private long ttl;
+        private long lastChangedTs;
+        private ListenableFuture<Void> persisted;
+
+        PendingRollup(long ttl) {
+            this.ttl = ttl;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -33,6 +34,7 @@ import org.thingsboard.server.common.data.kv.*;
 import org.thingsboard.server.common.data.kv.DataType;
 import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.nosql.CassandraAbstractAsyncDao;
+import org.thingsboard.server.dao.nosql.CassandraBatchWriter;
 import org.thingsboard.server.dao.util.NoSqlDao;
 
 import javax.annotation.Nullable;
@@ -41,9 +43,13 @@ import javax.annotation.PreDestroy;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.Collectors;
 
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
@@ -61,11 +67,33 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
     @Autowired
     private Environment environment;
 
+    @Autowired
+    private TsKvPartitionsCache partitionsCache;
+
     @Value("${cassandra.query.ts_key_value_partitioning}")
     private String partitioning;
 
+    @Value("${cassandra.query.ts_kv_read_fan_out}")
+    private int partitionsReadFanOut;
+
+    @Value("${cassandra.query.ts_kv_single_pass_min_intervals}")
+    private int singlePassMinIntervals;
+
+    @Value("${cassandra.query.ts_kv_batch.enabled}")
+    private boolean batchEnabled;
+
+    @Value("${cassandra.query.ts_kv_batch.max_size}")
+    private int batchMaxSize;
+
+    @Value("${cassandra.query.ts_kv_batch.linger_ms}")
+    private long batchLingerMs;
+
     private TsPartitionDate tsFormat;
 
+    private ScheduledExecutorService batchScheduler;
+    private CassandraBatchWriter<TsKvPartitionKey> saveBatchWriter;
+    private CassandraBatchWriter<EntityId> latestBatchWriter;
+
     private PreparedStatement partitionInsertStmt;
     private PreparedStatement partitionInsertTtlStmt;
     private PreparedStatement[] latestInsertStmts;
@@ -82,6 +110,7 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
     @PostConstruct
     public void init() {
         super.startExecutor();
+        partitionsReadFanOut = Math.max(1, partitionsReadFanOut);
         if (!isInstall()) {
             getFetchStmt(Aggregation.NONE);
             Optional<TsPartitionDate> partition = TsPartitionDate.parse(partitioning);
@@ -91,12 +120,26 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
                 log.warn("Incorrect configuration of partitioning {}", partitioning);
                 throw new RuntimeException("Failed to parse partitioning property: " + partitioning + "!");
             }
+            if (batchEnabled) {
+                batchScheduler = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setNameFormat("ts-kv-batch-linger").setDaemon(true).build());
+                saveBatchWriter = new CassandraBatchWriter<>(this::executeAsyncWrite, batchScheduler, batchMaxSize, batchLingerMs);
+                latestBatchWriter = new CassandraBatchWriter<>(this::executeAsyncWrite, batchScheduler, batchMaxSize, batchLingerMs);
+            }
         }
     }
 
     @PreDestroy
     public void stop() {
-        super.stopExecutor();
+        if (saveBatchWriter != null) {
+            saveBatchWriter.stop();
+        }
+        if (latestBatchWriter != null) {
+            latestBatchWriter.stop();
+        }
+        if (batchScheduler != null) {
+            batchScheduler.shutdownNow();
+        }
     }
 
     @Override
@@ -122,6 +165,11 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
             return findAllAsyncWithLimit(entityId, query);
         } else {
             long step = Math.max(query.getInterval(), MIN_AGGREGATION_STEP_MS);
+            if (singlePassMinIntervals > 0
+                    && TsKvBucketAggregator.getIntervalsCount(query.getStartTs(), query.getEndTs(), step) >= singlePassMinIntervals) {
+                TsKvBucketAggregator aggregator = new TsKvBucketAggregator(query.getKey(), query.getAggregation(), query.getStartTs(), query.getEndTs(), step);
+                return findAndAggregateInSinglePass(entityId, aggregator);
+            }
             long stepTs = query.getStartTs();
             List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
             while (stepTs < query.getEndTs()) {
@@ -155,12 +203,13 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
             @Override
             public void onSuccess(@Nullable List<Long> partitions) {
                 TsKvQueryCursor cursor = new TsKvQueryCursor(entityId.getEntityType().name(), entityId.getId(), query, partitions);
-                findAllAsyncSequentiallyWithLimit(cursor, resultFuture);
+                findAllAsyncInPartitionsWithLimit(cursor, resultFuture, new ArrayDeque<>(partitionsReadFanOut));
             }
 
             @Override
             public void onFailure(Throwable t) {
                 log.error("[{}][{}] Failed to fetch partitions for interval {}-{}", entityId.getEntityType().name(), entityId.getId(), minPartition, maxPartition, t);
+                resultFuture.setException(t);
             }
         }, readResultsProcessingExecutor);
 
@@ -172,35 +221,140 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
         return tsFormat.truncatedTo(time).toInstant(ZoneOffset.UTC).toEpochMilli();
     }
 
-    private void findAllAsyncSequentiallyWithLimit(final TsKvQueryCursor cursor, final SimpleListenableFuture<List<TsKvEntry>> resultFuture) {
-        if (cursor.isFull() || !cursor.hasNextPartition()) {
+    /**
+     * Reads partitions starting from the latest one, keeping up to <code>partitionsReadFanOut</code> reads in flight.
+     * Results are consumed in partition order, and reads that are no longer needed once the limit is reached are cancelled.
+     */
+    private void findAllAsyncInPartitionsWithLimit(final TsKvQueryCursor cursor, final SimpleListenableFuture<List<TsKvEntry>> resultFuture,
+                                                   final Deque<ResultSetFuture> pendingReads) {
+        while (!cursor.isFull() && pendingReads.size() < partitionsReadFanOut && cursor.hasNextPartition()) {
+            pendingReads.add(fetchPartitionData(cursor, cursor.getNextPartition()));
+        }
+        if (cursor.isFull() || pendingReads.isEmpty()) {
+            pendingReads.forEach(f -> f.cancel(true));
             resultFuture.set(cursor.getData());
         } else {
-            PreparedStatement proto = getFetchStmt(Aggregation.NONE);
-            BoundStatement stmt = proto.bind();
-            stmt.setString(0, cursor.getEntityType());
-            stmt.setUUID(1, cursor.getEntityId());
-            stmt.setString(2, cursor.getKey());
-            stmt.setLong(3, cursor.getNextPartition());
-            stmt.setLong(4, cursor.getStartTs());
-            stmt.setLong(5, cursor.getEndTs());
-            stmt.setInt(6, cursor.getCurrentLimit());
-
-            Futures.addCallback(executeAsyncRead(stmt), new FutureCallback<ResultSet>() {
+            ResultSetFuture nextRead = pendingReads.poll();
+            Futures.addCallback(nextRead, new FutureCallback<ResultSet>() {
                 @Override
                 public void onSuccess(@Nullable ResultSet result) {
                     cursor.addData(convertResultToTsKvEntryList(result.all()));
-                    findAllAsyncSequentiallyWithLimit(cursor, resultFuture);
+                    findAllAsyncInPartitionsWithLimit(cursor, resultFuture, pendingReads);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    log.error("[{}][{}] Failed to fetch data for key {}", cursor.getEntityType(), cursor.getEntityId(), cursor.getKey(), t);
+                    pendingReads.forEach(f -> f.cancel(true));
+                    resultFuture.setException(t);
+                }
+            }, readResultsProcessingExecutor);
+        }
+    }
+
+    private ResultSetFuture fetchPartitionData(TsKvQueryCursor cursor, long partition) {
+        PreparedStatement proto = getFetchStmt(Aggregation.NONE);
+        BoundStatement stmt = proto.bind();
+        stmt.setString(0, cursor.getEntityType());
+        stmt.setUUID(1, cursor.getEntityId());
+        stmt.setString(2, cursor.getKey());
+        stmt.setLong(3, partition);
+        stmt.setLong(4, cursor.getStartTs());
+        stmt.setLong(5, cursor.getEndTs());
+        stmt.setInt(6, cursor.getCurrentLimit());
+        return executeAsyncRead(stmt);
+    }
+
+    /**
+     * Reads raw values of every partition in the query range once and folds them into all aggregation intervals,
+     * instead of issuing partition lookups and aggregation queries per interval.
+     */
+    private ListenableFuture<List<TsKvEntry>> findAndAggregateInSinglePass(EntityId entityId, TsKvBucketAggregator aggregator) {
+        long minPartition = toPartitionTs(aggregator.getStartTs());
+        long maxPartition = toPartitionTs(aggregator.getEndTs());
+
+        ResultSetFuture partitionsFuture = fetchPartitions(entityId, aggregator.getKey(), minPartition, maxPartition);
+
+        final SimpleListenableFuture<List<TsKvEntry>> resultFuture = new SimpleListenableFuture<>();
+        final ListenableFuture<List<Long>> partitionsListFuture = Futures.transform(partitionsFuture, getPartitionsArrayFunction(), readResultsProcessingExecutor);
+
+        Futures.addCallback(partitionsListFuture, new FutureCallback<List<Long>>() {
+            @Override
+            public void onSuccess(@Nullable List<Long> partitions) {
+                aggregatePartitionsWithFanOut(entityId, aggregator, new ArrayDeque<>(partitions), resultFuture, new ArrayDeque<>(partitionsReadFanOut));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("[{}][{}] Failed to fetch partitions for interval {}-{}", entityId.getEntityType().name(), entityId.getId(), minPartition, maxPartition, t);
+                resultFuture.setException(t);
+            }
+        }, readResultsProcessingExecutor);
+
+        return resultFuture;
+    }
+
+    /**
+     * Aggregates partitions keeping up to <code>partitionsReadFanOut</code> partition reads in flight.
+     */
+    private void aggregatePartitionsWithFanOut(final EntityId entityId, final TsKvBucketAggregator aggregator, final Deque<Long> partitions,
+                                               final SimpleListenableFuture<List<TsKvEntry>> resultFuture,
+                                               final Deque<ListenableFuture<Void>> pendingReads) {
+        while (pendingReads.size() < partitionsReadFanOut && !partitions.isEmpty()) {
+            Long partition = partitions.poll();
+            log.trace("Aggregating data of partition [{}] for entityType {} and entityId {}", partition, entityId.getEntityType(), entityId.getId());
+            pendingReads.add(aggregatePartitionData(aggregator, fetchRawPartitionData(entityId, aggregator, partition)));
+        }
+        if (pendingReads.isEmpty()) {
+            resultFuture.set(aggregator.getResult());
+        } else {
+            ListenableFuture<Void> nextRead = pendingReads.poll();
+            Futures.addCallback(nextRead, new FutureCallback<Void>() {
+                @Override
+                public void onSuccess(@Nullable Void result) {
+                    aggregatePartitionsWithFanOut(entityId, aggregator, partitions, resultFuture, pendingReads);
                 }
 
                 @Override
                 public void onFailure(Throwable t) {
-                    log.error("[{}][{}] Failed to fetch data for query {}-{}", stmt, t);
+                    log.error("[{}][{}] Failed to aggregate data for key {}", entityId.getEntityType(), entityId.getId(), aggregator.getKey(), t);
+                    pendingReads.forEach(f -> f.cancel(true));
+                    resultFuture.setException(t);
                 }
             }, readResultsProcessingExecutor);
         }
     }
 
+    private ResultSetFuture fetchRawPartitionData(EntityId entityId, TsKvBucketAggregator aggregator, long partition) {
+        BoundStatement stmt = getFetchStmt(Aggregation.NONE).bind();
+        stmt.setString(0, entityId.getEntityType().name());
+        stmt.setUUID(1, entityId.getId());
+        stmt.setString(2, aggregator.getKey());
+        stmt.setLong(3, partition);
+        stmt.setLong(4, aggregator.getStartTs());
+        stmt.setLong(5, aggregator.getEndTs());
+        stmt.setInt(6, Integer.MAX_VALUE);
+        return executeAsyncRead(stmt);
+    }
+
+    /**
+     * Consumes the rows that are already fetched and requests the next page only after that,
+     * so a partition is never fully materialized in memory.
+     */
+    private ListenableFuture<Void> aggregatePartitionData(TsKvBucketAggregator aggregator, ListenableFuture<ResultSet> rsFuture) {
+        return Futures.transform(rsFuture, (AsyncFunction<ResultSet, Void>) rs -> {
+            int available = rs.getAvailableWithoutFetching();
+            for (int i = 0; i < available; i++) {
+                Row row = rs.one();
+                aggregator.add(row.getLong(ModelConstants.TS_COLUMN), toKvEntry(row, aggregator.getKey()));
+            }
+            if (rs.isFullyFetched()) {
+                return Futures.immediateFuture(null);
+            }
+            return aggregatePartitionData(aggregator, fetchMoreResults(rs));
+        }, readResultsProcessingExecutor);
+    }
+
     private ListenableFuture<Optional<TsKvEntry>> findAndAggregateAsync(EntityId entityId, TsKvQuery query, long minPartition, long maxPartition) {
         final Aggregation aggregation = query.getAggregation();
         final String key = query.getKey();
@@ -281,22 +435,35 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
         if (ttl > 0) {
             stmt.setInt(6, (int) ttl);
         }
+        if (saveBatchWriter != null) {
+            // Rows are identified by ts within the partition, a repeated write of the same ts replaces the earlier one
+            return saveBatchWriter.add(new TsKvPartitionKey(entityId.getEntityType().name(), entityId.getId(), tsKvEntry.getKey(), partition),
+                    stmt, tsKvEntry.getTs(), 0L);
+        }
         return getFuture(executeAsyncWrite(stmt), rs -> null);
     }
 
     @Override
     public ListenableFuture<Void> savePartition(EntityId entityId, long tsKvEntryTs, String key, long ttl) {
         long partition = toPartitionTs(tsKvEntryTs);
+        TsKvPartitionKey partitionKey = new TsKvPartitionKey(entityId.getEntityType().name(), entityId.getId(), key, partition);
+        if (partitionsCache.isRegistered(partitionKey, ttl)) {
+            return Futures.immediateFuture(null);
+        }
         log.debug("Saving partition {} for the entity [{}-{}] and key {}", partition, entityId.getEntityType(), entityId.getId(), key);
+        long registeredAt = System.currentTimeMillis();
         BoundStatement stmt = (ttl == 0 ? getPartitionInsertStmt() : getPartitionInsertTtlStmt()).bind();
         stmt = stmt.setString(0, entityId.getEntityType().name())
                 .setUUID(1, entityId.getId())
                 .setLong(2, partition)
                 .setString(3, key);
         if (ttl > 0) {
-            stmt.setInt(4, (int) ttl);
+            stmt.setInt(4, (int) partitionsCache.getPartitionTtl(ttl));
         }
-        return getFuture(executeAsyncWrite(stmt), rs -> null);
+        return getFuture(executeAsyncWrite(stmt), rs -> {
+            partitionsCache.register(partitionKey, ttl, registeredAt);
+            return null;
+        });
     }
 
     @Override
@@ -308,6 +475,9 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
                 .setString(2, tsKvEntry.getKey())
                 .setLong(3, tsKvEntry.getTs());
         addValue(tsKvEntry, stmt, 4);
+        if (latestBatchWriter != null) {
+            return latestBatchWriter.add(entityId, stmt, tsKvEntry.getKey(), tsKvEntry.getTs());
+        }
         return getFuture(executeAsyncWrite(stmt), rs -> null);
     }
 
@@ -0,0 +1,246 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.dao.model.ModelConstants;
+import org.thingsboard.server.dao.nosql.CassandraAbstractAsyncDao;
+import org.thingsboard.server.dao.util.NoSqlDao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.thingsboard.server.dao.model.ModelConstants.*;
+
+@Component
+@Slf4j
+@NoSqlDao
+public class CassandraTsKvRollupDao extends CassandraAbstractAsyncDao implements TsKvRollupDao {
+
+    /**
+     * Number of rollups stored in one partition: a week of minute rollups, more than a year of hour rollups.
+     */
+    private static final long ROLLUPS_PER_PARTITION = 7 * 24 * 60;
+
+    private static final String[] VALUE_COLUMNS = new String[]{
+            LONG_COUNT_COLUMN, LONG_SUM_COLUMN, LONG_MIN_COLUMN, LONG_MAX_COLUMN,
+            DOUBLE_COUNT_COLUMN, DOUBLE_SUM_COLUMN, DOUBLE_MIN_COLUMN, DOUBLE_MAX_COLUMN,
+            BOOLEAN_COUNT_COLUMN, BOOLEAN_MIN_COLUMN, BOOLEAN_MAX_COLUMN,
+            STRING_COUNT_COLUMN, STRING_MIN_COLUMN, STRING_MAX_COLUMN};
+
+    private PreparedStatement saveStmt;
+    private PreparedStatement saveTtlStmt;
+    private PreparedStatement markChangedStmt;
+    private PreparedStatement markChangedTtlStmt;
+    private PreparedStatement fetchStmt;
+
+    @Override
+    public ListenableFuture<List<TsKvRollup>> findAllAsync(EntityId entityId, String key, TsKvRollupGranularity granularity, long startTs, long endTs) {
+        long partitionWidth = getPartitionWidth(granularity);
+        List<ListenableFuture<List<TsKvRollup>>> futures = new ArrayList<>();
+        for (long partition = toPartition(granularity, startTs); partition < endTs; partition += partitionWidth) {
+            BoundStatement stmt = getFetchStmt().bind();
+            stmt.setString(0, entityId.getEntityType().name());
+            stmt.setUUID(1, entityId.getId());
+            stmt.setString(2, key);
+            stmt.setString(3, granularity.name());
+            stmt.setLong(4, partition);
+            stmt.setLong(5, startTs);
+            stmt.setLong(6, endTs);
+            log.debug("Generated query [{}] for entityType {} and entityId {}", stmt, entityId.getEntityType(), entityId.getId());
+            futures.add(getFuture(executeAsyncRead(stmt), this::convertResultToRollupList));
+        }
+        return Futures.transform(Futures.allAsList(futures), (com.google.common.base.Function<List<List<TsKvRollup>>, List<TsKvRollup>>) partitions -> {
+            List<TsKvRollup> rollups = new ArrayList<>();
+            partitions.forEach(rollups::addAll);
+            return rollups;
+        }, readResultsProcessingExecutor);
+    }
+
+    @Override
+    public ListenableFuture<Void> save(EntityId entityId, String key, TsKvRollupGranularity granularity, TsKvRollup rollup, long ttl) {
+        BoundStatement stmt = (ttl == 0 ? getSaveStmt() : getSaveTtlStmt()).bind();
+        stmt.setString(0, entityId.getEntityType().name())
+                .setUUID(1, entityId.getId())
+                .setString(2, key)
+                .setString(3, granularity.name())
+                .setLong(4, toPartition(granularity, rollup.getTs()))
+                .setLong(5, rollup.getTs());
+        int i = 6;
+        stmt.setLong(i++, rollup.getLongCount());
+        setOrUnset(stmt, i++, rollup.getLongSum());
+        setOrUnset(stmt, i++, rollup.getLongMin());
+        setOrUnset(stmt, i++, rollup.getLongMax());
+        stmt.setLong(i++, rollup.getDoubleCount());
+        setOrUnset(stmt, i++, rollup.getDoubleSum());
+        setOrUnset(stmt, i++, rollup.getDoubleMin());
+        setOrUnset(stmt, i++, rollup.getDoubleMax());
+        stmt.setLong(i++, rollup.getBooleanCount());
+        setOrUnset(stmt, i++, rollup.getBooleanMin());
+        setOrUnset(stmt, i++, rollup.getBooleanMax());
+        stmt.setLong(i++, rollup.getStrCount());
+        setOrUnset(stmt, i++, rollup.getStrMin());
+        setOrUnset(stmt, i++, rollup.getStrMax());
+        setOrUnset(stmt, i++, rollup.getRebuiltTs());
+        if (ttl > 0) {
+            stmt.setInt(i, (int) ttl);
+        }
+        return getFuture(executeAsyncWrite(stmt), rs -> null);
+    }
+
+    @Override
+    public ListenableFuture<Void> markChanged(EntityId entityId, String key, TsKvRollupGranularity granularity, long ts, long changedTs, long ttl) {
+        BoundStatement stmt = (ttl == 0 ? getMarkChangedStmt() : getMarkChangedTtlStmt()).bind();
+        int i = 0;
+        if (ttl > 0) {
+            stmt.setInt(i++, (int) ttl);
+        }
+        stmt.setLong(i++, changedTs)
+                .setLong(i++, ttl)
+                .setString(i++, entityId.getEntityType().name())
+                .setUUID(i++, entityId.getId())
+                .setString(i++, key)
+                .setString(i++, granularity.name())
+                .setLong(i++, toPartition(granularity, ts))
+                .setLong(i, ts);
+        return getFuture(executeAsyncWrite(stmt), rs -> null);
+    }
+
+    private static long getPartitionWidth(TsKvRollupGranularity granularity) {
+        return granularity.getWidth() * ROLLUPS_PER_PARTITION;
+    }
+
+    private static long toPartition(TsKvRollupGranularity granularity, long ts) {
+        long width = getPartitionWidth(granularity);
+        return Math.floorDiv(ts, width) * width;
+    }
+
+    private static void setOrUnset(BoundStatement stmt, int idx, Object value) {
+        if (value == null) {
+            stmt.unset(idx);
+        } else if (value instanceof Long) {
+            stmt.setLong(idx, (Long) value);
+        } else if (value instanceof Double) {
+            stmt.setDouble(idx, (Double) value);
+        } else if (value instanceof Boolean) {
+            stmt.setBool(idx, (Boolean) value);
+        } else {
+            stmt.setString(idx, (String) value);
+        }
+    }
+
+    private List<TsKvRollup> convertResultToRollupList(ResultSet rs) {
+        List<TsKvRollup> rollups = new ArrayList<>();
+        for (Row row : rs.all()) {
+            TsKvRollup rollup = new TsKvRollup(row.getLong(TS_COLUMN));
+            rollup.setLongCount(row.getLong(LONG_COUNT_COLUMN));
+            rollup.setLongSum(row.get(LONG_SUM_COLUMN, Long.class));
+            rollup.setLongMin(row.get(LONG_MIN_COLUMN, Long.class));
+            rollup.setLongMax(row.get(LONG_MAX_COLUMN, Long.class));
+            rollup.setDoubleCount(row.getLong(DOUBLE_COUNT_COLUMN));
+            rollup.setDoubleSum(row.get(DOUBLE_SUM_COLUMN, Double.class));
+            rollup.setDoubleMin(row.get(DOUBLE_MIN_COLUMN, Double.class));
+            rollup.setDoubleMax(row.get(DOUBLE_MAX_COLUMN, Double.class));
+            rollup.setBooleanCount(row.getLong(BOOLEAN_COUNT_COLUMN));
+            rollup.setBooleanMin(row.get(BOOLEAN_MIN_COLUMN, Boolean.class));
+            rollup.setBooleanMax(row.get(BOOLEAN_MAX_COLUMN, Boolean.class));
+            rollup.setStrCount(row.getLong(STRING_COUNT_COLUMN));
+            rollup.setStrMin(row.getString(STRING_MIN_COLUMN));
+            rollup.setStrMax(row.getString(STRING_MAX_COLUMN));
+            rollup.setChangedTs(row.get(CHANGED_TS_COLUMN, Long.class));
+            rollup.setChangedTtl(row.getLong(CHANGED_TTL_COLUMN));
+            rollup.setRebuiltTs(row.get(REBUILT_TS_COLUMN, Long.class));
+            rollups.add(rollup);
+        }
+        return rollups;
+    }
+
+    private PreparedStatement getSaveStmt() {
+        if (saveStmt == null) {
+            saveStmt = getSession().prepare(getInsertQuery());
+        }
+        return saveStmt;
+    }
+
+    private PreparedStatement getSaveTtlStmt() {
+        if (saveTtlStmt == null) {
+            saveTtlStmt = getSession().prepare(getInsertQuery() + " USING TTL ?");
+        }
+        return saveTtlStmt;
+    }
+
+    private static String getInsertQuery() {
+        return "INSERT INTO " + ModelConstants.TS_KV_ROLLUP_CF +
+                "(" + ENTITY_TYPE_COLUMN +
+                "," + ENTITY_ID_COLUMN +
+                "," + KEY_COLUMN +
+                "," + GRANULARITY_COLUMN +
+                "," + PARTITION_COLUMN +
+                "," + TS_COLUMN +
+                "," + String.join(",", VALUE_COLUMNS) +
+                "," + REBUILT_TS_COLUMN + ")" +
+                " VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
+    private PreparedStatement getMarkChangedStmt() {
+        if (markChangedStmt == null) {
+            markChangedStmt = getSession().prepare(getMarkChangedQuery(""));
+        }
+        return markChangedStmt;
+    }
+
+    private PreparedStatement getMarkChangedTtlStmt() {
+        if (markChangedTtlStmt == null) {
+            markChangedTtlStmt = getSession().prepare(getMarkChangedQuery(" USING TTL ?"));
+        }
+        return markChangedTtlStmt;
+    }
+
+    private static String getMarkChangedQuery(String using) {
+        return "UPDATE " + ModelConstants.TS_KV_ROLLUP_CF + using +
+                " SET " + CHANGED_TS_COLUMN + " = ?, " + CHANGED_TTL_COLUMN + " = ?" +
+                " WHERE " + ENTITY_TYPE_COLUMN + " = ? " +
+                "AND " + ENTITY_ID_COLUMN + " = ? " +
+                "AND " + KEY_COLUMN + " = ? " +
+                "AND " + GRANULARITY_COLUMN + " = ? " +
+                "AND " + PARTITION_COLUMN + " = ? " +
+                "AND " + TS_COLUMN + " = ?";
+    }
+
+    private PreparedStatement getFetchStmt() {
+        if (fetchStmt == null) {
+            fetchStmt = getSession().prepare("SELECT " + TS_COLUMN + "," + String.join(",", VALUE_COLUMNS) +
+                    "," + CHANGED_TS_COLUMN + "," + CHANGED_TTL_COLUMN + "," + REBUILT_TS_COLUMN +
+                    " FROM " + ModelConstants.TS_KV_ROLLUP_CF +
+                    " WHERE " + ENTITY_TYPE_COLUMN + " = ? " +
+                    "AND " + ENTITY_ID_COLUMN + " = ? " +
+                    "AND " + KEY_COLUMN + " = ? " +
+                    "AND " + GRANULARITY_COLUMN + " = ? " +
+                    "AND " + PARTITION_COLUMN + " = ? " +
+                    "AND " + TS_COLUMN + " >= ? " +
+                    "AND " + TS_COLUMN + " < ?");
+        }
+        return fetchStmt;
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Latest timeseries values of the entities owned by this node.
+ * Values are updated on every latest value saved through this node and loaded from the database on a miss.
+ * Writes served by other nodes, e.g. REST telemetry uploads, are not seen by the owner, so values expire
+ * <code>expire_after_write_ms</code> after they were stored. Entities owned by other nodes are never cached.
+ */
+@Component
+@Slf4j
+public class LatestTsKvCache {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    @Value("${cache.latest_telemetry.enabled}")
+    private boolean enabled;
+
+    @Value("${cache.latest_telemetry.max_size_mb}")
+    private long maxSizeMb;
+
+    @Value("${cache.latest_telemetry.expire_after_write_ms}")
+    private long expireAfterWriteMs;
+
+    @Value("${cache.latest_telemetry.stats_interval_ms}")
+    private long statsIntervalMs;
+
+    private Cache<LatestTsKvKey, TsKvEntry> cache;
+
+    private volatile Predicate<EntityId> ownershipFilter = entityId -> true;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private ScheduledExecutorService statsScheduler;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            cache = CacheBuilder.newBuilder()
+                    .maximumWeight(maxSizeMb * 1024 * 1024)
+                    .weigher((LatestTsKvKey key, TsKvEntry entry) -> weigh(key, entry))
+                    .expireAfterWrite(expireAfterWriteMs, TimeUnit.MILLISECONDS)
+                    .build();
+            if (statsIntervalMs > 0) {
+                statsScheduler = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setNameFormat("latest-ts-kv-cache-stats").setDaemon(true).build());
+                statsScheduler.scheduleAtFixedRate(() -> log.info("Latest telemetry cache stats: size [{}], hits [{}], misses [{}]",
+                        cache.size(), hitCount.get(), missCount.get()), statsIntervalMs, statsIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Sets the check whether an entity is owned by this node.
+     */
+    public void setOwnershipFilter(Predicate<EntityId> ownershipFilter) {
+        this.ownershipFilter = ownershipFilter;
+    }
+
+    public boolean isCacheable(EntityId entityId) {
+        return cache != null && ownershipFilter.test(entityId);
+    }
+
+    public TsKvEntry get(EntityId entityId, String key) {
+        TsKvEntry entry = cache.getIfPresent(new LatestTsKvKey(entityId, key));
+        if (entry != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a value that was just written to the database.
+     */
+    public void put(EntityId entityId, TsKvEntry entry) {
+        if (isCacheable(entityId)) {
+            cache.put(new LatestTsKvKey(entityId, entry.getKey()), entry);
+        }
+    }
+
+    /**
+     * Stores a value loaded from the database, unless a write already stored a value for the same key.
+     */
+    public void putIfAbsent(EntityId entityId, TsKvEntry entry) {
+        if (isCacheable(entityId) && entry != null && entry.getValue() != null) {
+            cache.asMap().putIfAbsent(new LatestTsKvKey(entityId, entry.getKey()), entry);
+        }
+    }
+
+    /**
+     * Drops the values of entities that are no longer owned by this node.
+     */
+    public void invalidateNotOwned() {
+        if (cache != null) {
+            long before = cache.size();
+            cache.asMap().keySet().removeIf(key -> !ownershipFilter.test(key.getEntityId()));
+            log.debug("Invalidated {} latest values after cluster change", before - cache.size());
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private static int weigh(LatestTsKvKey key, TsKvEntry entry) {
+        int size = ENTRY_OVERHEAD_BYTES + key.getKey().length() * 2;
+        if (entry.getStrValue().isPresent()) {
+            size += entry.getStrValue().get().length() * 2;
+        }
+        return size;
+    }
+
+    @Data
+    private static class LatestTsKvKey {
+        private final EntityId entityId;
+        private final String key;
+    }
+}
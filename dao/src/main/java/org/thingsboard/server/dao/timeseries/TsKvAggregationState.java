@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.thingsboard.server.common.data.kv.*;
+
+import java.util.Optional;
+
+/**
+ * Accumulates values of a single aggregation interval.
+ * Values are expected to be already aggregated per chunk, a raw value is a chunk with count 1.
+ */
+public class TsKvAggregationState {
+
+    private final Aggregation aggregation;
+
+    private long count = 0;
+    private DataType dataType = null;
+
+    private Boolean bValue = null;
+    private String sValue = null;
+    private Double dValue = null;
+    private Long lValue = null;
+
+    public TsKvAggregationState(Aggregation aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    public void update(DataType curDataType, long curCount, Long curLValue, Double curDValue, Boolean curBValue, String curSValue) {
+        dataType = curDataType;
+        if (aggregation == Aggregation.COUNT) {
+            count += curCount;
+        } else if (aggregation == Aggregation.AVG || aggregation == Aggregation.SUM) {
+            count += curCount;
+            if (curDValue != null) {
+                dValue = dValue == null ? curDValue : dValue + curDValue;
+            } else if (curLValue != null) {
+                lValue = lValue == null ? curLValue : lValue + curLValue;
+            }
+        } else if (aggregation == Aggregation.MIN) {
+            if (curDValue != null) {
+                dValue = dValue == null ? curDValue : Math.min(dValue, curDValue);
+            } else if (curLValue != null) {
+                lValue = lValue == null ? curLValue : Math.min(lValue, curLValue);
+            } else if (curBValue != null) {
+                bValue = bValue == null ? curBValue : bValue && curBValue;
+            } else if (curSValue != null) {
+                if (sValue == null || curSValue.compareTo(sValue) < 0) {
+                    sValue = curSValue;
+                }
+            }
+        } else if (aggregation == Aggregation.MAX) {
+            if (curDValue != null) {
+                dValue = dValue == null ? curDValue : Math.max(dValue, curDValue);
+            } else if (curLValue != null) {
+                lValue = lValue == null ? curLValue : Math.max(lValue, curLValue);
+            } else if (curBValue != null) {
+                bValue = bValue == null ? curBValue : bValue || curBValue;
+            } else if (curSValue != null) {
+                if (sValue == null || curSValue.compareTo(sValue) > 0) {
+                    sValue = curSValue;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a single raw value, ignoring the parts that are not used by the aggregation
+     * the same way as server side aggregation queries do.
+     */
+    public void update(KvEntry entry) {
+        boolean withNumbers = aggregation != Aggregation.COUNT;
+        boolean withAll = aggregation == Aggregation.MIN || aggregation == Aggregation.MAX;
+        switch (entry.getDataType()) {
+            case LONG:
+                update(DataType.LONG, 1, withNumbers ? entry.getLongValue().orElse(null) : null, null, null, null);
+                break;
+            case DOUBLE:
+                update(DataType.DOUBLE, 1, null, withNumbers ? entry.getDoubleValue().orElse(null) : null, null, null);
+                break;
+            case BOOLEAN:
+                update(DataType.BOOLEAN, 1, null, null, withAll ? entry.getBooleanValue().orElse(null) : null, null);
+                break;
+            case STRING:
+                update(DataType.STRING, 1, null, null, null, withAll ? entry.getStrValue().orElse(null) : null);
+                break;
+        }
+    }
+
+    public Optional<TsKvEntry> toTsKvEntry(String key, long ts) {
+        if (dataType == null) {
+            return Optional.empty();
+        } else if (aggregation == Aggregation.COUNT) {
+            return Optional.of(new BasicTsKvEntry(ts, new LongDataEntry(key, count)));
+        } else if (aggregation == Aggregation.AVG || aggregation == Aggregation.SUM) {
+            if (count == 0 || (dataType == DataType.DOUBLE && dValue == null) || (dataType == DataType.LONG && lValue == null)) {
+                return Optional.empty();
+            } else if (dataType == DataType.DOUBLE) {
+                return Optional.of(new BasicTsKvEntry(ts, new DoubleDataEntry(key, aggregation == Aggregation.SUM ? dValue : (dValue / count))));
+            } else if (dataType == DataType.LONG) {
+                return Optional.of(new BasicTsKvEntry(ts, new LongDataEntry(key, aggregation == Aggregation.SUM ? lValue : (lValue / count))));
+            }
+        } else if (aggregation == Aggregation.MIN || aggregation == Aggregation.MAX) {
+            if (dataType == DataType.DOUBLE) {
+                return Optional.of(new BasicTsKvEntry(ts, new DoubleDataEntry(key, dValue)));
+            } else if (dataType == DataType.LONG) {
+                return Optional.of(new BasicTsKvEntry(ts, new LongDataEntry(key, lValue)));
+            } else if (dataType == DataType.STRING) {
+                return Optional.of(new BasicTsKvEntry(ts, new StringDataEntry(key, sValue)));
+            } else {
+                return Optional.of(new BasicTsKvEntry(ts, new BooleanDataEntry(key, bValue)));
+            }
+        }
+        return Optional.empty();
+    }
+}
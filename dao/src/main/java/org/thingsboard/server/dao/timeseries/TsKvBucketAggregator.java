@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Getter;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Folds raw timeseries values into all aggregation intervals of a query at once.
+ * Interval <code>i</code> covers <code>(startTs + i * step, startTs + (i + 1) * step]</code>
+ * and its result is reported at the middle of the interval.
+ */
+public class TsKvBucketAggregator {
+
+    @Getter
+    private final String key;
+    private final Aggregation aggregation;
+    @Getter
+    private final long startTs;
+    private final long step;
+    private final TsKvAggregationState[] buckets;
+
+    public TsKvBucketAggregator(String key, Aggregation aggregation, long startTs, long endTs, long step) {
+        this.key = key;
+        this.aggregation = aggregation;
+        this.startTs = startTs;
+        this.step = step;
+        this.buckets = new TsKvAggregationState[getIntervalsCount(startTs, endTs, step)];
+    }
+
+    public static int getIntervalsCount(long startTs, long endTs, long step) {
+        return (int) ((endTs - startTs + step - 1) / step);
+    }
+
+    /**
+     * @return the upper bound of the last interval, which may exceed the end of the query
+     */
+    public long getEndTs() {
+        return startTs + buckets.length * step;
+    }
+
+    public synchronized void add(long ts, KvEntry entry) {
+        if (ts <= startTs || entry == null) {
+            return;
+        }
+        int idx = (int) ((ts - startTs - 1) / step);
+        if (idx >= buckets.length) {
+            return;
+        }
+        getBucket(idx).update(entry);
+    }
+
+    /**
+     * Adds a rollup covering <code>(rollup.ts, rollup.ts + width]</code>, the width has to divide the step.
+     */
+    public synchronized void add(TsKvRollup rollup) {
+        if (rollup.getTs() < startTs) {
+            return;
+        }
+        int idx = (int) ((rollup.getTs() - startTs) / step);
+        if (idx >= buckets.length) {
+            return;
+        }
+        rollup.aggregateTo(getBucket(idx), aggregation);
+    }
+
+    private TsKvAggregationState getBucket(int idx) {
+        TsKvAggregationState bucket = buckets[idx];
+        if (bucket == null) {
+            bucket = new TsKvAggregationState(aggregation);
+            buckets[idx] = bucket;
+        }
+        return bucket;
+    }
+
+    public synchronized List<TsKvEntry> getResult() {
+        List<TsKvEntry> result = new ArrayList<>();
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] != null) {
+                long ts = startTs + i * step + step / 2;
+                Optional<TsKvEntry> entry = buckets[i].toTsKvEntry(key, ts);
+                entry.ifPresent(result::add);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.dao.util.NoSqlDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory registry of partitions that are already present in <code>ts_kv_partitions_cf</code>.
+ * <p>
+ * Partitions written with TTL are registered with twice the data TTL and re-registered once per data TTL,
+ * so the partition row always outlives the data it points to.
+ */
+@Component
+@Slf4j
+@NoSqlDao
+public class TsKvPartitionsCache {
+
+    private static final long NO_EXPIRATION = Long.MAX_VALUE;
+    private static final long MAX_TTL = 630720000L;
+
+    @Getter
+    @Value("${cassandra.query.partitions_cache.enabled}")
+    private boolean enabled;
+
+    @Getter
+    @Value("${cassandra.query.partitions_cache.max_size}")
+    private long maxSize;
+
+    @Value("${cassandra.query.partitions_cache.stats_interval_ms}")
+    private long statsIntervalMs;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    private Cache<TsKvPartitionKey, Long> cache;
+    private ScheduledExecutorService statsScheduler;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        if (enabled && statsIntervalMs > 0) {
+            statsScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("ts-kv-partitions-cache-stats").setDaemon(true).build());
+            statsScheduler.scheduleAtFixedRate(this::logStats, statsIntervalMs, statsIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+    }
+
+    public boolean isRegistered(TsKvPartitionKey key, long ttl) {
+        if (!enabled) {
+            return false;
+        }
+        Long expiresAt = cache.getIfPresent(key);
+        boolean registered;
+        if (expiresAt == null) {
+            registered = false;
+        } else if (ttl == 0) {
+            registered = expiresAt == NO_EXPIRATION;
+        } else {
+            registered = expiresAt >= System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl);
+        }
+        (registered ? hitCount : missCount).incrementAndGet();
+        return registered;
+    }
+
+    public void register(TsKvPartitionKey key, long ttl, long registeredAt) {
+        if (enabled) {
+            cache.put(key, ttl == 0 ? NO_EXPIRATION : registeredAt + TimeUnit.SECONDS.toMillis(getPartitionTtl(ttl)));
+        }
+    }
+
+    public long getPartitionTtl(long ttl) {
+        return enabled ? Math.min(ttl * 2, MAX_TTL) : ttl;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private void logStats() {
+        log.info("Partitions cache stats: size [{}], hits [{}], misses [{}], hit rate [{}]", size(), getHitCount(), getMissCount(), getHitRate());
+    }
+}
@@ -75,6 +75,9 @@ public class TsKvQueryCursor {
     }
 
     public void addData(List<TsKvEntry> newData) {
+        if (newData.size() > currentLimit) {
+            newData = newData.subList(0, Math.max(currentLimit, 0));
+        }
         currentLimit -= newData.size();
         data.addAll(newData);
     }
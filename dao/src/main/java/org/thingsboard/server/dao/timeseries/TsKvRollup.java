@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.DataType;
+import org.thingsboard.server.common.data.kv.KvEntry;
+
+/**
+ * Count, sum, min and max of the values of a single key within one rollup interval, tracked per value type.
+ * <p>
+ * <code>changedTs</code> is set when a value of the interval is saved, before the value is acknowledged, and
+ * <code>rebuiltTs</code> when the aggregates are rebuilt. The aggregates include all saved values only if the
+ * interval was rebuilt after its last change.
+ */
+@Data
+public class TsKvRollup {
+
+    private long ts;
+
+    private long longCount;
+    private Long longSum;
+    private Long longMin;
+    private Long longMax;
+
+    private long doubleCount;
+    private Double doubleSum;
+    private Double doubleMin;
+    private Double doubleMax;
+
+    private long booleanCount;
+    private Boolean booleanMin;
+    private Boolean booleanMax;
+
+    private long strCount;
+    private String strMin;
+    private String strMax;
+
+    private Long changedTs;
+    private long changedTtl;
+    private Long rebuiltTs;
+
+    public TsKvRollup() {
+    }
+
+    public TsKvRollup(long ts) {
+        this.ts = ts;
+    }
+
+    public boolean isRebuilt() {
+        return changedTs == null || (rebuiltTs != null && rebuiltTs >= changedTs);
+    }
+
+    public void add(KvEntry entry) {
+        switch (entry.getDataType()) {
+            case LONG:
+                entry.getLongValue().ifPresent(v -> merge(1, v, v, v, null, null, null, 0, null, null, 0, null, null));
+                break;
+            case DOUBLE:
+                entry.getDoubleValue().ifPresent(v -> merge(0, null, null, null, 1, v, v, v, null, null, 0, null, null));
+                break;
+            case BOOLEAN:
+                entry.getBooleanValue().ifPresent(v -> merge(0, null, null, null, 0, null, null, null, 1, v, v, 0, null, null));
+                break;
+            case STRING:
+                entry.getStrValue().ifPresent(v -> merge(0, null, null, null, 0, null, null, null, 0, null, null, 1, v, v));
+                break;
+        }
+    }
+
+    public void merge(TsKvRollup other) {
+        merge(other.longCount, other.longSum, other.longMin, other.longMax,
+                other.doubleCount, other.doubleSum, other.doubleMin, other.doubleMax,
+                other.booleanCount, other.booleanMin, other.booleanMax,
+                other.strCount, other.strMin, other.strMax);
+    }
+
+    private void merge(long lCount, Long lSum, Long lMin, Long lMax,
+                       long dCount, Double dSum, Double dMin, Double dMax,
+                       long bCount, Boolean bMin, Boolean bMax,
+                       long sCount, String sMin, String sMax) {
+        if (lCount > 0) {
+            longCount += lCount;
+            longSum = longSum == null ? lSum : longSum + lSum;
+            longMin = longMin == null ? lMin : Math.min(longMin, lMin);
+            longMax = longMax == null ? lMax : Math.max(longMax, lMax);
+        }
+        if (dCount > 0) {
+            doubleCount += dCount;
+            doubleSum = doubleSum == null ? dSum : doubleSum + dSum;
+            doubleMin = doubleMin == null ? dMin : Math.min(doubleMin, dMin);
+            doubleMax = doubleMax == null ? dMax : Math.max(doubleMax, dMax);
+        }
+        if (bCount > 0) {
+            booleanCount += bCount;
+            booleanMin = booleanMin == null ? bMin : booleanMin && bMin;
+            booleanMax = booleanMax == null ? bMax : booleanMax || bMax;
+        }
+        if (sCount > 0) {
+            strCount += sCount;
+            strMin = strMin == null || sMin.compareTo(strMin) < 0 ? sMin : strMin;
+            strMax = strMax == null || sMax.compareTo(strMax) > 0 ? sMax : strMax;
+        }
+    }
+
+    /**
+     * Feeds this rollup into the state of an aggregation interval as if it was a chunk of raw values.
+     */
+    public void aggregateTo(TsKvAggregationState state, Aggregation aggregation) {
+        boolean sum = aggregation == Aggregation.SUM || aggregation == Aggregation.AVG;
+        boolean min = aggregation == Aggregation.MIN;
+        boolean max = aggregation == Aggregation.MAX;
+        if (longCount > 0) {
+            state.update(DataType.LONG, longCount, sum ? longSum : min ? longMin : max ? longMax : null, null, null, null);
+        }
+        if (doubleCount > 0) {
+            state.update(DataType.DOUBLE, doubleCount, null, sum ? doubleSum : min ? doubleMin : max ? doubleMax : null, null, null);
+        }
+        if (booleanCount > 0) {
+            state.update(DataType.BOOLEAN, booleanCount, null, null, min ? booleanMin : max ? booleanMax : null, null);
+        }
+        if (strCount > 0) {
+            state.update(DataType.STRING, strCount, null, null, null, min ? strMin : max ? strMax : null);
+        }
+    }
+}
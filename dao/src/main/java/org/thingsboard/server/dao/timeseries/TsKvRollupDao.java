@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import java.util.List;
+
+public interface TsKvRollupDao {
+
+    /**
+     * Finds rollups with timestamps in <code>[startTs, endTs)</code> ordered by timestamp.
+     */
+    ListenableFuture<List<TsKvRollup>> findAllAsync(EntityId entityId, String key, TsKvRollupGranularity granularity, long startTs, long endTs);
+
+    /**
+     * Overwrites the aggregates and the rebuild timestamp of the rollup with the same timestamp, keeping its change mark.
+     * A positive <code>ttl</code> is the rollup time to live in seconds.
+     */
+    ListenableFuture<Void> save(EntityId entityId, String key, TsKvRollupGranularity granularity, TsKvRollup rollup, long ttl);
+
+    /**
+     * Persists that the values of the rollup interval starting at <code>ts</code> changed at <code>changedTs</code>,
+     * creating an empty rollup if there is none yet. <code>ttl</code> is both the mark time to live and the ttl
+     * the rollup is rebuilt with.
+     */
+    ListenableFuture<Void> markChanged(EntityId entityId, String key, TsKvRollupGranularity granularity, long ts, long changedTs, long ttl);
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Widths of pre-aggregated timeseries intervals.
+ * A rollup with timestamp <code>ts</code> covers values with timestamps in <code>(ts, ts + width]</code>,
+ * the same way aggregation intervals of {@link org.thingsboard.server.common.data.kv.TsKvQuery} do.
+ */
+public enum TsKvRollupGranularity {
+
+    MINUTES(TimeUnit.MINUTES.toMillis(1)), HOURS(TimeUnit.HOURS.toMillis(1)), DAYS(TimeUnit.DAYS.toMillis(1));
+
+    private final long width;
+
+    TsKvRollupGranularity(long width) {
+        this.width = width;
+    }
+
+    public long getWidth() {
+        return width;
+    }
+
+    public long toRollupTs(long ts) {
+        return Math.floorDiv(ts - 1, width) * width;
+    }
+
+    public boolean fits(long startTs, long interval) {
+        return interval >= width && interval % width == 0 && startTs % width == 0;
+    }
+}
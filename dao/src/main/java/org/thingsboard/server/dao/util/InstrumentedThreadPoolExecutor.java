@@ -0,0 +1,119 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed size thread pool with a bounded queue, named threads and basic task statistics.
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    public static final String CALLER_RUNS_POLICY = "CALLER_RUNS";
+    public static final String ABORT_POLICY = "ABORT";
+
+    private final String name;
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong totalExecNanos = new AtomicLong();
+
+    public InstrumentedThreadPoolExecutor(String name, int poolSize, int queueSize, String rejectionPolicy) {
+        super(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                queueSize > 0 ? new LinkedBlockingQueue<>(queueSize) : new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build(),
+                toRejectedExecutionHandler(rejectionPolicy));
+        this.name = name;
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        try {
+            super.execute(new TimedTask(command));
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public int getQueueSize() {
+        return getQueue().size();
+    }
+
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public double getAvgWaitMs() {
+        long count = executedCount.get();
+        return count == 0 ? 0.0 : (double) TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()) / count / 1000;
+    }
+
+    public double getAvgExecMs() {
+        long count = executedCount.get();
+        return count == 0 ? 0.0 : (double) TimeUnit.NANOSECONDS.toMicros(totalExecNanos.get()) / count / 1000;
+    }
+
+    public String getStats() {
+        return name + " [active " + getActiveCount() + "/" + getMaximumPoolSize() + ", queue " + getQueueSize()
+                + ", executed " + getExecutedCount() + ", rejected " + getRejectedCount()
+                + ", avg wait " + String.format("%.3f", getAvgWaitMs()) + " ms, avg exec " + String.format("%.3f", getAvgExecMs()) + " ms]";
+    }
+
+    private static RejectedExecutionHandler toRejectedExecutionHandler(String rejectionPolicy) {
+        if (CALLER_RUNS_POLICY.equalsIgnoreCase(rejectionPolicy)) {
+            return new CallerRunsPolicy();
+        } else if (ABORT_POLICY.equalsIgnoreCase(rejectionPolicy)) {
+            return new AbortPolicy();
+        } else {
+            throw new IllegalArgumentException("Unsupported rejection policy: " + rejectionPolicy);
+        }
+    }
+
+    private class TimedTask implements Runnable {
+
+        private final Runnable task;
+        private final long createdAt = System.nanoTime();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            totalWaitNanos.addAndGet(startedAt - createdAt);
+            try {
+                task.run();
+            } finally {
+                totalExecNanos.addAndGet(System.nanoTime() - startedAt);
+                executedCount.incrementAndGet();
+            }
+        }
+    }
+}
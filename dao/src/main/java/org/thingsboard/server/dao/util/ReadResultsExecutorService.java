@@ -0,0 +1,75 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared executor for processing results of asynchronous database queries.
+ */
+@Component
+@Slf4j
+public class ReadResultsExecutorService {
+
+    @Value("${database.read_results_executor.pool_size}")
+    private int poolSize;
+
+    @Value("${database.read_results_executor.queue_size}")
+    private int queueSize;
+
+    @Value("${database.read_results_executor.rejection_policy}")
+    private String rejectionPolicy;
+
+    @Value("${database.read_results_executor.stats_interval_ms}")
+    private long statsIntervalMs;
+
+    private InstrumentedThreadPoolExecutor executor;
+    private ScheduledExecutorService statsScheduler;
+
+    @PostConstruct
+    public void init() {
+        executor = new InstrumentedThreadPoolExecutor("db-read-results", poolSize, queueSize, rejectionPolicy);
+        if (statsIntervalMs > 0) {
+            statsScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("read-results-executor-stats").setDaemon(true).build());
+            statsScheduler.scheduleAtFixedRate(() -> log.info("Executor stats: {}", executor.getStats()),
+                    statsIntervalMs, statsIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (statsScheduler != null) {
+            statsScheduler.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public InstrumentedThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+}
@@ -203,6 +203,32 @@ CREATE TABLE IF NOT EXISTS ts_kv (
     CONSTRAINT ts_kv_unq_key UNIQUE (entity_type, entity_id, key, ts)
 );
 
+CREATE TABLE IF NOT EXISTS ts_kv_rollup (
+    entity_type varchar(255) NOT NULL,
+    entity_id varchar(31) NOT NULL,
+    key varchar(255) NOT NULL,
+    granularity varchar(32) NOT NULL,
+    ts bigint NOT NULL,
+    long_cnt bigint NOT NULL,
+    long_sum bigint,
+    long_min bigint,
+    long_max bigint,
+    dbl_cnt bigint NOT NULL,
+    dbl_sum double precision,
+    dbl_min double precision,
+    dbl_max double precision,
+    bool_cnt bigint NOT NULL,
+    bool_min boolean,
+    bool_max boolean,
+    str_cnt bigint NOT NULL,
+    str_min varchar(10000000),
+    str_max varchar(10000000),
+    changed_ts bigint,
+    changed_ttl bigint,
+    rebuilt_ts bigint,
+    CONSTRAINT ts_kv_rollup_unq_key UNIQUE (entity_type, entity_id, key, granularity, ts)
+);
+
 CREATE TABLE IF NOT EXISTS ts_kv_latest (
     entity_type varchar(255) NOT NULL,
     entity_id varchar(31) NOT NULL,
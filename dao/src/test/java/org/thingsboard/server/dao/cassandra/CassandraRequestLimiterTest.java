@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.cassandra;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CassandraRequestLimiterTest {
+
+    @Test
+    public void testQueuedRequestsRunWhenPermitsAreReleased() {
+        CassandraRequestLimiter.Permits permits = new CassandraRequestLimiter.Permits("read", 1, 1, 0, Runnable::run);
+        List<String> executed = new ArrayList<>();
+
+        Assert.assertTrue(permits.tryAcquire());
+        Assert.assertFalse(permits.tryAcquire());
+        Assert.assertTrue(permits.enqueue(() -> executed.add("first")));
+        Assert.assertFalse(permits.enqueue(() -> executed.add("second")));
+        Assert.assertTrue(executed.isEmpty());
+        Assert.assertEquals(1, permits.getQueueLength());
+
+        permits.release();
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals(0, permits.getQueueLength());
+        Assert.assertEquals(1, permits.getInUse());
+        Assert.assertFalse(permits.tryAcquire());
+
+        permits.release();
+        Assert.assertEquals(0, permits.getInUse());
+        Assert.assertEquals(1, permits.getRejectedCount());
+    }
+
+    @Test
+    public void testQueuedRequestsAreIssuedOnDrainExecutor() {
+        List<Runnable> drainTasks = new ArrayList<>();
+        CassandraRequestLimiter.Permits permits = new CassandraRequestLimiter.Permits("write", 2, 10, 0, drainTasks::add);
+        List<String> executed = new ArrayList<>();
+
+        Assert.assertTrue(permits.tryAcquire());
+        Assert.assertTrue(permits.tryAcquire());
+        Assert.assertTrue(permits.enqueue(() -> executed.add("first")));
+        Assert.assertTrue(permits.enqueue(() -> executed.add("second")));
+        Assert.assertTrue(permits.enqueue(() -> executed.add("third")));
+        Assert.assertEquals(1, drainTasks.size());
+
+        permits.release();
+        permits.release();
+        Assert.assertTrue(executed.isEmpty());
+        Assert.assertEquals(1, drainTasks.size());
+
+        drainTasks.remove(0).run();
+        Assert.assertEquals(2, executed.size());
+        Assert.assertEquals(1, permits.getQueueLength());
+        Assert.assertTrue(drainTasks.isEmpty());
+
+        permits.release();
+        Assert.assertEquals(1, drainTasks.size());
+        drainTasks.remove(0).run();
+        Assert.assertEquals(3, executed.size());
+        Assert.assertEquals(2, permits.getInUse());
+    }
+}
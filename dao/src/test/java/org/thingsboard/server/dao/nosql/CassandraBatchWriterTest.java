@@ -0,0 +1,152 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.nosql;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class CassandraBatchWriterTest {
+
+    private final List<Statement> executed = new CopyOnWriteArrayList<>();
+    private final List<SettableFuture<ResultSet>> results = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void before() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void after() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testOnlyLatestVersionOfRowIsWritten() {
+        CassandraBatchWriter<String> writer = createWriter(100, 60000);
+        Statement newer = new SimpleStatement("newer");
+        Statement older = new SimpleStatement("older");
+        Statement other = new SimpleStatement("other");
+        ListenableFuture<Void> f1 = writer.add("device", newer, "temperature", 2L);
+        ListenableFuture<Void> f2 = writer.add("device", older, "temperature", 1L);
+        writer.add("device", other, "humidity", 1L);
+        writer.stop();
+
+        Assert.assertEquals(1, executed.size());
+        List<Statement> statements = new ArrayList<>(((BatchStatement) executed.get(0)).getStatements());
+        Assert.assertEquals(2, statements.size());
+        Assert.assertSame(newer, statements.get(0));
+        Assert.assertSame(other, statements.get(1));
+        Assert.assertFalse(f1.isDone());
+        Assert.assertFalse(f2.isDone());
+    }
+
+    @Test
+    public void testLastAddedStatementOfRowWinsOnSameVersion() {
+        CassandraBatchWriter<String> writer = createWriter(100, 60000);
+        Statement first = new SimpleStatement("first");
+        Statement second = new SimpleStatement("second");
+        writer.add("partition", first, 42L, 0L);
+        writer.add("partition", second, 42L, 0L);
+        writer.stop();
+
+        Assert.assertEquals(1, executed.size());
+        Assert.assertSame(second, executed.get(0));
+    }
+
+    @Test
+    public void testBatchIsSentOnMaxSize() {
+        CassandraBatchWriter<String> writer = createWriter(2, 60000);
+        writer.add("partition", new SimpleStatement("first"));
+        Assert.assertTrue(executed.isEmpty());
+        writer.add("partition", new SimpleStatement("second"));
+
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals(2, ((BatchStatement) executed.get(0)).size());
+    }
+
+    @Test
+    public void testBatchIsSentAfterLinger() throws Exception {
+        CassandraBatchWriter<String> writer = createWriter(100, 50);
+        writer.add("partition", new SimpleStatement("first"));
+        writer.add("partition", new SimpleStatement("second"));
+        writer.add("other", new SimpleStatement("third"));
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (executed.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(2, executed.size());
+    }
+
+    @Test
+    public void testSuccessCompletesAllStatementsOfBatch() throws Exception {
+        CassandraBatchWriter<String> writer = createWriter(2, 60000);
+        ListenableFuture<Void> f1 = writer.add("partition", new SimpleStatement("first"));
+        ListenableFuture<Void> f2 = writer.add("partition", new SimpleStatement("second"));
+        Assert.assertFalse(f1.isDone());
+
+        results.get(0).set(null);
+        Assert.assertNull(f1.get());
+        Assert.assertNull(f2.get());
+    }
+
+    @Test
+    public void testFailureIsPropagatedToAllStatementsOfBatch() throws Exception {
+        CassandraBatchWriter<String> writer = createWriter(2, 60000);
+        ListenableFuture<Void> f1 = writer.add("partition", new SimpleStatement("first"));
+        ListenableFuture<Void> f2 = writer.add("partition", new SimpleStatement("second"));
+        RuntimeException error = new RuntimeException("write timeout");
+
+        results.get(0).setException(error);
+        assertFailedWith(f1, error);
+        assertFailedWith(f2, error);
+    }
+
+    private CassandraBatchWriter<String> createWriter(int maxBatchSize, long lingerMs) {
+        return new CassandraBatchWriter<>(statement -> {
+            executed.add(statement);
+            SettableFuture<ResultSet> result = SettableFuture.create();
+            results.add(result);
+            return result;
+        }, scheduler, maxBatchSize, lingerMs);
+    }
+
+    private static void assertFailedWith(ListenableFuture<Void> future, Throwable error) throws InterruptedException {
+        try {
+            future.get();
+            Assert.fail("Write is expected to fail");
+        } catch (ExecutionException e) {
+            Assert.assertSame(error, e.getCause());
+        }
+    }
+}
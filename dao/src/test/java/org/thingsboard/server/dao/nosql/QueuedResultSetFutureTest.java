@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.nosql;
+
+import com.datastax.driver.core.ResultSet;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QueuedResultSetFutureTest {
+
+    @Test
+    public void testCancelIsPropagatedToIssuedRequest() {
+        QueuedResultSetFuture result = new QueuedResultSetFuture();
+        SettableFuture<ResultSet> issued = SettableFuture.create();
+        result.setFrom(issued);
+
+        Assert.assertTrue(result.cancel(false));
+        Assert.assertTrue(issued.isCancelled());
+    }
+
+    @Test
+    public void testRequestIssuedAfterCancelIsCancelled() {
+        QueuedResultSetFuture result = new QueuedResultSetFuture();
+        Assert.assertTrue(result.cancel(false));
+
+        SettableFuture<ResultSet> issued = SettableFuture.create();
+        result.setFrom(issued);
+        Assert.assertTrue(issued.isCancelled());
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.rule;
+
+import com.datastax.driver.core.utils.UUIDs;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleState;
+import org.thingsboard.server.common.data.rule.RuleMetaData;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BaseSensorThresholdServiceTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private final DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+    private final TenantId tenantId = new TenantId(UUIDs.timeBased());
+    private final RuleId ruleId = new RuleId(UUIDs.timeBased());
+
+    private RuleDao ruleDao;
+    private BaseSensorThresholdService service;
+    private volatile boolean owned = true;
+
+    @Before
+    public void before() throws Exception {
+        ruleDao = mock(RuleDao.class);
+        when(ruleDao.find()).thenReturn(Collections.singletonList(rule(false)));
+        service = new BaseSensorThresholdService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "hysteresis", 0.0);
+        ReflectionTestUtils.setField(service, "debounceCount", 1);
+        ReflectionTestUtils.setField(service, "reloadIntervalMs", 0L);
+        ReflectionTestUtils.setField(service, "ruleDao", ruleDao);
+        service.setOwnershipFilter(entityId -> owned);
+        service.init();
+        // Wait for the initial reload started by init
+        ((ExecutorService) ReflectionTestUtils.getField(service, "executor")).submit(() -> null).get();
+    }
+
+    @After
+    public void after() {
+        service.stop();
+    }
+
+    @Test
+    public void testSlowSensorIsEvaluatedWithoutReload() {
+        service.evaluate(deviceId, Collections.singletonList(temperature(0, 30.0)));
+        verify(ruleDao, timeout(1000)).updateAlarmStatus(ruleId, tenantId, true);
+
+        // The next value arrives hours later, the alarm state kept in memory is still authoritative
+        service.evaluate(deviceId, Collections.singletonList(temperature(3 * HOUR, 20.0)));
+        verify(ruleDao, timeout(1000)).updateAlarmStatus(ruleId, tenantId, false);
+        verify(ruleDao, never()).findById(any(RuleId.class));
+    }
+
+    @Test
+    public void testValueTriggeringReloadIsEvaluatedAfterOwnershipChange() {
+        owned = false;
+        service.invalidateNotOwned();
+        owned = true;
+        // Another node raised the alarm while it owned the device
+        when(ruleDao.findById(ruleId)).thenReturn(rule(true));
+
+        service.evaluate(deviceId, Collections.singletonList(temperature(HOUR, 20.0)));
+
+        verify(ruleDao, timeout(1000)).findById(ruleId);
+        verify(ruleDao, timeout(1000)).updateAlarmStatus(ruleId, tenantId, false);
+        verify(ruleDao, never()).updateAlarmStatus(ruleId, tenantId, true);
+    }
+
+    private RuleMetaData rule(boolean alarmStatus) {
+        RuleMetaData rule = new RuleMetaData(ruleId);
+        rule.setTenantId(tenantId);
+        rule.setState(ComponentLifecycleState.ACTIVE);
+        rule.setDevice_id(deviceId.getId().toString());
+        rule.setSensor_id("temperature");
+        rule.setLower_limit(15.0);
+        rule.setUpper_limit(25.0);
+        rule.setAlarm_status(alarmStatus);
+        return rule;
+    }
+
+    private static BasicTsKvEntry temperature(long ts, double value) {
+        return new BasicTsKvEntry(ts, new DoubleDataEntry("temperature", value));
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.rule;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SensorThresholdStateTest {
+
+    @Test
+    public void testAlarmIsRaisedAndClearedOnTransitionsOnly() {
+        SensorThresholdState state = new SensorThresholdState(15.0, 25.0, null, 0.0, 1);
+        Assert.assertEquals(Boolean.FALSE, state.update(1, 20.0));
+        Assert.assertNull(state.update(2, 21.0));
+        Assert.assertEquals(Boolean.TRUE, state.update(3, 26.0));
+        Assert.assertNull(state.update(4, 14.0));
+        Assert.assertEquals(Boolean.FALSE, state.update(5, 15.0));
+    }
+
+    @Test
+    public void testHysteresis() {
+        SensorThresholdState state = new SensorThresholdState(null, 25.0, false, 1.0, 1);
+        Assert.assertEquals(Boolean.TRUE, state.update(1, 25.5));
+        Assert.assertNull(state.update(2, 24.5));
+        Assert.assertEquals(Boolean.FALSE, state.update(3, 24.0));
+        Assert.assertEquals(Boolean.TRUE, state.update(4, 25.1));
+    }
+
+    @Test
+    public void testDebounce() {
+        SensorThresholdState state = new SensorThresholdState(15.0, 25.0, false, 0.0, 3);
+        Assert.assertNull(state.update(1, 30.0));
+        Assert.assertNull(state.update(2, 30.0));
+        Assert.assertNull(state.update(3, 20.0));
+        Assert.assertNull(state.update(4, 30.0));
+        Assert.assertNull(state.update(5, 10.0));
+        Assert.assertEquals(Boolean.TRUE, state.update(6, 30.0));
+        Assert.assertEquals(Boolean.TRUE, state.getAlarm());
+    }
+
+    @Test
+    public void testOutdatedValuesAreIgnored() {
+        SensorThresholdState state = new SensorThresholdState(15.0, 25.0, false, 0.0, 1);
+        Assert.assertNull(state.update(10, 20.0));
+        Assert.assertNull(state.update(5, 30.0));
+        Assert.assertEquals(Boolean.FALSE, state.getAlarm());
+    }
+}
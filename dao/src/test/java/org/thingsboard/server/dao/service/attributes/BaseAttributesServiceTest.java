@@ -26,9 +26,11 @@ import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
 import org.thingsboard.server.common.data.kv.KvEntry;
 import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.dao.attributes.AttributesCache;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.service.AbstractServiceTest;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -41,6 +43,9 @@ public abstract class BaseAttributesServiceTest extends AbstractServiceTest {
     @Autowired
     private AttributesService attributesService;
 
+    @Autowired
+    private AttributesCache attributesCache;
+
     @Before
     public void before() {
     }
@@ -100,4 +105,69 @@ public abstract class BaseAttributesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(attrBNew, saved.get(1));
     }
 
+    @Test
+    public void findByKeys() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+        AttributeKvEntry attrA = new BaseAttributeKvEntry(new StringDataEntry("A", "value1"), 42L);
+        AttributeKvEntry attrB = new BaseAttributeKvEntry(new StringDataEntry("B", "value2"), 42L);
+        AttributeKvEntry attrC = new BaseAttributeKvEntry(new StringDataEntry("C", "value3"), 42L);
+        AttributeKvEntry attrD = new BaseAttributeKvEntry(new StringDataEntry("D", "value4"), 42L);
+        AttributeKvEntry attrE = new BaseAttributeKvEntry(new StringDataEntry("E", "value5"), 42L);
+
+        attributesService.save(deviceId, DataConstants.CLIENT_SCOPE, Arrays.asList(attrA, attrB, attrC, attrD, attrE)).get();
+
+        List<AttributeKvEntry> found = attributesService.find(deviceId, DataConstants.CLIENT_SCOPE, Arrays.asList("C", "X", "A")).get();
+        Assert.assertEquals(Arrays.asList(attrC, attrA), found);
+
+        found = attributesService.find(deviceId, DataConstants.CLIENT_SCOPE, Arrays.asList("E", "B", "X", "D", "A")).get();
+        Assert.assertEquals(Arrays.asList(attrE, attrB, attrD, attrA), found);
+
+        found = attributesService.find(deviceId, DataConstants.SERVER_SCOPE, Arrays.asList("A", "B")).get();
+        Assert.assertTrue(found.isEmpty());
+    }
+
+    @Test
+    public void findFromCache() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+        AttributeKvEntry attrA = new BaseAttributeKvEntry(new StringDataEntry("A", "value1"), 42L);
+        AttributeKvEntry attrB = new BaseAttributeKvEntry(new StringDataEntry("B", "value2"), 42L);
+        attributesService.save(deviceId, DataConstants.SHARED_SCOPE, Arrays.asList(attrA, attrB)).get();
+
+        List<AttributeKvEntry> found = attributesService.findAll(deviceId, DataConstants.SHARED_SCOPE).get();
+        Assert.assertEquals(2, found.size());
+
+        long hits = attributesCache.getHitCount();
+        Assert.assertEquals(2, attributesService.findAll(deviceId, DataConstants.SHARED_SCOPE).get().size());
+        Assert.assertEquals(Optional.of(attrB), attributesService.find(deviceId, DataConstants.SHARED_SCOPE, "B").get());
+        Assert.assertFalse(attributesService.find(deviceId, DataConstants.SHARED_SCOPE, "X").get().isPresent());
+        Assert.assertEquals(hits + 3, attributesCache.getHitCount());
+
+        attributesService.removeAll(deviceId, DataConstants.SHARED_SCOPE, Collections.singletonList("A")).get();
+        AttributeKvEntry attrBNew = new BaseAttributeKvEntry(new StringDataEntry("B", "value3"), 73L);
+        attributesService.save(deviceId, DataConstants.SHARED_SCOPE, Collections.singletonList(attrBNew)).get();
+
+        found = attributesService.findAll(deviceId, DataConstants.SHARED_SCOPE).get();
+        Assert.assertEquals(Collections.singletonList(attrBNew), found);
+    }
+
+    @Test
+    public void cacheKeepsValueUpdatedAfterRemoval() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+        AttributeKvEntry attrA = new BaseAttributeKvEntry(new StringDataEntry("A", "value1"), 42L);
+        attributesService.save(deviceId, DataConstants.SERVER_SCOPE, Collections.singletonList(attrA)).get();
+        Assert.assertEquals(Optional.of(attrA), attributesService.find(deviceId, DataConstants.SERVER_SCOPE, "A").get());
+
+        AttributeKvEntry attrANew = new BaseAttributeKvEntry(new StringDataEntry("A", "value2"), 73L);
+        attributesCache.put(deviceId, DataConstants.SERVER_SCOPE, Collections.singletonList(attrANew));
+        attributesCache.remove(deviceId, DataConstants.SERVER_SCOPE, Collections.singletonList("A"), 50L);
+        Assert.assertEquals(Optional.of(attrANew), attributesService.find(deviceId, DataConstants.SERVER_SCOPE, "A").get());
+
+        attributesCache.remove(deviceId, DataConstants.SERVER_SCOPE, Collections.singletonList("A"), 80L);
+        attributesCache.put(deviceId, DataConstants.SERVER_SCOPE, Collections.singletonList(attrA));
+        Assert.assertFalse(attributesService.find(deviceId, DataConstants.SERVER_SCOPE, "A").get().isPresent());
+    }
+
 }
@@ -19,15 +19,19 @@ import com.datastax.driver.core.utils.UUIDs;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.kv.*;
 import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.timeseries.LatestTsKvCache;
+import org.thingsboard.server.dao.timeseries.TsKvRollupService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -46,6 +50,12 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
 
     private static final long TS = 42L;
 
+    @Autowired
+    private TsKvRollupService rollupService;
+
+    @Autowired
+    private LatestTsKvCache latestCache;
+
     KvEntry stringKvEntry = new StringDataEntry(STRING_KEY, "value");
     KvEntry longKvEntry = new LongDataEntry(LONG_KEY, Long.MAX_VALUE);
     KvEntry doubleKvEntry = new DoubleDataEntry(DOUBLE_KEY, Double.MAX_VALUE);
@@ -92,6 +102,25 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(toTsEntry(TS, stringKvEntry), entries.get(0));
     }
 
+    @Test
+    public void testFindLatestFromCache() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+
+        saveEntries(deviceId, TS - 1);
+        saveEntries(deviceId, TS);
+
+        long hits = latestCache.getHitCount();
+        List<TsKvEntry> entries = tsService.findLatest(deviceId, Arrays.asList(STRING_KEY, LONG_KEY)).get();
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals(toTsEntry(TS, stringKvEntry), entries.get(0));
+        Assert.assertEquals(toTsEntry(TS, longKvEntry), entries.get(1));
+        Assert.assertEquals(hits + 2, latestCache.getHitCount());
+
+        entries = tsService.findLatest(deviceId, Collections.singleton("unknownKey")).get();
+        Assert.assertEquals(1, entries.size());
+        Assert.assertNull(entries.get(0).getValue());
+    }
+
     @Test
     public void testFindDeviceTsData() throws Exception {
         DeviceId deviceId = new DeviceId(UUIDs.timeBased());
@@ -183,6 +212,65 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
         assertEquals(java.util.Optional.of(2L), list.get(2).getLongValue());
     }
 
+    @Test
+    public void testFindDeviceTsDataFromMultiplePartitions() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+        long hour = TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i < 5; i++) {
+            save(deviceId, i * hour + 1000, i * 10);
+            save(deviceId, i * hour + 2000, i * 10 + 1);
+        }
+
+        List<TsKvEntry> list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, 0,
+                5 * hour, hour, 3, Aggregation.NONE))).get();
+        assertEquals(3, list.size());
+        assertEquals(4 * hour + 2000, list.get(0).getTs());
+        assertEquals(4 * hour + 1000, list.get(1).getTs());
+        assertEquals(3 * hour + 2000, list.get(2).getTs());
+        assertEquals(java.util.Optional.of(31L), list.get(2).getLongValue());
+    }
+
+    @Test
+    public void testFindDeviceTsDataFromRollups() throws Exception {
+        DeviceId deviceId = new DeviceId(UUIDs.timeBased());
+        long hour = TimeUnit.HOURS.toMillis(1);
+        for (int i = 0; i < 3; i++) {
+            save(deviceId, i * hour + 1000, i * 10);
+            save(deviceId, i * hour + 2000, i * 10 + 1);
+        }
+        rollupService.flush().get();
+
+        List<TsKvEntry> list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, 0,
+                3 * hour, hour, 3, Aggregation.SUM))).get();
+        assertEquals(3, list.size());
+        assertEquals(hour / 2, list.get(0).getTs());
+        assertEquals(java.util.Optional.of(1L), list.get(0).getLongValue());
+        assertEquals(java.util.Optional.of(21L), list.get(1).getLongValue());
+        assertEquals(java.util.Optional.of(41L), list.get(2).getLongValue());
+
+        save(deviceId, 2 * hour + 1000, 50);
+        save(deviceId, 2 * hour + 3000, 100);
+        rollupService.flush().get();
+
+        list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, 0,
+                3 * hour, hour, 3, Aggregation.SUM))).get();
+        assertEquals(3, list.size());
+        assertEquals(java.util.Optional.of(1L), list.get(0).getLongValue());
+        assertEquals(java.util.Optional.of(171L), list.get(2).getLongValue());
+
+        list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, 0,
+                3 * hour, hour, 3, Aggregation.MAX))).get();
+        assertEquals(3, list.size());
+        assertEquals(java.util.Optional.of(1L), list.get(0).getLongValue());
+        assertEquals(java.util.Optional.of(100L), list.get(2).getLongValue());
+
+        list = tsService.findAll(deviceId, Collections.singletonList(new BaseTsKvQuery(LONG_KEY, 0,
+                3 * hour, hour, 3, Aggregation.COUNT))).get();
+        assertEquals(3, list.size());
+        assertEquals(java.util.Optional.of(2L), list.get(0).getLongValue());
+        assertEquals(java.util.Optional.of(3L), list.get(2).getLongValue());
+    }
+
     private TsKvEntry save(DeviceId deviceId, long ts, long value) throws Exception {
         TsKvEntry entry = new BasicTsKvEntry(ts, new LongDataEntry(LONG_KEY, value));
         tsService.save(deviceId, entry).get();
@@ -15,9 +15,53 @@
  */
 package org.thingsboard.server.dao.service.timeseries.nosql;
 
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.dao.sensor.SensorSnapshotService;
 import org.thingsboard.server.dao.service.DaoNoSqlTest;
 import org.thingsboard.server.dao.service.timeseries.BaseTimeseriesServiceTest;
 
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
 @DaoNoSqlTest
 public class TimeseriesServiceNoSqlTest extends BaseTimeseriesServiceTest {
+
+    @Autowired
+    private SensorSnapshotService sensorSnapshotService;
+
+    @Test
+    public void testSaveUpdatesSensorSnapshot() throws Exception {
+        Tenant tenant = new Tenant();
+        tenant.setTitle("My tenant");
+        tenant = tenantService.saveTenant(tenant);
+        Device device = new Device();
+        device.setTenantId(tenant.getId());
+        device.setName("My device");
+        device.setType("default");
+        device = deviceService.saveDevice(device);
+        try {
+            tsService.save(device.getId(), Arrays.asList(
+                    new BasicTsKvEntry(42L, new LongDataEntry("longKey", 0L)),
+                    new BasicTsKvEntry(42L, new StringDataEntry("stringKey", "value"))), 0).get();
+            tsService.save(device.getId(), Collections.singletonList(
+                    new BasicTsKvEntry(43L, new LongDataEntry("longKey", 1L))), 0).get();
+            sensorSnapshotService.flush();
+
+            Device found = deviceService.findDeviceById(device.getId());
+            assertNotNull(found.getSensor());
+            assertEquals(1L, found.getSensor().get("longKey").get("sensor_value").asLong());
+            assertEquals("value", found.getSensor().get("stringKey").get("sensor_value").asText());
+        } finally {
+            tenantService.deleteTenant(tenant.getId());
+        }
+    }
 }
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class JdbcBatchWriterTest {
+
+    @Test
+    public void testFailedBatchIsWrittenOneByOne() throws Exception {
+        List<String> written = new CopyOnWriteArrayList<>();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+            @Override
+            public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+                int before = written.size();
+                try {
+                    for (int i = 0; i < pss.getBatchSize(); i++) {
+                        pss.setValues(null, i);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                if (written.subList(before, written.size()).contains("bad")) {
+                    throw new DataIntegrityViolationException("batch");
+                }
+                return new int[pss.getBatchSize()];
+            }
+
+            @Override
+            public int update(String sql, PreparedStatementSetter pss) {
+                try {
+                    pss.setValues(null);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                if (written.get(written.size() - 1).equals("bad")) {
+                    throw new DataIntegrityViolationException("row");
+                }
+                return 1;
+            }
+        };
+        JdbcBatchWriter<String> writer = new JdbcBatchWriter<>("test", jdbcTemplate, "sql", (ps, e) -> written.add(e), 10, 50, 100);
+        ListenableFuture<Void> good = writer.add("good");
+        ListenableFuture<Void> bad = writer.add("bad");
+        writer.stop();
+
+        good.get();
+        assertFailed(bad);
+    }
+
+    @Test
+    public void testAddFailsWhenQueueIsFull() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate() {
+            @Override
+            public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+                executing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new int[pss.getBatchSize()];
+            }
+        };
+        JdbcBatchWriter<String> writer = new JdbcBatchWriter<>("test", jdbcTemplate, "sql", (ps, e) -> {}, 1, 0, 1);
+        ListenableFuture<Void> first = writer.add("first");
+        Assert.assertTrue(executing.await(5, TimeUnit.SECONDS));
+        ListenableFuture<Void> queued = writer.add("queued");
+        ListenableFuture<Void> rejected = writer.add("rejected");
+
+        assertFailed(rejected);
+        Assert.assertFalse(queued.isDone());
+        release.countDown();
+        writer.stop();
+        first.get();
+        queued.get();
+    }
+
+    private static void assertFailed(ListenableFuture<Void> future) throws InterruptedException {
+        try {
+            future.get();
+            Assert.fail("Future should fail");
+        } catch (ExecutionException e) {
+            // expected
+        }
+    }
+}
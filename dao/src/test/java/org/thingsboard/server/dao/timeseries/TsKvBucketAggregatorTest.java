@@ -0,0 +1,74 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.*;
+
+import java.util.List;
+import java.util.Optional;
+
+public class TsKvBucketAggregatorTest {
+
+    private static final String KEY = "temperature";
+
+    @Test
+    public void testIntervalBounds() {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(KEY, Aggregation.COUNT, 0, 50000, 20000);
+        Assert.assertEquals(60000, aggregator.getEndTs());
+        aggregator.add(0, new LongDataEntry(KEY, 1L));
+        aggregator.add(20000, new LongDataEntry(KEY, 1L));
+        aggregator.add(20001, new LongDataEntry(KEY, 1L));
+        aggregator.add(60000, new LongDataEntry(KEY, 1L));
+        aggregator.add(60001, new LongDataEntry(KEY, 1L));
+
+        List<TsKvEntry> result = aggregator.getResult();
+        Assert.assertEquals(3, result.size());
+        Assert.assertEquals(10000, result.get(0).getTs());
+        Assert.assertEquals(Optional.of(1L), result.get(0).getLongValue());
+        Assert.assertEquals(30000, result.get(1).getTs());
+        Assert.assertEquals(Optional.of(1L), result.get(1).getLongValue());
+        Assert.assertEquals(50000, result.get(2).getTs());
+        Assert.assertEquals(Optional.of(1L), result.get(2).getLongValue());
+    }
+
+    @Test
+    public void testEmptyIntervalsAreSkipped() {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(KEY, Aggregation.MAX, 0, 60000, 20000);
+        aggregator.add(45000, new DoubleDataEntry(KEY, 1.5));
+        aggregator.add(55000, new DoubleDataEntry(KEY, 2.5));
+
+        List<TsKvEntry> result = aggregator.getResult();
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals(50000, result.get(0).getTs());
+        Assert.assertEquals(Optional.of(2.5), result.get(0).getDoubleValue());
+    }
+
+    @Test
+    public void testAvgIgnoresNonNumericValues() {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(KEY, Aggregation.AVG, 0, 20000, 20000);
+        aggregator.add(5000, new StringDataEntry(KEY, "a"));
+
+        Assert.assertTrue(aggregator.getResult().isEmpty());
+
+        aggregator = new TsKvBucketAggregator(KEY, Aggregation.MIN, 0, 20000, 20000);
+        aggregator.add(5000, new StringDataEntry(KEY, "b"));
+        aggregator.add(6000, new StringDataEntry(KEY, "a"));
+
+        Assert.assertEquals(Optional.of("a"), aggregator.getResult().get(0).getStrValue());
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.datastax.driver.core.utils.UUIDs;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+public class TsKvPartitionsCacheTest {
+
+    private TsKvPartitionsCache cache;
+    private TsKvPartitionKey key;
+
+    @Before
+    public void before() {
+        cache = new TsKvPartitionsCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 10L);
+        cache.init();
+        key = new TsKvPartitionKey("DEVICE", UUIDs.timeBased(), "temperature", 0L);
+    }
+
+    @Test
+    public void testRegisterWithoutTtl() {
+        Assert.assertFalse(cache.isRegistered(key, 0));
+        cache.register(key, 0, System.currentTimeMillis());
+        Assert.assertTrue(cache.isRegistered(key, 0));
+        Assert.assertTrue(cache.isRegistered(key, 60));
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testRegisterWithTtl() {
+        long now = System.currentTimeMillis();
+        cache.register(key, 60, now);
+        Assert.assertEquals(120, cache.getPartitionTtl(60));
+        Assert.assertTrue(cache.isRegistered(key, 60));
+        Assert.assertFalse(cache.isRegistered(key, 0));
+
+        cache.register(key, 60, now - TimeUnit.SECONDS.toMillis(61));
+        Assert.assertFalse(cache.isRegistered(key, 60));
+    }
+}
@@ -45,13 +45,15 @@ public class DeviceAttributesEventNotificationMsg implements ToDeviceActorNotifi
     private final List<AttributeKvEntry> values;
     @Getter
     private final boolean deleted;
+    @Getter
+    private final long deleteTs;
 
     public static DeviceAttributesEventNotificationMsg onUpdate(TenantId tenantId, DeviceId deviceId, String scope, List<AttributeKvEntry> values) {
-        return new DeviceAttributesEventNotificationMsg(tenantId, deviceId, null, scope, values, false);
+        return new DeviceAttributesEventNotificationMsg(tenantId, deviceId, null, scope, values, false, 0L);
     }
 
-    public static DeviceAttributesEventNotificationMsg onDelete(TenantId tenantId, DeviceId deviceId, Set<AttributeKey> keys) {
-        return new DeviceAttributesEventNotificationMsg(tenantId, deviceId, keys, null, null, true);
+    public static DeviceAttributesEventNotificationMsg onDelete(TenantId tenantId, DeviceId deviceId, Set<AttributeKey> keys, long deleteTs) {
+        return new DeviceAttributesEventNotificationMsg(tenantId, deviceId, keys, null, null, true, deleteTs);
     }
 
 }
@@ -30,7 +30,7 @@ import javax.script.ScriptException;
 public abstract class BasicJsFilter implements RuleFilter<JsFilterConfiguration> {
 
     protected JsFilterConfiguration configuration;
-    protected NashornJsEvaluator evaluator;
+    protected JsEvaluator evaluator;
 
     @Override
     public void init(JsFilterConfiguration configuration) {
@@ -66,7 +66,7 @@ public abstract class BasicJsFilter implements RuleFilter<JsFilterConfiguration>
     }
 
     private void initEvaluator(JsFilterConfiguration configuration) {
-        evaluator = new NashornJsEvaluator(configuration.getFilter());
+        evaluator = JsEvaluator.create(configuration.getFilter());
     }
 
     private void destroyEvaluator() {
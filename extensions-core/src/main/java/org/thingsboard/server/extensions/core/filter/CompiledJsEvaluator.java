@@ -0,0 +1,84 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.filter;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.script.Bindings;
+import javax.script.ScriptException;
+import java.util.Optional;
+
+/**
+ * Evaluates simple boolean expressions like {@code temperature > 30 && cs.mode == 'auto'} without the script engine.
+ * The expression is compiled to Java lambdas following the JavaScript semantics of the supported operators.
+ * Values the compiled code can't handle the same way as JavaScript, like missing variables,
+ * are evaluated by Nashorn, which is compiled on first use.
+ */
+@Slf4j
+public class CompiledJsEvaluator implements JsEvaluator {
+
+    private final String script;
+    private JsExpression expression;
+    private NashornJsEvaluator fallback;
+
+    private CompiledJsEvaluator(String script, JsExpression expression) {
+        this.script = script;
+        this.expression = expression;
+    }
+
+    /**
+     * @return empty if the script is not a supported expression
+     */
+    public static Optional<JsEvaluator> compile(String script) {
+        try {
+            return Optional.of(new CompiledJsEvaluator(script, JsExpressionCompiler.compile(script)));
+        } catch (JsExpressionCompiler.UnsupportedExpressionException e) {
+            log.debug("Script is evaluated by Nashorn: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Boolean execute(Bindings bindings) throws ScriptException {
+        Object eval;
+        try {
+            eval = expression.eval(bindings);
+        } catch (JsExpressionCompiler.UnsupportedExpressionException e) {
+            return getFallback().execute(bindings);
+        }
+        if (eval instanceof Boolean) {
+            return (Boolean) eval;
+        } else {
+            log.warn("Wrong result type: {}", eval);
+            throw new ScriptException("Wrong result type: " + eval);
+        }
+    }
+
+    private NashornJsEvaluator getFallback() {
+        if (fallback == null) {
+            fallback = new NashornJsEvaluator(script);
+        }
+        return fallback;
+    }
+
+    @Override
+    public void destroy() {
+        expression = null;
+        if (fallback != null) {
+            fallback.destroy();
+        }
+    }
+}
@@ -39,12 +39,12 @@ public class DeviceAttributesFilter extends BasicJsFilter {
     }
 
     private Bindings toBindings(DeviceAttributes attributes, FromDeviceMsg msg) {
-        Bindings bindings = NashornJsEvaluator.getAttributeBindings(attributes);
+        LazyAttributeBindings bindings = new LazyAttributeBindings(attributes);
 
         if (msg != null) {
             switch (msg.getMsgType()) {
                 case POST_ATTRIBUTES_REQUEST:
-                    bindings = NashornJsEvaluator.updateBindings(bindings, (UpdateAttributesRequest) msg);
+                    bindings.withAttributes((UpdateAttributesRequest) msg);
                     break;
             }
         }
@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.filter;
+
+import javax.script.Bindings;
+import javax.script.ScriptException;
+
+/**
+ * Boolean script evaluated against attribute and telemetry bindings.
+ */
+public interface JsEvaluator {
+
+    Boolean execute(Bindings bindings) throws ScriptException;
+
+    void destroy();
+
+    /**
+     * Compiles simple expressions to Java code and uses Nashorn for other scripts.
+     */
+    static JsEvaluator create(String script) {
+        return CompiledJsEvaluator.compile(script).orElseGet(() -> new NashornJsEvaluator(script));
+    }
+}
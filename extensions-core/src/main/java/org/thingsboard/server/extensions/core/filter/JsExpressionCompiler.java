@@ -0,0 +1,607 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.filter;
+
+import javax.script.Bindings;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles a single JavaScript expression built of literals, variables, property access, arithmetic,
+ * comparison and logical operators and {@code typeof} to a tree of Java lambdas.
+ * <p>
+ * Anything else, like function calls, assignments or several statements, fails the compilation.
+ * Evaluation fails with {@link UnsupportedExpressionException} for values the compiled code can't
+ * handle the same way as Nashorn does, like unknown variables, missing map keys and Java objects.
+ */
+final class JsExpressionCompiler {
+
+    static final Object UNDEFINED = new Object() {
+        @Override
+        public String toString() {
+            return "undefined";
+        }
+    };
+
+    private static final Set<String> RESERVED_WORDS = new HashSet<>(Arrays.asList(
+            "break", "case", "catch", "class", "const", "continue", "debugger", "default", "delete", "do", "else",
+            "export", "extends", "finally", "for", "function", "if", "import", "in", "instanceof", "let", "new",
+            "return", "super", "switch", "this", "throw", "try", "var", "void", "while", "with", "yield"));
+
+    private static final String[] PUNCTUATORS = {"===", "!==", "==", "!=", "<=", ">=", "&&", "||",
+            "(", ")", ".", "[", "]", "!", "<", ">", "+", "-", "*", "/", "%", ";"};
+
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("((0|[1-9]\\d*)(\\.\\d*)?|\\.\\d+)([eE][+-]?\\d+)?");
+    private static final Pattern NUMERIC_STRING = Pattern.compile("[+-]?(\\d+(\\.\\d*)?|\\.\\d+)([eE][+-]?\\d+)?");
+
+    private enum TokenType {
+        NUMBER, STRING, IDENTIFIER, PUNCTUATOR, END
+    }
+
+    private final String script;
+    private int pos;
+    private TokenType tokenType;
+    private String tokenText;
+    private Object tokenValue;
+
+    private JsExpressionCompiler(String script) {
+        this.script = script;
+    }
+
+    static JsExpression compile(String script) {
+        if (script == null) {
+            throw new UnsupportedExpressionException("Empty script");
+        }
+        JsExpressionCompiler compiler = new JsExpressionCompiler(script);
+        compiler.next();
+        JsExpression expression = compiler.parseOr();
+        if (compiler.isPunctuator(";")) {
+            compiler.next();
+        }
+        if (compiler.tokenType != TokenType.END) {
+            throw new UnsupportedExpressionException("Unexpected token: " + compiler.tokenText);
+        }
+        return expression;
+    }
+
+    // Parser
+
+    private JsExpression parseOr() {
+        JsExpression left = parseAnd();
+        while (isPunctuator("||")) {
+            next();
+            JsExpression l = left;
+            JsExpression r = parseAnd();
+            left = bindings -> {
+                Object value = l.eval(bindings);
+                return toBoolean(value) ? value : r.eval(bindings);
+            };
+        }
+        return left;
+    }
+
+    private JsExpression parseAnd() {
+        JsExpression left = parseEquality();
+        while (isPunctuator("&&")) {
+            next();
+            JsExpression l = left;
+            JsExpression r = parseEquality();
+            left = bindings -> {
+                Object value = l.eval(bindings);
+                return toBoolean(value) ? r.eval(bindings) : value;
+            };
+        }
+        return left;
+    }
+
+    private JsExpression parseEquality() {
+        JsExpression left = parseRelational();
+        while (isPunctuator("==") || isPunctuator("!=") || isPunctuator("===") || isPunctuator("!==")) {
+            String operator = tokenText;
+            next();
+            JsExpression l = left;
+            JsExpression r = parseRelational();
+            switch (operator) {
+                case "==":
+                    left = bindings -> looseEquals(l.eval(bindings), r.eval(bindings));
+                    break;
+                case "!=":
+                    left = bindings -> !looseEquals(l.eval(bindings), r.eval(bindings));
+                    break;
+                case "===":
+                    left = bindings -> strictEquals(l.eval(bindings), r.eval(bindings));
+                    break;
+                default:
+                    left = bindings -> !strictEquals(l.eval(bindings), r.eval(bindings));
+            }
+        }
+        return left;
+    }
+
+    private JsExpression parseRelational() {
+        JsExpression left = parseAdditive();
+        while (isPunctuator("<") || isPunctuator("<=") || isPunctuator(">") || isPunctuator(">=")) {
+            String operator = tokenText;
+            next();
+            JsExpression l = left;
+            JsExpression r = parseAdditive();
+            left = bindings -> compare(l.eval(bindings), r.eval(bindings), operator);
+        }
+        return left;
+    }
+
+    private JsExpression parseAdditive() {
+        JsExpression left = parseMultiplicative();
+        while (isPunctuator("+") || isPunctuator("-")) {
+            String operator = tokenText;
+            next();
+            JsExpression l = left;
+            JsExpression r = parseMultiplicative();
+            if ("+".equals(operator)) {
+                left = bindings -> add(l.eval(bindings), r.eval(bindings));
+            } else {
+                left = bindings -> toNumber(l.eval(bindings)) - toNumber(r.eval(bindings));
+            }
+        }
+        return left;
+    }
+
+    private JsExpression parseMultiplicative() {
+        JsExpression left = parseUnary();
+        while (isPunctuator("*") || isPunctuator("/") || isPunctuator("%")) {
+            String operator = tokenText;
+            next();
+            JsExpression l = left;
+            JsExpression r = parseUnary();
+            switch (operator) {
+                case "*":
+                    left = bindings -> toNumber(l.eval(bindings)) * toNumber(r.eval(bindings));
+                    break;
+                case "/":
+                    left = bindings -> toNumber(l.eval(bindings)) / toNumber(r.eval(bindings));
+                    break;
+                default:
+                    left = bindings -> toNumber(l.eval(bindings)) % toNumber(r.eval(bindings));
+            }
+        }
+        return left;
+    }
+
+    private JsExpression parseUnary() {
+        if (isPunctuator("!")) {
+            next();
+            JsExpression operand = parseUnary();
+            return bindings -> !toBoolean(operand.eval(bindings));
+        } else if (isPunctuator("-")) {
+            next();
+            JsExpression operand = parseUnary();
+            return bindings -> -toNumber(operand.eval(bindings));
+        } else if (isPunctuator("+")) {
+            next();
+            JsExpression operand = parseUnary();
+            return bindings -> toNumber(operand.eval(bindings));
+        } else if (tokenType == TokenType.IDENTIFIER && "typeof".equals(tokenText)) {
+            next();
+            JsExpression operand = parseUnary();
+            if (operand instanceof Variable) {
+                Variable variable = (Variable) operand;
+                return bindings -> typeOf(variable.evalOrUndefined(bindings));
+            } else {
+                return bindings -> typeOf(operand.eval(bindings));
+            }
+        } else {
+            return parsePostfix();
+        }
+    }
+
+    private JsExpression parsePostfix() {
+        JsExpression expression = parsePrimary();
+        while (true) {
+            String property;
+            if (isPunctuator(".")) {
+                next();
+                if (tokenType != TokenType.IDENTIFIER) {
+                    throw new UnsupportedExpressionException("Property name expected");
+                }
+                property = tokenText;
+                next();
+            } else if (isPunctuator("[")) {
+                next();
+                if (tokenType != TokenType.STRING) {
+                    throw new UnsupportedExpressionException("Only string literals are supported as property names");
+                }
+                property = (String) tokenValue;
+                next();
+                expect("]");
+            } else {
+                return expression;
+            }
+            JsExpression target = expression;
+            expression = bindings -> getProperty(target.eval(bindings), property);
+        }
+    }
+
+    private JsExpression parsePrimary() {
+        switch (tokenType) {
+            case NUMBER:
+            case STRING:
+                Object value = tokenValue;
+                next();
+                return bindings -> value;
+            case IDENTIFIER:
+                String name = tokenText;
+                next();
+                switch (name) {
+                    case "true":
+                        return bindings -> Boolean.TRUE;
+                    case "false":
+                        return bindings -> Boolean.FALSE;
+                    case "null":
+                        return bindings -> null;
+                    case "typeof":
+                        throw new UnsupportedExpressionException("Unexpected typeof");
+                }
+                if (RESERVED_WORDS.contains(name)) {
+                    throw new UnsupportedExpressionException("Unsupported keyword: " + name);
+                }
+                if (isPunctuator("(")) {
+                    throw new UnsupportedExpressionException("Function calls are not supported");
+                }
+                return new Variable(name);
+            case PUNCTUATOR:
+                if (isPunctuator("(")) {
+                    next();
+                    JsExpression expression = parseOr();
+                    expect(")");
+                    if (isPunctuator("(")) {
+                        throw new UnsupportedExpressionException("Function calls are not supported");
+                    }
+                    return expression;
+                }
+            default:
+                throw new UnsupportedExpressionException("Unexpected token: " + tokenText);
+        }
+    }
+
+    private void expect(String punctuator) {
+        if (!isPunctuator(punctuator)) {
+            throw new UnsupportedExpressionException("Expected " + punctuator + " but found " + tokenText);
+        }
+        next();
+    }
+
+    private boolean isPunctuator(String punctuator) {
+        return tokenType == TokenType.PUNCTUATOR && punctuator.equals(tokenText);
+    }
+
+    // Tokenizer
+
+    private void next() {
+        while (pos < script.length() && Character.isWhitespace(script.charAt(pos))) {
+            pos++;
+        }
+        if (pos >= script.length()) {
+            tokenType = TokenType.END;
+            tokenText = "end of script";
+            tokenValue = null;
+            return;
+        }
+        char c = script.charAt(pos);
+        if (Character.isDigit(c) || (c == '.' && pos + 1 < script.length() && Character.isDigit(script.charAt(pos + 1)))) {
+            readNumber();
+        } else if (c == '\'' || c == '"') {
+            readString(c);
+        } else if (Character.isJavaIdentifierStart(c)) {
+            int start = pos;
+            while (pos < script.length() && Character.isJavaIdentifierPart(script.charAt(pos))) {
+                pos++;
+            }
+            tokenType = TokenType.IDENTIFIER;
+            tokenText = script.substring(start, pos);
+            tokenValue = null;
+        } else {
+            for (String punctuator : PUNCTUATORS) {
+                if (script.startsWith(punctuator, pos)) {
+                    pos += punctuator.length();
+                    tokenType = TokenType.PUNCTUATOR;
+                    tokenText = punctuator;
+                    tokenValue = null;
+                    return;
+                }
+            }
+            throw new UnsupportedExpressionException("Unsupported character: " + c);
+        }
+    }
+
+    private void readNumber() {
+        Matcher matcher = NUMBER_LITERAL.matcher(script).region(pos, script.length());
+        if (!matcher.lookingAt()) {
+            throw new UnsupportedExpressionException("Unsupported number literal");
+        }
+        int end = matcher.end();
+        if (end < script.length() && (Character.isJavaIdentifierPart(script.charAt(end)) || script.charAt(end) == '.')) {
+            throw new UnsupportedExpressionException("Unsupported number literal");
+        }
+        tokenType = TokenType.NUMBER;
+        tokenText = script.substring(pos, end);
+        tokenValue = Double.parseDouble(tokenText);
+        pos = end;
+    }
+
+    private void readString(char quote) {
+        StringBuilder value = new StringBuilder();
+        int start = pos++;
+        while (true) {
+            if (pos >= script.length()) {
+                throw new UnsupportedExpressionException("Unterminated string literal");
+            }
+            char c = script.charAt(pos++);
+            if (c == quote) {
+                break;
+            } else if (c == '\\') {
+                if (pos >= script.length()) {
+                    throw new UnsupportedExpressionException("Unterminated string literal");
+                }
+                char escaped = script.charAt(pos++);
+                switch (escaped) {
+                    case '\\':
+                    case '\'':
+                    case '"':
+                        value.append(escaped);
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    default:
+                        throw new UnsupportedExpressionException("Unsupported escape sequence: \\" + escaped);
+                }
+            } else if (c == '\n' || c == '\r') {
+                throw new UnsupportedExpressionException("Unterminated string literal");
+            } else {
+                value.append(c);
+            }
+        }
+        tokenType = TokenType.STRING;
+        tokenText = script.substring(start, pos);
+        tokenValue = value.toString();
+    }
+
+    // Runtime
+
+    private static final class Variable implements JsExpression {
+
+        private final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object eval(Bindings bindings) {
+            Object value = evalOrUndefined(bindings);
+            if (value == UNDEFINED && !"undefined".equals(name)) {
+                throw new UnsupportedExpressionException("Unknown variable: " + name);
+            }
+            return value;
+        }
+
+        Object evalOrUndefined(Bindings bindings) {
+            if (bindings.containsKey(name)) {
+                return bindings.get(name);
+            }
+            switch (name) {
+                case "NaN":
+                    return Double.NaN;
+                case "Infinity":
+                    return Double.POSITIVE_INFINITY;
+                default:
+                    return UNDEFINED;
+            }
+        }
+    }
+
+    private static Object getProperty(Object target, String property) {
+        if (target instanceof Map && ((Map<?, ?>) target).containsKey(property)) {
+            return ((Map<?, ?>) target).get(property);
+        }
+        throw new UnsupportedExpressionException("Unsupported property access: " + property);
+    }
+
+    /**
+     * Nashorn versions differ in whether java.lang.Long behaves as a number or as a Java object,
+     * so longs are handled only by operators that give the same result either way.
+     */
+    private static boolean isNumber(Object value) {
+        return value instanceof Double || value instanceof Integer;
+    }
+
+    private static boolean isPrimitive(Object value) {
+        return value == null || value == UNDEFINED || value instanceof String || value instanceof Boolean || value instanceof Number;
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (value == null || value == UNDEFINED) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (isNumber(value)) {
+            double number = ((Number) value).doubleValue();
+            return number != 0 && !Double.isNaN(number);
+        } else if (value instanceof String) {
+            return !((String) value).isEmpty();
+        }
+        throw new UnsupportedExpressionException("Unsupported boolean conversion: " + value.getClass().getSimpleName());
+    }
+
+    private static double toNumber(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value == null) {
+            return 0;
+        } else if (value == UNDEFINED) {
+            return Double.NaN;
+        } else if (value instanceof String) {
+            String str = ((String) value).trim();
+            if (str.isEmpty()) {
+                return 0;
+            } else if (NUMERIC_STRING.matcher(str).matches()) {
+                return Double.parseDouble(str);
+            } else if (str.equals("Infinity") || str.equals("+Infinity")) {
+                return Double.POSITIVE_INFINITY;
+            } else if (str.equals("-Infinity")) {
+                return Double.NEGATIVE_INFINITY;
+            } else if (str.length() > 1 && str.charAt(0) == '0' && Character.isLetter(str.charAt(1))) {
+                throw new UnsupportedExpressionException("Unsupported number format: " + str);
+            }
+            return Double.NaN;
+        }
+        throw new UnsupportedExpressionException("Unsupported number conversion: " + value.getClass().getSimpleName());
+    }
+
+    private static String toJsString(Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        } else if (value == null || value == UNDEFINED || value instanceof Boolean) {
+            return String.valueOf(value);
+        } else if (value instanceof Number) {
+            if (value instanceof Long) {
+                return value.toString();
+            }
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number)) {
+                return "NaN";
+            } else if (Double.isInfinite(number)) {
+                return number > 0 ? "Infinity" : "-Infinity";
+            } else if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+                return Long.toString((long) number);
+            }
+            String str = Double.toString(number);
+            if (str.indexOf('E') < 0) {
+                return str;
+            }
+        }
+        throw new UnsupportedExpressionException("Unsupported string conversion: " + value);
+    }
+
+    private static Object add(Object left, Object right) {
+        if (left instanceof String || right instanceof String) {
+            return toJsString(left) + toJsString(right);
+        }
+        return toNumber(left) + toNumber(right);
+    }
+
+    private static boolean compare(Object left, Object right, String operator) {
+        if (!isPrimitive(left) || !isPrimitive(right)) {
+            throw new UnsupportedExpressionException("Unsupported comparison");
+        }
+        if (left instanceof String && right instanceof String) {
+            int result = ((String) left).compareTo((String) right);
+            switch (operator) {
+                case "<":
+                    return result < 0;
+                case "<=":
+                    return result <= 0;
+                case ">":
+                    return result > 0;
+                default:
+                    return result >= 0;
+            }
+        }
+        double l = toNumber(left);
+        double r = toNumber(right);
+        switch (operator) {
+            case "<":
+                return l < r;
+            case "<=":
+                return l <= r;
+            case ">":
+                return l > r;
+            default:
+                return l >= r;
+        }
+    }
+
+    private static boolean looseEquals(Object left, Object right) {
+        if (!isPrimitive(left) || !isPrimitive(right)
+                || (left instanceof Long && !isNumber(right)) || (right instanceof Long && !isNumber(left))) {
+            throw new UnsupportedExpressionException("Unsupported equality");
+        }
+        if (left == null || left == UNDEFINED) {
+            return right == null || right == UNDEFINED;
+        } else if (right == null || right == UNDEFINED) {
+            return false;
+        } else if (left instanceof String && right instanceof String) {
+            return left.equals(right);
+        } else if (left instanceof Boolean && right instanceof Boolean) {
+            return left.equals(right);
+        }
+        return toNumber(left) == toNumber(right);
+    }
+
+    private static boolean strictEquals(Object left, Object right) {
+        if (!isPrimitive(left) || !isPrimitive(right) || left instanceof Long || right instanceof Long) {
+            throw new UnsupportedExpressionException("Unsupported strict equality");
+        }
+        if (left == null || left == UNDEFINED || right == null || right == UNDEFINED) {
+            return left == right;
+        } else if (isNumber(left) && isNumber(right)) {
+            return ((Number) left).doubleValue() == ((Number) right).doubleValue();
+        }
+        return left.equals(right);
+    }
+
+    private static String typeOf(Object value) {
+        if (value == UNDEFINED) {
+            return "undefined";
+        } else if (value == null) {
+            return "object";
+        } else if (value instanceof String) {
+            return "string";
+        } else if (value instanceof Boolean) {
+            return "boolean";
+        } else if (isNumber(value)) {
+            return "number";
+        }
+        throw new UnsupportedExpressionException("Unsupported typeof: " + value.getClass().getSimpleName());
+    }
+
+    static class UnsupportedExpressionException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedExpressionException(String message) {
+            super(message);
+        }
+
+        /**
+         * Thrown on the evaluation path, e.g. for unknown variables, and always handled by a fallback,
+         * so the stack trace is never used.
+         */
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.filter;
+
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.msg.core.UpdateAttributesRequest;
+import org.thingsboard.server.extensions.api.device.DeviceAttributes;
+
+import javax.script.Bindings;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.thingsboard.server.extensions.core.filter.NashornJsEvaluator.CLIENT_SIDE;
+import static org.thingsboard.server.extensions.core.filter.NashornJsEvaluator.SERVER_SIDE;
+import static org.thingsboard.server.extensions.core.filter.NashornJsEvaluator.SHARED;
+
+/**
+ * Script bindings that resolve variables from the device attributes and the incoming message on lookup,
+ * so only the variables a script actually reads are converted. Names are resolved the same way as in
+ * {@link NashornJsEvaluator#getAttributeBindings}, {@link NashornJsEvaluator#updateBindings}
+ * and {@link NashornJsEvaluator#toBindings}: telemetry entries override updated attributes,
+ * which override shared, server and client side attributes, in this order.
+ */
+public class LazyAttributeBindings extends AbstractMap<String, Object> implements Bindings {
+
+    private final DeviceAttributes attributes;
+    private final Map<String, Object> values = new HashMap<>();
+    private final List<List<KvEntry>> entries = new ArrayList<>();
+    private Collection<AttributeKvEntry> updatedAttributes = Collections.emptyList();
+    private Map<String, Object> clientSideScope;
+    private Map<String, Object> serverSideScope;
+    private Map<String, Object> sharedScope;
+
+    /**
+     * @param attributes device attributes, or null if the bindings contain only telemetry entries
+     */
+    public LazyAttributeBindings(DeviceAttributes attributes) {
+        this.attributes = attributes;
+    }
+
+    public LazyAttributeBindings withAttributes(UpdateAttributesRequest msg) {
+        updatedAttributes = msg.getAttributes();
+        return this;
+    }
+
+    public LazyAttributeBindings withEntries(List<KvEntry> entries) {
+        this.entries.add(entries);
+        return this;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return lookup(key).orElse(null);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return lookup(key).isPresent();
+    }
+
+    @Override
+    public Object put(String name, Object value) {
+        Object previous = get(name);
+        values.put(name, value);
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (attributes != null) {
+            putValues(result, attributes.getClientSideAttributes());
+            putValues(result, attributes.getServerSideAttributes());
+            putValues(result, attributes.getServerSidePublicAttributes());
+            putValues(result, updatedAttributes);
+            result.put(CLIENT_SIDE, getClientSideScope());
+            result.put(SERVER_SIDE, getServerSideScope());
+            result.put(SHARED, getSharedScope());
+        }
+        entries.forEach(list -> list.forEach(entry -> result.put(entry.getKey(), NashornJsEvaluator.getValue(entry))));
+        result.putAll(values);
+        return Collections.unmodifiableMap(result).entrySet();
+    }
+
+    private Optional<Object> lookup(Object key) {
+        if (values.containsKey(key)) {
+            return Optional.ofNullable(values.get(key));
+        }
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Optional<KvEntry> entry = findLast(entries.get(i), key);
+            if (entry.isPresent()) {
+                return Optional.ofNullable(NashornJsEvaluator.getValue(entry.get()));
+            }
+        }
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        if (CLIENT_SIDE.equals(key)) {
+            return Optional.of(getClientSideScope());
+        } else if (SERVER_SIDE.equals(key)) {
+            return Optional.of(getServerSideScope());
+        } else if (SHARED.equals(key)) {
+            return Optional.of(getSharedScope());
+        } else if (!(key instanceof String) || isScopeName((String) key)) {
+            return Optional.empty();
+        }
+        String name = (String) key;
+        Optional<? extends KvEntry> attribute = findLast(updatedAttributes, name);
+        if (!attribute.isPresent()) {
+            attribute = attributes.getServerPublicAttribute(name);
+        }
+        if (!attribute.isPresent()) {
+            attribute = attributes.getServerPrivateAttribute(name);
+        }
+        if (!attribute.isPresent()) {
+            attribute = attributes.getClientSideAttribute(name);
+        }
+        return attribute.map(NashornJsEvaluator::getValue);
+    }
+
+    private Map<String, Object> getClientSideScope() {
+        if (clientSideScope == null) {
+            clientSideScope = new ScopeMap(name -> {
+                Optional<? extends KvEntry> attribute = findLast(updatedAttributes, name);
+                return attribute.isPresent() ? attribute : attributes.getClientSideAttribute(name);
+            }, () -> {
+                List<KvEntry> scope = new ArrayList<>(attributes.getClientSideAttributes());
+                scope.addAll(updatedAttributes);
+                return scope;
+            });
+        }
+        return clientSideScope;
+    }
+
+    private Map<String, Object> getServerSideScope() {
+        if (serverSideScope == null) {
+            serverSideScope = new ScopeMap(attributes::getServerPrivateAttribute, () -> new ArrayList<>(attributes.getServerSideAttributes()));
+        }
+        return serverSideScope;
+    }
+
+    private Map<String, Object> getSharedScope() {
+        if (sharedScope == null) {
+            sharedScope = new ScopeMap(attributes::getServerPublicAttribute, () -> new ArrayList<>(attributes.getServerSidePublicAttributes()));
+        }
+        return sharedScope;
+    }
+
+    private static boolean isScopeName(String name) {
+        return CLIENT_SIDE.equalsIgnoreCase(name) || SERVER_SIDE.equalsIgnoreCase(name) || SHARED.equalsIgnoreCase(name);
+    }
+
+    private static void putValues(Map<String, Object> result, Collection<? extends KvEntry> attributes) {
+        for (KvEntry attribute : attributes) {
+            if (!isScopeName(attribute.getKey())) {
+                result.put(attribute.getKey(), NashornJsEvaluator.getValue(attribute));
+            }
+        }
+    }
+
+    private static <T extends KvEntry> Optional<T> findLast(Collection<T> entries, Object key) {
+        T result = null;
+        for (T entry : entries) {
+            if (entry.getKey().equals(key)) {
+                result = entry;
+            }
+        }
+        return Optional.ofNullable(result);
+    }
+
+    /**
+     * Read-only view of the attributes of one scope.
+     */
+    private static class ScopeMap extends AbstractMap<String, Object> {
+
+        private final Function<String, Optional<? extends KvEntry>> lookup;
+        private final Supplier<List<KvEntry>> all;
+
+        ScopeMap(Function<String, Optional<? extends KvEntry>> lookup, Supplier<List<KvEntry>> all) {
+            this.lookup = lookup;
+            this.all = all;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return key instanceof String ? lookup.apply((String) key).map(NashornJsEvaluator::getValue).orElse(null) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && lookup.apply((String) key).isPresent();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            all.get().forEach(attribute -> result.put(attribute.getKey(), NashornJsEvaluator.getValue(attribute)));
+            return Collections.unmodifiableMap(result).entrySet();
+        }
+    }
+}
@@ -32,7 +32,7 @@ import java.util.Map;
  * @author Andrew Shvayka
  */
 @Slf4j
-public class NashornJsEvaluator {
+public class NashornJsEvaluator implements JsEvaluator {
 
     public static final String CLIENT_SIDE = "cs";
     public static final String SERVER_SIDE = "ss";
@@ -115,6 +115,7 @@ public class NashornJsEvaluator {
         return bindings;
     }
 
+    @Override
     public Boolean execute(Bindings bindings) throws ScriptException {
         Object eval = engine.eval(bindings);
         if (eval instanceof Boolean) {
@@ -125,6 +126,7 @@ public class NashornJsEvaluator {
         }
     }
 
+    @Override
     public void destroy() {
         engine = null;
     }
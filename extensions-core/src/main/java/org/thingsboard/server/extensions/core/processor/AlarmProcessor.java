@@ -34,7 +34,8 @@ import org.thingsboard.server.common.msg.device.ToDeviceActorMsg;
 import org.thingsboard.server.common.msg.session.FromDeviceMsg;
 import org.thingsboard.server.extensions.api.component.Processor;
 import org.thingsboard.server.extensions.api.rules.*;
-import org.thingsboard.server.extensions.core.filter.NashornJsEvaluator;
+import org.thingsboard.server.extensions.core.filter.JsEvaluator;
+import org.thingsboard.server.extensions.core.filter.LazyAttributeBindings;
 import org.thingsboard.server.extensions.core.utils.VelocityUtils;
 
 import javax.script.Bindings;
@@ -57,8 +58,8 @@ public class AlarmProcessor implements RuleProcessor<AlarmProcessorConfiguration
     static final String IS_NEW_OR_CLEARED_ALARM = "isNewOrClearedAlarm";
 
 
-    protected NashornJsEvaluator newAlarmEvaluator;
-    protected NashornJsEvaluator clearAlarmEvaluator;
+    protected JsEvaluator newAlarmEvaluator;
+    protected JsEvaluator clearAlarmEvaluator;
 
     private ObjectMapper mapper = new ObjectMapper();
     private AlarmProcessorConfiguration configuration;
@@ -204,16 +205,16 @@ public class AlarmProcessor implements RuleProcessor<AlarmProcessorConfiguration
     }
 
     private Bindings buildBindings(RuleContext ctx, FromDeviceMsg msg) {
-        Bindings bindings = NashornJsEvaluator.getAttributeBindings(ctx.getDeviceMetaData().getDeviceAttributes());
+        LazyAttributeBindings bindings = new LazyAttributeBindings(ctx.getDeviceMetaData().getDeviceAttributes());
         if (msg != null) {
             switch (msg.getMsgType()) {
                 case POST_ATTRIBUTES_REQUEST:
-                    bindings = NashornJsEvaluator.updateBindings(bindings, (UpdateAttributesRequest) msg);
+                    bindings.withAttributes((UpdateAttributesRequest) msg);
                     break;
                 case POST_TELEMETRY_REQUEST:
                     TelemetryUploadRequest telemetryMsg = (TelemetryUploadRequest) msg;
                     for (List<KvEntry> entries : telemetryMsg.getData().values()) {
-                        bindings = NashornJsEvaluator.toBindings(bindings, entries);
+                        bindings.withEntries(entries);
                     }
             }
         }
@@ -221,8 +222,8 @@ public class AlarmProcessor implements RuleProcessor<AlarmProcessorConfiguration
     }
 
     private void initEvaluators() {
-        newAlarmEvaluator = new NashornJsEvaluator(configuration.getNewAlarmExpression());
-        clearAlarmEvaluator = new NashornJsEvaluator(configuration.getClearAlarmExpression());
+        newAlarmEvaluator = JsEvaluator.create(configuration.getNewAlarmExpression());
+        clearAlarmEvaluator = JsEvaluator.create(configuration.getClearAlarmExpression());
     }
 
     private void destroyEvaluators() {
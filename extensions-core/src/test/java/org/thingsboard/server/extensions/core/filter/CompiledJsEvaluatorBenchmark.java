@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.extensions.api.device.DeviceAttributes;
+
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the evaluation cost of compiled and Nashorn filter expressions.
+ * Not part of the default test run, use <code>mvn test -Pbenchmark</code>.
+ */
+@Slf4j
+public class CompiledJsEvaluatorBenchmark {
+
+    private static final String EXPRESSION = "temperature > 30 && cs.mode == 'auto'";
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void evaluationCostComparison() throws ScriptException {
+        JsEvaluator compiled = CompiledJsEvaluator.compile(EXPRESSION).get();
+        NashornJsEvaluator nashorn = new NashornJsEvaluator(EXPRESSION);
+        DeviceAttributes attributes = deviceAttributes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Assert.assertTrue(compiled.execute(new LazyAttributeBindings(attributes)));
+            Assert.assertTrue(nashorn.execute(new LazyAttributeBindings(attributes)));
+        }
+        long compiledNs = measure(compiled, attributes);
+        long nashornNs = measure(nashorn, attributes);
+        log.info("Evaluation of [{}] per message: compiled [{}] ns, nashorn [{}] ns", EXPRESSION,
+                compiledNs / ITERATIONS, nashornNs / ITERATIONS);
+    }
+
+    private static long measure(JsEvaluator evaluator, DeviceAttributes attributes) throws ScriptException {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            evaluator.execute(new LazyAttributeBindings(attributes));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static DeviceAttributes deviceAttributes() {
+        List<AttributeKvEntry> clientAttributes = new ArrayList<>();
+        clientAttributes.add(new BaseAttributeKvEntry(new DoubleDataEntry("temperature", 35.5), 42));
+        clientAttributes.add(new BaseAttributeKvEntry(new StringDataEntry("mode", "auto"), 42));
+        clientAttributes.add(new BaseAttributeKvEntry(new BooleanDataEntry("active", false), 42));
+        clientAttributes.add(new BaseAttributeKvEntry(new LongDataEntry("count", 42L), 42));
+        List<AttributeKvEntry> serverAttributes = new ArrayList<>();
+        serverAttributes.add(new BaseAttributeKvEntry(new DoubleDataEntry("limit", 48.0), 42));
+        return new DeviceAttributes(clientAttributes, serverAttributes, new ArrayList<>());
+    }
+}
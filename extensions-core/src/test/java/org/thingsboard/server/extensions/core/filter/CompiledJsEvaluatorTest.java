@@ -0,0 +1,106 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.extensions.api.device.DeviceAttributes;
+
+import javax.script.Bindings;
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompiledJsEvaluatorTest {
+
+    private static final String[] EXPRESSIONS = {
+            "temperature > 30 && cs.mode == 'auto'",
+            "temperature >= 35.5 || humidity < 10",
+            "cs.temperature * 2 - 1 > ss.limit",
+            "!active && cs.mode != \"manual\"",
+            "(typeof missing === 'undefined') && count == 42",
+            "count + 1 > 42 && mode + '-' + count == 'auto-42'",
+            "ss['limit'] % 7 === 6 && -temperature < 0",
+            "typeof mode === 'string' && typeof active === 'boolean' && typeof temperature === 'number'"
+    };
+
+    @Test
+    public void compileSupportedExpressions() {
+        for (String expression : EXPRESSIONS) {
+            Assert.assertTrue(expression, CompiledJsEvaluator.compile(expression).isPresent());
+        }
+    }
+
+    @Test
+    public void doNotCompileUnsupportedScripts() {
+        Assert.assertFalse(CompiledJsEvaluator.compile("Math.abs(temperature) > 30").isPresent());
+        Assert.assertFalse(CompiledJsEvaluator.compile("var limit = 30; temperature > limit").isPresent());
+        Assert.assertFalse(CompiledJsEvaluator.compile("temperature = 30").isPresent());
+        Assert.assertFalse(CompiledJsEvaluator.compile("temperature > 0x1E").isPresent());
+        Assert.assertFalse(CompiledJsEvaluator.compile("temperature > 30 ? true : false").isPresent());
+        Assert.assertTrue(JsEvaluator.create("Math.abs(temperature) > 30") instanceof NashornJsEvaluator);
+    }
+
+    @Test
+    public void sameResultsAsNashorn() throws ScriptException {
+        Bindings bindings = bindings();
+        for (String expression : EXPRESSIONS) {
+            JsEvaluator compiled = CompiledJsEvaluator.compile(expression).get();
+            NashornJsEvaluator nashorn = new NashornJsEvaluator(expression);
+            Assert.assertEquals(expression, nashorn.execute(bindings), compiled.execute(bindings));
+        }
+    }
+
+    @Test
+    public void fallbackToNashornForUnknownVariables() throws ScriptException {
+        JsEvaluator evaluator = CompiledJsEvaluator.compile("missing > 1 || temperature > 30").get();
+        try {
+            evaluator.execute(bindings());
+            Assert.fail("Unknown variable should be reported by the script engine");
+        } catch (ScriptException e) {
+            Assert.assertTrue(e.getMessage().contains("missing"));
+        }
+    }
+
+    @Test(expected = ScriptException.class)
+    public void wrongResultType() throws ScriptException {
+        CompiledJsEvaluator.compile("temperature + 1").get().execute(bindings());
+    }
+
+    private static Bindings bindings() {
+        Bindings bindings = NashornJsEvaluator.getAttributeBindings(deviceAttributes());
+        bindings.put("temperature", 35.5);
+        bindings.put("humidity", 5.0);
+        return bindings;
+    }
+
+    private static DeviceAttributes deviceAttributes() {
+        List<AttributeKvEntry> clientAttributes = new ArrayList<>();
+        clientAttributes.add(new BaseAttributeKvEntry(new DoubleDataEntry("temperature", 35.5), 42));
+        clientAttributes.add(new BaseAttributeKvEntry(new StringDataEntry("mode", "auto"), 42));
+        clientAttributes.add(new BaseAttributeKvEntry(new BooleanDataEntry("active", false), 42));
+        clientAttributes.add(new BaseAttributeKvEntry(new LongDataEntry("count", 42L), 42));
+        List<AttributeKvEntry> serverAttributes = new ArrayList<>();
+        serverAttributes.add(new BaseAttributeKvEntry(new DoubleDataEntry("limit", 48.0), 42));
+        return new DeviceAttributes(clientAttributes, serverAttributes, new ArrayList<>());
+    }
+}
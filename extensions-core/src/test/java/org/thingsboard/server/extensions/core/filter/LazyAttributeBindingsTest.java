@@ -0,0 +1,90 @@
+/**
+ * Copyright © 2016-2017 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.extensions.core.filter;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.msg.core.BasicUpdateAttributesRequest;
+import org.thingsboard.server.extensions.api.device.DeviceAttributes;
+
+import javax.script.Bindings;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LazyAttributeBindingsTest {
+
+    @Test
+    public void sameValuesAsEagerBindings() {
+        DeviceAttributes attributes = deviceAttributes();
+        BasicUpdateAttributesRequest request = new BasicUpdateAttributesRequest();
+        request.add(new BaseAttributeKvEntry(new StringDataEntry("mode", "manual"), 43));
+        request.add(new BaseAttributeKvEntry(new BooleanDataEntry("cs", true), 43));
+        List<KvEntry> telemetry = Arrays.asList(new DoubleDataEntry("temperature", 40.0), new LongDataEntry("count", 7L));
+
+        Bindings eager = NashornJsEvaluator.getAttributeBindings(attributes);
+        NashornJsEvaluator.updateBindings(eager, request);
+        NashornJsEvaluator.toBindings(eager, telemetry);
+
+        Bindings lazy = new LazyAttributeBindings(attributes).withAttributes(request).withEntries(telemetry);
+
+        for (String key : Arrays.asList("temperature", "count", "mode", "limit", "active", "missing")) {
+            Assert.assertEquals(key, eager.containsKey(key), lazy.containsKey(key));
+            Assert.assertEquals(key, eager.get(key), lazy.get(key));
+        }
+        for (String scope : Arrays.asList(NashornJsEvaluator.CLIENT_SIDE, NashornJsEvaluator.SERVER_SIDE, NashornJsEvaluator.SHARED)) {
+            Assert.assertEquals(scope, eager.get(scope), new HashMap<>((Map<?, ?>) lazy.get(scope)));
+        }
+        Assert.assertEquals(new HashMap<>(eager), new HashMap<>(lazy));
+    }
+
+    @Test
+    public void telemetryOnlyBindings() {
+        Bindings bindings = new LazyAttributeBindings(null).withEntries(Arrays.asList(new DoubleDataEntry("temperature", 40.0)));
+        Assert.assertEquals(40.0, bindings.get("temperature"));
+        Assert.assertFalse(bindings.containsKey(NashornJsEvaluator.CLIENT_SIDE));
+        Assert.assertFalse(bindings.containsKey("count"));
+    }
+
+    @Test
+    public void evaluateWithFilters() throws Exception {
+        Bindings bindings = new LazyAttributeBindings(deviceAttributes());
+        Assert.assertTrue(JsEvaluator.create("temperature > 30 && cs.mode == 'auto' && ss.limit == 48").execute(bindings));
+        Assert.assertTrue(new NashornJsEvaluator("temperature > 30 && cs.mode == 'auto' && ss.limit == 48").execute(bindings));
+    }
+
+    private static DeviceAttributes deviceAttributes() {
+        List<AttributeKvEntry> clientAttributes = new ArrayList<>();
+        clientAttributes.add(new BaseAttributeKvEntry(new DoubleDataEntry("temperature", 35.5), 42));
+        clientAttributes.add(new BaseAttributeKvEntry(new StringDataEntry("mode", "auto"), 42));
+        clientAttributes.add(new BaseAttributeKvEntry(new LongDataEntry("count", 42L), 42));
+        List<AttributeKvEntry> serverAttributes = new ArrayList<>();
+        serverAttributes.add(new BaseAttributeKvEntry(new DoubleDataEntry("limit", 48.0), 42));
+        serverAttributes.add(new BaseAttributeKvEntry(new BooleanDataEntry("active", false), 42));
+        List<AttributeKvEntry> sharedAttributes = new ArrayList<>();
+        sharedAttributes.add(new BaseAttributeKvEntry(new DoubleDataEntry("limit", 50.0), 42));
+        return new DeviceAttributes(clientAttributes, serverAttributes, sharedAttributes);
+    }
+}